@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.benchmarks;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.teris.kite.Deserializer;
+import io.teris.kite.Serializer;
+import io.teris.kite.benchmarks.Payloads.Envelope;
+
+
+/**
+ * Measures the codecs through the Serializer and Deserializer API the way the RPC layer
+ * uses them: the client serializes the argument envelope in one go, the server
+ * deserializes it into a map of raw (byte[]) arguments and then every argument by the
+ * type of its parameter. Run with -prof gc for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	private static class Typedef extends HashMap<String, Serializable> {}
+
+	private static final Type ARGUMENTS_TYPE = Typedef.class.getGenericSuperclass();
+
+	@Param({"gson", "fasterxml"})
+	public String codec;
+
+	@Param({"scalars", "pojo", "list", "time"})
+	public String envelope;
+
+	private Serializer serializer;
+
+	private Deserializer deserializer;
+
+	private Envelope payload;
+
+	private byte[] data;
+
+	@Setup
+	public void setup() throws Exception {
+		serializer = Payloads.serializer(codec);
+		deserializer = serializer.deserializer();
+		payload = Payloads.envelope(envelope);
+		data = serializer.serialize(payload.arguments).get();
+		// fail early rather than measure a broken codec
+		HashMap<String, Serializable> rawArgs = deserializer.<HashMap<String, Serializable>>deserialize(data, ARGUMENTS_TYPE).get();
+		for (Entry<String, Type> entry : payload.types.entrySet()) {
+			Object arg = deserializer.deserialize((byte[]) rawArgs.get(entry.getKey()), entry.getValue()).get();
+			if (!payload.arguments.get(entry.getKey()).getClass().isInstance(arg)) {
+				throw new IllegalStateException(String.format("Argument %s deserialized as %s", entry.getKey(), arg));
+			}
+		}
+	}
+
+	@Benchmark
+	public byte[] serialize() throws Exception {
+		return serializer.serialize(payload.arguments).get();
+	}
+
+	@Benchmark
+	public void deserialize(Blackhole blackhole) throws Exception {
+		deserialize(data, blackhole);
+	}
+
+	@Benchmark
+	public void roundtrip(Blackhole blackhole) throws Exception {
+		deserialize(serializer.serialize(payload.arguments).get(), blackhole);
+	}
+
+	private void deserialize(byte[] data, Blackhole blackhole) throws Exception {
+		HashMap<String, Serializable> rawArgs = deserializer.<HashMap<String, Serializable>>deserialize(data, ARGUMENTS_TYPE).get();
+		for (Entry<String, Type> entry : payload.types.entrySet()) {
+			blackhole.consume(deserializer.deserialize((byte[]) rawArgs.get(entry.getKey()), entry.getValue()).get());
+		}
+	}
+}
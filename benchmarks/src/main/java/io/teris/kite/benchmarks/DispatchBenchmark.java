@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.teris.kite.Context;
+import io.teris.kite.Name;
+import io.teris.kite.Serializer;
+import io.teris.kite.Service;
+import io.teris.kite.gson.JsonSerializer;
+import io.teris.kite.rpc.LoopbackServiceInvoker;
+import io.teris.kite.rpc.ServiceExporter;
+import io.teris.kite.rpc.ServiceFactory;
+
+
+/**
+ * Measures the framework cost of a call without a network: the service proxy, the
+ * serialization of arguments and results and the dispatch by the exporter including
+ * preprocessors. The loopback binding passes the serialized data through the loopback
+ * invoker, the inprocess binding bypasses serialization. Run with -prof gc for the
+ * bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+	@Service
+	public interface BenchService {
+
+		Integer sync0(Context context);
+
+		Integer sync1(Context context, @Name("a") Integer a);
+
+		Integer sync2(Context context, @Name("a") Integer a, @Name("b") Integer b);
+
+		Integer sync4(Context context, @Name("a") Integer a, @Name("b") Integer b, @Name("c") Integer c, @Name("d") Integer d);
+
+		Integer sync8(Context context, @Name("a") Integer a, @Name("b") Integer b, @Name("c") Integer c, @Name("d") Integer d,
+			@Name("e") Integer e, @Name("f") Integer f, @Name("g") Integer g, @Name("h") Integer h);
+
+		CompletableFuture<Integer> async0(Context context);
+
+		CompletableFuture<Integer> async1(Context context, @Name("a") Integer a);
+
+		CompletableFuture<Integer> async2(Context context, @Name("a") Integer a, @Name("b") Integer b);
+
+		CompletableFuture<Integer> async4(Context context, @Name("a") Integer a, @Name("b") Integer b, @Name("c") Integer c, @Name("d") Integer d);
+
+		CompletableFuture<Integer> async8(Context context, @Name("a") Integer a, @Name("b") Integer b, @Name("c") Integer c, @Name("d") Integer d,
+			@Name("e") Integer e, @Name("f") Integer f, @Name("g") Integer g, @Name("h") Integer h);
+
+		void void0(Context context);
+
+		void void1(Context context, @Name("a") Integer a);
+
+		void void2(Context context, @Name("a") Integer a, @Name("b") Integer b);
+
+		void void4(Context context, @Name("a") Integer a, @Name("b") Integer b, @Name("c") Integer c, @Name("d") Integer d);
+
+		void void8(Context context, @Name("a") Integer a, @Name("b") Integer b, @Name("c") Integer c, @Name("d") Integer d,
+			@Name("e") Integer e, @Name("f") Integer f, @Name("g") Integer g, @Name("h") Integer h);
+	}
+
+	public static class BenchServiceImpl implements BenchService {
+
+		private static final Integer ZERO = Integer.valueOf(0);
+
+		@Override
+		public Integer sync0(Context context) {
+			return ZERO;
+		}
+
+		@Override
+		public Integer sync1(Context context, Integer a) {
+			return a;
+		}
+
+		@Override
+		public Integer sync2(Context context, Integer a, Integer b) {
+			return b;
+		}
+
+		@Override
+		public Integer sync4(Context context, Integer a, Integer b, Integer c, Integer d) {
+			return d;
+		}
+
+		@Override
+		public Integer sync8(Context context, Integer a, Integer b, Integer c, Integer d, Integer e, Integer f, Integer g, Integer h) {
+			return h;
+		}
+
+		@Override
+		public CompletableFuture<Integer> async0(Context context) {
+			return CompletableFuture.completedFuture(ZERO);
+		}
+
+		@Override
+		public CompletableFuture<Integer> async1(Context context, Integer a) {
+			return CompletableFuture.completedFuture(a);
+		}
+
+		@Override
+		public CompletableFuture<Integer> async2(Context context, Integer a, Integer b) {
+			return CompletableFuture.completedFuture(b);
+		}
+
+		@Override
+		public CompletableFuture<Integer> async4(Context context, Integer a, Integer b, Integer c, Integer d) {
+			return CompletableFuture.completedFuture(d);
+		}
+
+		@Override
+		public CompletableFuture<Integer> async8(Context context, Integer a, Integer b, Integer c, Integer d, Integer e, Integer f, Integer g, Integer h) {
+			return CompletableFuture.completedFuture(h);
+		}
+
+		@Override
+		public void void0(Context context) {}
+
+		@Override
+		public void void1(Context context, Integer a) {}
+
+		@Override
+		public void void2(Context context, Integer a, Integer b) {}
+
+		@Override
+		public void void4(Context context, Integer a, Integer b, Integer c, Integer d) {}
+
+		@Override
+		public void void8(Context context, Integer a, Integer b, Integer c, Integer d, Integer e, Integer f, Integer g, Integer h) {}
+	}
+
+	private static final Integer ARG = Integer.valueOf(42);
+
+	@Param({"loopback", "inprocess"})
+	public String binding;
+
+	@Param({"0", "1", "2", "4", "8"})
+	public int arguments;
+
+	@Param({"0", "2"})
+	public int preprocessors;
+
+	private LoopbackServiceInvoker invoker;
+
+	private BenchService service;
+
+	@Setup
+	public void setup() {
+		Serializer serializer = JsonSerializer.builder().build();
+		ServiceExporter.Builder builder = ServiceExporter.serializer(serializer);
+		for (int i = 0; i < preprocessors; i++) {
+			builder.preprocessor((context, data) -> CompletableFuture.completedFuture(context));
+		}
+		ServiceExporter exporter = builder
+			.export(BenchService.class, new BenchServiceImpl())
+			.build();
+		ServiceFactory factory;
+		if ("inprocess".equals(binding)) {
+			factory = ServiceFactory.exporter(exporter).build();
+		}
+		else {
+			invoker = LoopbackServiceInvoker.builder().export(exporter).build();
+			factory = ServiceFactory.invoker(invoker).serializer(serializer).build();
+		}
+		service = factory.newInstance(BenchService.class);
+	}
+
+	@TearDown
+	public void teardown() throws Exception {
+		if (invoker != null) {
+			invoker.close().get();
+		}
+	}
+
+	@Benchmark
+	public Integer sync() {
+		switch (arguments) {
+			case 0:
+				return service.sync0(new Context());
+			case 1:
+				return service.sync1(new Context(), ARG);
+			case 2:
+				return service.sync2(new Context(), ARG, ARG);
+			case 4:
+				return service.sync4(new Context(), ARG, ARG, ARG, ARG);
+			default:
+				return service.sync8(new Context(), ARG, ARG, ARG, ARG, ARG, ARG, ARG, ARG);
+		}
+	}
+
+	@Benchmark
+	public Integer async() throws Exception {
+		switch (arguments) {
+			case 0:
+				return service.async0(new Context()).get();
+			case 1:
+				return service.async1(new Context(), ARG).get();
+			case 2:
+				return service.async2(new Context(), ARG, ARG).get();
+			case 4:
+				return service.async4(new Context(), ARG, ARG, ARG, ARG).get();
+			default:
+				return service.async8(new Context(), ARG, ARG, ARG, ARG, ARG, ARG, ARG, ARG).get();
+		}
+	}
+
+	@Benchmark
+	public void voids() {
+		switch (arguments) {
+			case 0:
+				service.void0(new Context());
+				break;
+			case 1:
+				service.void1(new Context(), ARG);
+				break;
+			case 2:
+				service.void2(new Context(), ARG, ARG);
+				break;
+			case 4:
+				service.void4(new Context(), ARG, ARG, ARG, ARG);
+				break;
+			default:
+				service.void8(new Context(), ARG, ARG, ARG, ARG, ARG, ARG, ARG, ARG);
+		}
+	}
+}
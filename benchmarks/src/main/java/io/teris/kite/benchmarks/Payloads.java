@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.benchmarks;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+import io.teris.kite.Serializer;
+
+
+/**
+ * Argument envelopes as service proxies serialize them: a map of argument names to
+ * values, each deserialized on the server side by the type of the parameter.
+ */
+final class Payloads {
+
+	private Payloads() {}
+
+	static class Envelope {
+
+		final LinkedHashMap<String, Serializable> arguments = new LinkedHashMap<>();
+
+		final Map<String, Type> types = new LinkedHashMap<>();
+
+		Envelope with(String name, Serializable value, Type type) {
+			arguments.put(name, value);
+			types.put(name, type);
+			return this;
+		}
+	}
+
+	@Nonnull
+	static Serializer serializer(@Nonnull String codec) {
+		switch (codec) {
+			case "gson":
+				return io.teris.kite.gson.JsonSerializer.builder().build();
+			case "fasterxml":
+				return io.teris.kite.fasterxml.JsonSerializer.builder().build();
+			default:
+				throw new IllegalArgumentException(String.format("Unknown codec %s", codec));
+		}
+	}
+
+	/**
+	 * @param name one of scalars, pojo, list or time.
+	 */
+	@Nonnull
+	static Envelope envelope(@Nonnull String name) {
+		switch (name) {
+			case "scalars":
+				return new Envelope()
+					.with("amount", Double.valueOf(341.2), Double.class)
+					.with("count", Long.valueOf(42), Long.class)
+					.with("key", "d5f4e1c2-8a7b-4c3d-9e0f-1a2b3c4d5e6f", String.class)
+					.with("active", Boolean.TRUE, Boolean.class);
+			case "pojo":
+				return new Envelope()
+					.with("order", order(1, 5), Order.class)
+					.with("priority", Long.valueOf(3), Long.class);
+			case "list":
+				ArrayList<Order> orders = new ArrayList<>();
+				for (int i = 0; i < 100; i++) {
+					orders.add(order(i, 10));
+				}
+				return new Envelope()
+					.with("orders", orders, OrderList.class.getGenericSuperclass());
+			case "time":
+				return new Envelope()
+					.with("schedule", schedule(), Schedule.class);
+			default:
+				throw new IllegalArgumentException(String.format("Unknown envelope %s", name));
+		}
+	}
+
+	private static Order order(long id, int lineCount) {
+		Order res = new Order();
+		res.id = id;
+		res.customer = new Customer();
+		res.customer.name = "Customer " + id;
+		res.customer.email = "customer" + id + "@example.com";
+		res.customer.address = new Address();
+		res.customer.address.street = "Main Street " + id;
+		res.customer.address.city = "Zurich";
+		res.customer.address.zip = "8000";
+		res.lines = new ArrayList<>();
+		for (int i = 0; i < lineCount; i++) {
+			Line line = new Line();
+			line.sku = "SKU-" + id + "-" + i;
+			line.quantity = i + 1;
+			line.price = 9.95 * (i + 1);
+			res.lines.add(line);
+		}
+		return res;
+	}
+
+	private static Schedule schedule() {
+		Schedule res = new Schedule();
+		res.date = LocalDate.of(2018, 3, 14);
+		res.start = LocalDateTime.of(2018, 3, 14, 9, 30, 15);
+		res.deadline = ZonedDateTime.of(2018, 3, 15, 17, 0, 0, 0, ZoneId.of("Europe/Zurich"));
+		res.created = OffsetDateTime.of(2018, 3, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+		return res;
+	}
+
+	public static class Address implements Serializable {
+
+		public String street;
+
+		public String city;
+
+		public String zip;
+	}
+
+	public static class Customer implements Serializable {
+
+		public String name;
+
+		public String email;
+
+		public Address address;
+	}
+
+	public static class Line implements Serializable {
+
+		public String sku;
+
+		public int quantity;
+
+		public double price;
+	}
+
+	public static class Order implements Serializable {
+
+		public long id;
+
+		public Customer customer;
+
+		public ArrayList<Line> lines;
+	}
+
+	private static class OrderList extends ArrayList<Order> {}
+
+	public static class Schedule implements Serializable {
+
+		public LocalDate date;
+
+		public LocalDateTime start;
+
+		public ZonedDateTime deadline;
+
+		public OffsetDateTime created;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.Assume;
+
+import io.teris.kite.Context;
+import io.teris.kite.gson.JsonSerializer;
+
+
+/**
+ * Checks the bytes allocated per call on a hot path against the budget checked in
+ * to allocation-budgets.properties.
+ */
+public abstract class AbstractAllocationTestsuite {
+
+	static final String PAYLOAD;
+
+	static {
+		char[] chars = new char[100];
+		Arrays.fill(chars, 'x');
+		PAYLOAD = new String(chars);
+	}
+
+	private static final Properties budgets = new Properties();
+
+	private static final AtomicLong requestIds = new AtomicLong();
+
+	static ServiceExporter exporter;
+
+	static String route;
+
+	static Context requestContext;
+
+	static byte[] requestData;
+
+	static Entry<Context, byte[]> response;
+
+	static void preInit() throws Exception {
+		try (InputStream is = AbstractAllocationTestsuite.class.getResourceAsStream("/allocation-budgets.properties")) {
+			budgets.load(is);
+		}
+
+		exporter = ServiceExporter.serializer(JsonSerializer.builder().build())
+			.export(AllocationService.class, (context, data) -> CompletableFuture.completedFuture(data))
+			.build();
+
+		// captures the request of the proxy and the response of the exporter on the wire
+		ServiceFactory.invoker((route, context, data) -> {
+				AbstractAllocationTestsuite.route = route;
+				requestContext = new Context(context);
+				requestData = data;
+				return exporter.call(route, context, data)
+					.thenApply((entry) -> response = new SimpleEntry<>(new Context(entry.getKey()), entry.getValue()));
+			})
+			.serializer(JsonSerializer.builder().build())
+			.build()
+			.newInstance(AllocationService.class)
+			.echo(new Context(), PAYLOAD)
+			.get();
+	}
+
+	/**
+	 * Sends the captured request with a unique request id.
+	 */
+	static CompletableFuture<Entry<Context, byte[]>> call(ServiceInvoker invoker) {
+		Context context = new Context(requestContext);
+		context.put(Context.X_REQUEST_ID_KEY, Long.toString(requestIds.incrementAndGet()));
+		return invoker.call(route, context, requestData);
+	}
+
+	static void assertWithinBudget(String key, int warmup, int iterations, Supplier<CompletableFuture<?>> call) throws Exception {
+		Assume.assumeTrue("Thread allocation counters are not supported by this JVM", AllocationMeter.isSupported());
+		String budget = budgets.getProperty(key);
+		assertNotNull(String.format("No allocation budget for '%s'", key), budget);
+		long measured = AllocationMeter.bytesPerCall(call, warmup, iterations);
+		String message = String.format("%s allocates %d bytes per call, budget %s bytes", key, Long.valueOf(measured), budget);
+		System.out.println(message);
+		assertTrue(message, measured <= Long.parseLong(budget));
+	}
+}
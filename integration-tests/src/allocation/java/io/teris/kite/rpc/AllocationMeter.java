@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.sun.management.ThreadMXBean;
+
+
+/**
+ * Measures the heap allocated per call across all threads of the JVM: calls complete
+ * on transport, broker and pool threads, so the counter of the calling thread alone
+ * would miss most of the garbage. Allocations of threads terminating during the
+ * measurement are not accounted for, thus thread pools must keep their workers alive.
+ */
+final class AllocationMeter {
+
+	private AllocationMeter() {}
+
+	static boolean isSupported() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		return bean instanceof ThreadMXBean && ((ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+			&& ((ThreadMXBean) bean).isThreadAllocatedMemoryEnabled();
+	}
+
+	/**
+	 * Runs the warmup calls for the JIT to settle, then returns the average number of
+	 * bytes allocated by the measured calls. Calls are executed one after another.
+	 */
+	static long bytesPerCall(Supplier<CompletableFuture<?>> call, int warmup, int iterations) throws Exception {
+		execute(call, warmup);
+		Map<Long, Long> before = snapshot();
+		execute(call, iterations);
+		Map<Long, Long> after = snapshot();
+		long total = 0;
+		for (Entry<Long, Long> entry: after.entrySet()) {
+			total += entry.getValue().longValue() - before.getOrDefault(entry.getKey(), Long.valueOf(0)).longValue();
+		}
+		return total / iterations;
+	}
+
+	private static void execute(Supplier<CompletableFuture<?>> call, int count) throws Exception {
+		for (int i = 0; i < count; i++) {
+			call.get().get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	private static Map<Long, Long> snapshot() {
+		ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long[] ids = bean.getAllThreadIds();
+		long[] bytes = bean.getThreadAllocatedBytes(ids);
+		Map<Long, Long> res = new HashMap<>();
+		for (int i = 0; i < ids.length; i++) {
+			if (bytes[i] >= 0) {
+				res.put(Long.valueOf(ids[i]), Long.valueOf(bytes[i]));
+			}
+		}
+		return res;
+	}
+}
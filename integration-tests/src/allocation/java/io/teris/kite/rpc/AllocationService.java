@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.concurrent.CompletableFuture;
+
+import io.teris.kite.Context;
+import io.teris.kite.Name;
+import io.teris.kite.Service;
+
+
+@Service
+public interface AllocationService {
+
+	CompletableFuture<String> echo(Context context, @Name("data") String data);
+}
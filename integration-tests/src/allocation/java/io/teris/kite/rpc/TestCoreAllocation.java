@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.teris.kite.Context;
+import io.teris.kite.gson.JsonSerializer;
+
+
+public class TestCoreAllocation extends AbstractAllocationTestsuite {
+
+	private static final int WARMUP = 20000;
+
+	private static final int ITERATIONS = 10000;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		preInit();
+	}
+
+	@Test
+	public void proxy_cannedResponse_withinBudget() throws Exception {
+		AllocationService service = ServiceFactory.invoker((route, context, data) ->
+				CompletableFuture.completedFuture(new SimpleEntry<>(new Context(response.getKey()), response.getValue())))
+			.serializer(JsonSerializer.builder().build())
+			.build()
+			.newInstance(AllocationService.class);
+		assertWithinBudget("proxy", WARMUP, ITERATIONS, () -> service.echo(new Context(), PAYLOAD));
+	}
+
+	@Test
+	public void exporter_capturedRequest_withinBudget() throws Exception {
+		assertWithinBudget("exporter", WARMUP, ITERATIONS, () -> call(exporter::call));
+	}
+
+	@Test
+	public void loopback_roundtrip_withinBudget() throws Exception {
+		LoopbackServiceInvoker invoker = LoopbackServiceInvoker.builder().export(exporter).build();
+		try {
+			AllocationService service = ServiceFactory.invoker(invoker)
+				.serializer(JsonSerializer.builder().build())
+				.build()
+				.newInstance(AllocationService.class);
+			assertWithinBudget("loopback", WARMUP, ITERATIONS, () -> service.echo(new Context(), PAYLOAD));
+		}
+		finally {
+			invoker.close().get();
+		}
+	}
+
+	@Test
+	public void inprocess_roundtrip_withinBudget() throws Exception {
+		AllocationService service = ServiceFactory.exporter(exporter)
+			.build()
+			.newInstance(AllocationService.class);
+		assertWithinBudget("inprocess", WARMUP, ITERATIONS, () -> service.echo(new Context(), PAYLOAD));
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.teris.kite.rpc.jms.JmsServiceExporter;
+import io.teris.kite.rpc.jms.JmsServiceInvoker;
+import io.teris.kite.rpc.shm.ShmServiceExporter;
+import io.teris.kite.rpc.shm.ShmServiceInvoker;
+import io.teris.kite.rpc.tcp.TcpServiceExporter;
+import io.teris.kite.rpc.tcp.TcpServiceInvoker;
+import io.teris.kite.rpc.vertx.EventBusServiceExporter;
+import io.teris.kite.rpc.vertx.EventBusServiceInvoker;
+import io.teris.kite.rpc.vertx.HttpServiceExporter;
+import io.teris.kite.rpc.vertx.HttpServiceInvoker;
+import io.teris.kite.rpc.vertx.WebSocketServiceExporter;
+import io.teris.kite.rpc.vertx.WebSocketServiceInvoker;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.net.NetServerOptions;
+
+
+/**
+ * Measures the send and receive paths of the client and the server side of each
+ * transport together with the exporter, sending the captured request with the invoker.
+ */
+public class TestTransportAllocation extends AbstractAllocationTestsuite {
+
+	private static final int WARMUP = 5000;
+
+	private static final int ITERATIONS = 2000;
+
+	private static Vertx vertx;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		preInit();
+		vertx = Vertx.vertx();
+	}
+
+	@AfterClass
+	public static void teardown() {
+		vertx.close();
+	}
+
+	@Test
+	public void http_roundtrip_withinBudget() throws Exception {
+		int port = freePort();
+		HttpServiceExporter httpExporter = HttpServiceExporter.router(vertx).export(exporter);
+		CompletableFuture<Void> listening = new CompletableFuture<>();
+		vertx.createHttpServer(new HttpServerOptions().setPort(port))
+			.requestHandler(httpExporter.router()::accept)
+			.listen(handler -> listening.complete(null));
+		listening.get(5, TimeUnit.SECONDS);
+
+		HttpServiceInvoker invoker = HttpServiceInvoker.httpClient(vertx.createHttpClient(new HttpClientOptions()
+			.setDefaultHost("localhost")
+			.setDefaultPort(port))).build();
+		assertWithinBudget("transport.http", WARMUP, ITERATIONS, () -> call(invoker));
+	}
+
+	@Test
+	public void websocket_roundtrip_withinBudget() throws Exception {
+		int port = freePort();
+		WebSocketServiceExporter wsExporter = WebSocketServiceExporter.path("/kite").export(exporter);
+		CompletableFuture<Void> listening = new CompletableFuture<>();
+		vertx.createHttpServer(new HttpServerOptions().setPort(port))
+			.websocketHandler(wsExporter)
+			.listen(handler -> listening.complete(null));
+		listening.get(5, TimeUnit.SECONDS);
+
+		WebSocketServiceInvoker invoker = WebSocketServiceInvoker.httpClient(vertx.createHttpClient(new HttpClientOptions()
+			.setDefaultHost("localhost")
+			.setDefaultPort(port)))
+			.path("/kite")
+			.build();
+		try {
+			assertWithinBudget("transport.websocket", WARMUP, ITERATIONS, () -> call(invoker));
+		}
+		finally {
+			invoker.close().get();
+		}
+	}
+
+	@Test
+	public void tcp_roundtrip_withinBudget() throws Exception {
+		int port = freePort();
+		TcpServiceExporter tcpExporter = TcpServiceExporter.builder().export(exporter);
+		CompletableFuture<Void> listening = new CompletableFuture<>();
+		vertx.createNetServer(new NetServerOptions().setPort(port))
+			.connectHandler(tcpExporter)
+			.listen(handler -> listening.complete(null));
+		listening.get(5, TimeUnit.SECONDS);
+
+		TcpServiceInvoker invoker = TcpServiceInvoker.netClient(vertx.createNetClient()).port(port).build();
+		try {
+			assertWithinBudget("transport.tcp", WARMUP, ITERATIONS, () -> call(invoker));
+		}
+		finally {
+			invoker.close().get();
+		}
+	}
+
+	@Test
+	public void eventbus_roundtrip_withinBudget() throws Exception {
+		EventBusServiceExporter busExporter = EventBusServiceExporter.eventBus(vertx.eventBus()).export(exporter);
+		try {
+			ServiceInvoker invoker = EventBusServiceInvoker.eventBus(vertx.eventBus()).build();
+			assertWithinBudget("transport.eventbus", WARMUP, ITERATIONS, () -> call(invoker));
+		}
+		finally {
+			busExporter.close().get();
+		}
+	}
+
+	@Test
+	public void shm_roundtrip_withinBudget() throws Exception {
+		Path devShm = Paths.get("/dev/shm");
+		Path directory = Files.isDirectory(devShm) && Files.isWritable(devShm)
+			? Files.createTempDirectory(devShm, "kite")
+			: Files.createTempDirectory("kite");
+		ShmServiceExporter shmExporter = ShmServiceExporter.directory(directory).export(exporter).start();
+		ShmServiceInvoker invoker = ShmServiceInvoker.directory(directory).connect();
+		try {
+			assertWithinBudget("transport.shm", WARMUP, ITERATIONS, () -> call(invoker));
+		}
+		finally {
+			invoker.close().get();
+			shmExporter.close().get();
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	@Test
+	public void jms_roundtrip_withinBudget() throws Exception {
+		String brokerUrl = String.format("tcp://localhost:%d", Integer.valueOf(freePort()));
+		String clientUrl = brokerUrl + "?jms.useAsyncSend=true";
+		BrokerService broker = new BrokerService();
+		broker.setPersistent(false);
+		broker.setUseJmx(false);
+		broker.addConnector(brokerUrl);
+		broker.start();
+		JmsServiceExporter jmsExporter = JmsServiceExporter.connectionFactory(new ActiveMQConnectionFactory(clientUrl))
+			.requestTopic("kite-allocation")
+			.export(exporter)
+			.start();
+		JmsServiceInvoker invoker = JmsServiceInvoker.connectionFactory(new ActiveMQConnectionFactory(clientUrl))
+			.requestTopic("kite-allocation")
+			.start();
+		try {
+			// the broker runs in the same JVM, so its allocations are included
+			assertWithinBudget("transport.jms", WARMUP, ITERATIONS, () -> call(invoker));
+		}
+		finally {
+			invoker.close().get();
+			jmsExporter.close().get();
+			broker.stop();
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.teris.kite.Context;
+import io.teris.kite.Service;
+import io.teris.kite.gson.JsonSerializer;
+import io.teris.kite.rpc.vertx.EventBusServiceExporter;
+import io.teris.kite.rpc.vertx.EventBusServiceInvoker;
+import io.vertx.core.Vertx;
+
+
+public class TestEventBusInvocationRoundtrip extends AbstractInvocationTestsuite {
+
+	private static Vertx vertx;
+
+	private static EventBusServiceExporter exporter;
+
+	private static ServiceFactory creator;
+
+	@BeforeClass
+	public static void init() {
+		preInit();
+
+		vertx = Vertx.vertx();
+
+		exporter = EventBusServiceExporter.eventBus(vertx.eventBus())
+			.export(exporter1)
+			.export(exporter2);
+
+		creator = ServiceFactory.invoker(EventBusServiceInvoker.eventBus(vertx.eventBus()).build())
+			.serializer(JsonSerializer.builder().build())
+			.build();
+
+		syncService = creator.newInstance(SyncService.class);
+		asyncService = creator.newInstance(AsyncService.class);
+		throwingService = creator.newInstance(ThrowingService.class);
+	}
+
+	@AfterClass
+	public static void teardown() throws Exception {
+		exporter.close().get();
+		vertx.close();
+	}
+
+	@Service
+	public interface NotServedService {
+		void dosync(Context context);
+	}
+
+	@Test
+	public void roundtrip_notFoundException() {
+		NotServedService service = creator.newInstance(NotServedService.class);
+		try {
+			service.dosync(new Context());
+			throw new AssertionError("unreachable code");
+		}
+		catch (NotFoundException ex) {
+			assertTrue(ex.getMessage().contains("Not Found"));
+		}
+	}
+
+	@Test
+	public void roundtrip_noReply_timesOut() throws Exception {
+		vertx.eventBus().consumer("kite.rpc.silent.call", (message) -> {});
+		EventBusServiceInvoker invoker = EventBusServiceInvoker.eventBus(vertx.eventBus())
+			.timeoutMillis(100)
+			.build();
+		try {
+			invoker.call("silent.call", new Context(), null).get(5, TimeUnit.SECONDS);
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof TechnicalException);
+		}
+	}
+
+	@Test
+	public void roundtrip_pipelined_success() throws Exception {
+		List<CompletableFuture<Double>> promises = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			promises.add(asyncService.plus(new Context(), Double.valueOf(i), Double.valueOf(1)));
+		}
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(i + 1, promises.get(i).get(5, TimeUnit.SECONDS).doubleValue(), 0.001);
+		}
+	}
+}
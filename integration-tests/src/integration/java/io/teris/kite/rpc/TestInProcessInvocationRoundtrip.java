@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import org.junit.BeforeClass;
+
+import io.teris.kite.gson.JsonSerializer;
+
+
+public class TestInProcessInvocationRoundtrip extends AbstractInvocationTestsuite {
+
+	@BeforeClass
+	public static void init() {
+		preInit();
+
+		ServiceFactory creator1 = ServiceFactory.exporter(exporter1)
+			.build();
+		syncService = creator1.newInstance(SyncService.class);
+		asyncService = creator1.newInstance(AsyncService.class);
+
+		ServiceFactory creator2 = ServiceFactory.exporter(exporter2)
+			.copyPolicy(CopyPolicy.serializer(JsonSerializer.builder().build()))
+			.build();
+		throwingService = creator2.newInstance(ThrowingService.class);
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+import io.teris.kite.gson.JsonSerializer;
+
+
+public class TestLoopbackInvocationRoundtrip extends AbstractInvocationTestsuite {
+
+	private static LoopbackServiceInvoker invoker;
+
+	@BeforeClass
+	public static void init() {
+		preInit();
+
+		invoker = LoopbackServiceInvoker.builder()
+			.export(exporter1)
+			.export(exporter2)
+			.latencyMillis(1)
+			.jitterMillis(1)
+			.build();
+
+		ServiceFactory creator = ServiceFactory.invoker(invoker)
+			.serializer(JsonSerializer.builder().build())
+			.build();
+
+		syncService = creator.newInstance(SyncService.class);
+		asyncService = creator.newInstance(AsyncService.class);
+		throwingService = creator.newInstance(ThrowingService.class);
+	}
+
+	@AfterClass
+	public static void teardown() throws Exception {
+		invoker.close().get();
+	}
+}
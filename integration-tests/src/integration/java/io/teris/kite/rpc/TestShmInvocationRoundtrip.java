@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.teris.kite.Context;
+import io.teris.kite.Service;
+import io.teris.kite.gson.JsonSerializer;
+import io.teris.kite.rpc.shm.ShmServiceExporter;
+import io.teris.kite.rpc.shm.ShmServiceInvoker;
+
+
+public class TestShmInvocationRoundtrip extends AbstractInvocationTestsuite {
+
+	private static Path directory;
+
+	private static ShmServiceExporter exporter;
+
+	private static ShmServiceInvoker invoker;
+
+	private static ServiceFactory creator;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		preInit();
+
+		Path devShm = Paths.get("/dev/shm");
+		directory = Files.isDirectory(devShm) && Files.isWritable(devShm)
+			? Files.createTempDirectory(devShm, "kite")
+			: Files.createTempDirectory("kite");
+
+		exporter = ShmServiceExporter.directory(directory)
+			.scanIntervalMillis(10)
+			.export(exporter1)
+			.export(exporter2)
+			.start();
+
+		invoker = ShmServiceInvoker.directory(directory)
+			.connect();
+
+		creator = ServiceFactory.invoker(invoker)
+			.serializer(JsonSerializer.builder().build())
+			.build();
+
+		syncService = creator.newInstance(SyncService.class);
+		asyncService = creator.newInstance(AsyncService.class);
+		throwingService = creator.newInstance(ThrowingService.class);
+	}
+
+	@AfterClass
+	public static void teardown() throws Exception {
+		invoker.close().get();
+		exporter.close().get();
+		Files.deleteIfExists(directory);
+	}
+
+	@Service
+	public interface NotServedService {
+		void dosync(Context context);
+	}
+
+	@Test
+	public void roundtrip_notFoundException() {
+		NotServedService service = creator.newInstance(NotServedService.class);
+		try {
+			service.dosync(new Context());
+			throw new AssertionError("unreachable code");
+		}
+		catch (NotFoundException ex) {
+			assertTrue(ex.getMessage().contains("Not Found"));
+		}
+	}
+
+	@Test
+	public void roundtrip_pipelined_success() throws Exception {
+		List<CompletableFuture<Double>> promises = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			promises.add(asyncService.plus(new Context(), Double.valueOf(i), Double.valueOf(1)));
+		}
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(i + 1, promises.get(i).get(5, TimeUnit.SECONDS).doubleValue(), 0.001);
+		}
+	}
+
+	@Test
+	public void roundtrip_closedInvoker_throwsAndRemovesChannel() throws Exception {
+		ShmServiceInvoker closing = ShmServiceInvoker.directory(directory).connect();
+		AsyncService service = ServiceFactory.invoker(closing)
+			.serializer(JsonSerializer.builder().build())
+			.build()
+			.newInstance(AsyncService.class);
+		assertEquals(3, service.plus(new Context(), Double.valueOf(1), Double.valueOf(2)).get(5, TimeUnit.SECONDS).doubleValue(), 0.001);
+		closing.close().get();
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(1, files.count());
+		}
+		try {
+			service.plus(new Context(), Double.valueOf(1), Double.valueOf(2)).get(5, TimeUnit.SECONDS);
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof TechnicalException);
+			assertFalse(ex.getCause().getMessage().isEmpty());
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+import io.teris.kite.gson.JsonSerializer;
+import io.teris.kite.rpc.tcp.TcpServiceExporter;
+import io.teris.kite.rpc.tcp.TcpServiceInvoker;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.SocketAddress;
+
+
+/**
+ * Runs the invocation suite over a Unix domain socket; skipped where the native
+ * transport is not available.
+ */
+public class TestTcpDomainSocketRoundtrip extends AbstractInvocationTestsuite {
+
+	private static Vertx vertx;
+
+	private static NetServer server;
+
+	private static TcpServiceInvoker invoker;
+
+	private static File socketFile;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		preInit();
+
+		vertx = Vertx.vertx(new VertxOptions().setPreferNativeTransport(true));
+		if (!vertx.isNativeTransportEnabled()) {
+			return;
+		}
+		socketFile = File.createTempFile("kite", ".sock");
+		socketFile.delete();
+		SocketAddress address = SocketAddress.domainSocketAddress(socketFile.getAbsolutePath());
+
+		invoker = TcpServiceInvoker.netClient(vertx.createNetClient())
+			.address(address)
+			.build();
+
+		ServiceFactory creator = ServiceFactory.invoker(invoker)
+			.serializer(JsonSerializer.builder().build())
+			.build();
+
+		syncService = creator.newInstance(SyncService.class);
+		asyncService = creator.newInstance(AsyncService.class);
+		throwingService = creator.newInstance(ThrowingService.class);
+
+		TcpServiceExporter exporter = TcpServiceExporter.builder()
+			.export(exporter1)
+			.export(exporter2);
+
+		CompletableFuture<NetServer> promise = new CompletableFuture<>();
+		vertx.createNetServer()
+			.connectHandler(exporter)
+			.listen(address, handler -> {
+				if (handler.failed()) {
+					promise.completeExceptionally(handler.cause());
+					return;
+				}
+				promise.complete(handler.result());
+			});
+
+		server = promise.get(5, TimeUnit.SECONDS);
+	}
+
+	@Before
+	public void requireNativeTransport() {
+		assumeTrue("native transport not available", vertx.isNativeTransportEnabled());
+	}
+
+	@AfterClass
+	public static void teardown() throws Exception {
+		if (invoker != null) {
+			invoker.close().get();
+			server.close();
+			socketFile.delete();
+		}
+		vertx.close();
+	}
+}
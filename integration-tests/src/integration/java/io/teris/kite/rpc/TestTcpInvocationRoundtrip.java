@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.teris.kite.Context;
+import io.teris.kite.Service;
+import io.teris.kite.gson.JsonSerializer;
+import io.teris.kite.rpc.tcp.TcpServiceExporter;
+import io.teris.kite.rpc.tcp.TcpServiceInvoker;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetServerOptions;
+
+
+public class TestTcpInvocationRoundtrip extends AbstractInvocationTestsuite {
+
+	private static NetServer server;
+
+	private static ServiceFactory creator;
+
+	private static TcpServiceInvoker invoker;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		preInit();
+
+		Vertx vertx = Vertx.vertx();
+
+		invoker = TcpServiceInvoker.netClient(vertx.createNetClient())
+			.port(port)
+			.poolSize(4)
+			.build();
+
+		creator = ServiceFactory.invoker(invoker)
+			.serializer(JsonSerializer.builder().build())
+			.build();
+
+		syncService = creator.newInstance(SyncService.class);
+		asyncService = creator.newInstance(AsyncService.class);
+		throwingService = creator.newInstance(ThrowingService.class);
+
+		TcpServiceExporter exporter = TcpServiceExporter.builder()
+			.export(exporter1)
+			.export(exporter2);
+
+		CompletableFuture<NetServer> promise = new CompletableFuture<>();
+		CompletableFuture.runAsync(() ->
+			vertx.createNetServer(new NetServerOptions().setHost("0.0.0.0").setPort(port))
+				.connectHandler(exporter)
+				.listen(handler -> {
+					if (handler.failed()) {
+						promise.completeExceptionally(handler.cause());
+						return;
+					}
+					promise.complete(handler.result());
+				}));
+
+		server = promise.get(5, TimeUnit.SECONDS);
+	}
+
+	@AfterClass
+	public static void teardown() throws Exception {
+		invoker.close().get();
+		server.close();
+	}
+
+	@Service
+	public interface NotServedService {
+		void dosync(Context context);
+	}
+
+	@Test
+	public void roundtrip_notFoundException() {
+		NotServedService service = creator.newInstance(NotServedService.class);
+		try {
+			service.dosync(new Context());
+			throw new AssertionError("unreachable code");
+		}
+		catch (NotFoundException ex) {
+			assertTrue(ex.getMessage().contains("Not Found"));
+		}
+	}
+
+	@Test
+	public void roundtrip_pipelined_success() throws Exception {
+		List<CompletableFuture<Double>> promises = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			promises.add(asyncService.plus(new Context(), Double.valueOf(i), Double.valueOf(1)));
+		}
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(i + 1, promises.get(i).get(5, TimeUnit.SECONDS).doubleValue(), 0.001);
+		}
+	}
+
+	@Test
+	public void roundtrip_connectionRefused_throws() throws Exception {
+		TcpServiceInvoker unreachable = TcpServiceInvoker.netClient(Vertx.vertx().createNetClient())
+			.port(1)
+			.build();
+		SyncService service = ServiceFactory.invoker(unreachable)
+			.serializer(JsonSerializer.builder().build())
+			.build()
+			.newInstance(SyncService.class);
+		try {
+			service.plus(new Context(), Double.valueOf(1), Double.valueOf(2));
+			throw new AssertionError("unreachable code");
+		}
+		catch (TechnicalException ex) {
+			assertTrue(ex.getMessage().contains("connection exception"));
+		}
+		finally {
+			unreachable.close().get();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.teris.kite.Context;
+import io.teris.kite.Name;
+import io.teris.kite.Serializer;
+import io.teris.kite.Service;
+import io.teris.kite.gson.JsonSerializer;
+import io.teris.kite.rpc.vertx.HttpServiceExporter;
+import io.teris.kite.rpc.vertx.HttpServiceInvoker;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+
+
+public class TestVertxBodyLimit {
+
+	@Service(replace = "io.teris.kite.rpc.TestVertxBodyLimit")
+	public interface CountService {
+
+		Integer small(Context context, @Name("data") ArrayList<Integer> data);
+
+		Integer large(Context context, @Name("data") ArrayList<Integer> data);
+
+		Integer unlimited(Context context, @Name("data") ArrayList<Integer> data);
+	}
+
+	static class CountServiceImpl implements CountService {
+
+		@Override
+		public Integer small(Context context, ArrayList<Integer> data) {
+			return Integer.valueOf(data.size());
+		}
+
+		@Override
+		public Integer large(Context context, ArrayList<Integer> data) {
+			return Integer.valueOf(data.size());
+		}
+
+		@Override
+		public Integer unlimited(Context context, ArrayList<Integer> data) {
+			return Integer.valueOf(data.size());
+		}
+	}
+
+	private static HttpServer server;
+
+	private static CountService countService;
+
+	private static int port;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		while (true) {
+			try (ServerSocket socket = new ServerSocket((int) (49152 + Math.random() * (65535 - 49152)))) {
+				port = socket.getLocalPort();
+				break;
+			}
+			catch (IOException e) {
+				// repeat
+			}
+		}
+
+		Vertx vertx = Vertx.vertx();
+		Serializer serializer = JsonSerializer.builder().build();
+
+		HttpClient httpClient = vertx.createHttpClient(new HttpClientOptions()
+			.setDefaultHost("localhost")
+			.setDefaultPort(port));
+
+		countService = ServiceFactory.invoker(HttpServiceInvoker.httpClient(httpClient).build())
+			.serializer(serializer)
+			.build()
+			.newInstance(CountService.class);
+
+		HttpServiceExporter httpExporter = HttpServiceExporter.router(vertx)
+			.bodyLimit(1000)
+			.bodyLimit("count.large", 100000)
+			.bodyLimit("count.unlimited", -1)
+			.export(ServiceExporter.serializer(serializer)
+				.export(CountService.class, new CountServiceImpl())
+				.build());
+
+		CompletableFuture<HttpServer> promise = new CompletableFuture<>();
+		HttpServerOptions httpServerOptions = new HttpServerOptions().setHost("0.0.0.0").setPort(port);
+		CompletableFuture.runAsync(() ->
+			vertx.createHttpServer(httpServerOptions)
+				.requestHandler(httpExporter.router()::accept)
+				.listen(handler -> {
+					if (handler.failed()) {
+						promise.completeExceptionally(handler.cause());
+						return;
+					}
+					promise.complete(handler.result());
+				}));
+
+		server = promise.get(5, TimeUnit.SECONDS);
+	}
+
+	@AfterClass
+	public static void teardown() {
+		server.close();
+	}
+
+	private static ArrayList<Integer> data(int size) {
+		ArrayList<Integer> res = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			res.add(Integer.valueOf(i));
+		}
+		return res;
+	}
+
+	@Test
+	public void withinLimit_success() {
+		assertEquals(10, countService.small(new Context(), data(10)).intValue());
+		assertEquals(5000, countService.large(new Context(), data(5000)).intValue());
+	}
+
+	@Test
+	public void exceedsLimit_rejected() {
+		try {
+			countService.small(new Context(), data(5000));
+			throw new AssertionError("unreachable code");
+		}
+		catch (TechnicalException ex) {
+			assertTrue(ex.getMessage().contains("Payload Too Large") || ex.getMessage().contains("Request Entity Too Large"));
+		}
+	}
+
+	@Test
+	public void hugeContentLengthWithoutBody_noUpfrontAllocation() throws Exception {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+		List<Socket> sockets = new ArrayList<>();
+		try {
+			// each declares a gigabyte, but sends nothing of the body
+			for (int i = 0; i < 8; i++) {
+				Socket socket = new Socket("localhost", port);
+				socket.getOutputStream().write(("POST /count/unlimited HTTP/1.1\r\n"
+					+ "Host: localhost\r\n"
+					+ "Content-Type: application/json\r\n"
+					+ "Content-Length: 1073741824\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+				socket.getOutputStream().flush();
+				sockets.add(socket);
+			}
+			// served in order after the requests above on the same event loop
+			assertEquals(10, countService.unlimited(new Context(), data(10)).intValue());
+			long usedDuring = runtime.totalMemory() - runtime.freeMemory();
+			assertTrue(String.format("heap grew by %d bytes", Long.valueOf(usedDuring - usedBefore)),
+				usedDuring - usedBefore < 256L * 1024 * 1024);
+			// still waiting for their bodies rather than failed, e.g. by running out of memory
+			for (Socket socket : sockets) {
+				socket.setSoTimeout(50);
+				try {
+					int read = socket.getInputStream().read();
+					throw new AssertionError("unexpected response, read " + read);
+				}
+				catch (SocketTimeoutException ex) {
+					// expected
+				}
+			}
+		}
+		finally {
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.teris.kite.Context;
+import io.teris.kite.Name;
+import io.teris.kite.Serializer;
+import io.teris.kite.Service;
+import io.teris.kite.gson.JsonSerializer;
+import io.teris.kite.rpc.vertx.HttpServiceExporter;
+import io.teris.kite.rpc.vertx.HttpServiceInvoker;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+
+
+public class TestVertxStreaming {
+
+	@Service(replace = "io.teris.kite.rpc.TestVertxStreaming")
+	public interface RangeService {
+
+		Iterator<String> range(Context context, @Name("size") Integer size);
+
+		Iterator<Integer> failing(Context context, @Name("after") Integer after);
+	}
+
+	static final AtomicInteger produced = new AtomicInteger(0);
+
+	static class RangeServiceImpl implements RangeService {
+
+		@Override
+		public Iterator<String> range(Context context, Integer size) {
+			return IntStream.range(0, size.intValue())
+				.peek((i) -> produced.incrementAndGet())
+				.mapToObj((i) -> "element-" + i)
+				.iterator();
+		}
+
+		@Override
+		public Iterator<Integer> failing(Context context, Integer after) {
+			return IntStream.iterate(0, (i) -> i + 1)
+				.peek((i) -> {
+					if (i == after.intValue()) {
+						throw new IllegalStateException("failed at " + i);
+					}
+				})
+				.boxed()
+				.iterator();
+		}
+	}
+
+	private static HttpServer server;
+
+	private static RangeService rangeService;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		int port;
+		while (true) {
+			try (ServerSocket socket = new ServerSocket((int) (49152 + Math.random() * (65535 - 49152)))) {
+				port = socket.getLocalPort();
+				break;
+			}
+			catch (IOException e) {
+				// repeat
+			}
+		}
+
+		Vertx vertx = Vertx.vertx();
+		Serializer serializer = JsonSerializer.builder().build();
+
+		HttpClient httpClient = vertx.createHttpClient(new HttpClientOptions()
+			.setDefaultHost("localhost")
+			.setDefaultPort(port));
+
+		rangeService = ServiceFactory.invoker(HttpServiceInvoker.httpClient(httpClient).build())
+			.serializer(serializer)
+			.build()
+			.newInstance(RangeService.class);
+
+		HttpServiceExporter httpExporter = HttpServiceExporter.router(vertx)
+			.export(ServiceExporter.serializer(serializer)
+				.export(RangeService.class, new RangeServiceImpl())
+				.build());
+
+		CompletableFuture<HttpServer> promise = new CompletableFuture<>();
+		HttpServerOptions httpServerOptions = new HttpServerOptions().setHost("0.0.0.0").setPort(port);
+		CompletableFuture.runAsync(() ->
+			vertx.createHttpServer(httpServerOptions)
+				.requestHandler(httpExporter.router()::accept)
+				.listen(handler -> {
+					if (handler.failed()) {
+						promise.completeExceptionally(handler.cause());
+						return;
+					}
+					promise.complete(handler.result());
+				}));
+
+		server = promise.get(5, TimeUnit.SECONDS);
+	}
+
+	@AfterClass
+	public static void teardown() {
+		server.close();
+	}
+
+	@Test
+	public void range_allElements_inOrder() {
+		Iterator<String> res = rangeService.range(new Context(), Integer.valueOf(50000));
+		int count = 0;
+		while (res.hasNext()) {
+			assertEquals("element-" + count, res.next());
+			count++;
+		}
+		assertEquals(50000, count);
+	}
+
+	@Test
+	public void range_closedEarly_producerStops() throws Exception {
+		produced.set(0);
+		Iterator<String> res = rangeService.range(new Context(), Integer.valueOf(Integer.MAX_VALUE));
+		assertEquals("element-0", res.next());
+		((AutoCloseable) res).close();
+		Thread.sleep(200);
+		int stopped = produced.get();
+		Thread.sleep(200);
+		assertEquals(stopped, produced.get());
+		assertTrue(stopped < Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void failing_elementsThenException() {
+		Iterator<Integer> res = rangeService.failing(new Context(), Integer.valueOf(3));
+		assertEquals(0, res.next().intValue());
+		assertEquals(1, res.next().intValue());
+		assertEquals(2, res.next().intValue());
+		try {
+			res.hasNext();
+			throw new AssertionError("unreachable code");
+		}
+		catch (BusinessException ex) {
+			assertTrue(ex.getMessage().contains("failed at 3"));
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.teris.kite.Context;
+import io.teris.kite.Service;
+import io.teris.kite.gson.JsonSerializer;
+import io.teris.kite.rpc.vertx.HttpServiceExporter;
+import io.teris.kite.rpc.vertx.WebSocketServiceExporter;
+import io.teris.kite.rpc.vertx.WebSocketServiceInvoker;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+
+
+public class TestWebSocketInvocationRoundtrip extends AbstractInvocationTestsuite {
+
+	private static HttpServer server;
+
+	private static ServiceFactory creator;
+
+	private static WebSocketServiceInvoker invoker;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		preInit();
+
+		HttpServerOptions httpServerOptions = new HttpServerOptions().setHost("0.0.0.0").setPort(port);
+
+		Vertx vertx = Vertx.vertx();
+
+		HttpClient httpClient = vertx.createHttpClient(new HttpClientOptions()
+			.setDefaultHost("localhost")
+			.setDefaultPort(port));
+
+		invoker = WebSocketServiceInvoker.httpClient(httpClient)
+			.path("/kite")
+			.build();
+
+		creator = ServiceFactory.invoker(invoker)
+			.serializer(JsonSerializer.builder().build())
+			.build();
+
+		syncService = creator.newInstance(SyncService.class);
+		asyncService = creator.newInstance(AsyncService.class);
+		throwingService = creator.newInstance(ThrowingService.class);
+
+		// the HTTP exporter shares the port
+		HttpServiceExporter httpExporter = HttpServiceExporter.router(vertx)
+			.export(exporter1);
+
+		WebSocketServiceExporter exporter = WebSocketServiceExporter.path("/kite")
+			.export(exporter1)
+			.export(exporter2);
+
+		CompletableFuture<HttpServer> promise = new CompletableFuture<>();
+		CompletableFuture.runAsync(() ->
+			vertx.createHttpServer(httpServerOptions)
+				.requestHandler(httpExporter.router()::accept)
+				.websocketHandler(exporter)
+				.listen(handler -> {
+					if (handler.failed()) {
+						promise.completeExceptionally(handler.cause());
+						return;
+					}
+					promise.complete(handler.result());
+				}));
+
+		server = promise.get(5, TimeUnit.SECONDS);
+	}
+
+	@AfterClass
+	public static void teardown() throws Exception {
+		invoker.close().get();
+		server.close();
+	}
+
+	@Service
+	public interface NotServedService {
+		void dosync(Context context);
+	}
+
+	@Test
+	public void roundtrip_notFoundException() {
+		NotServedService service = creator.newInstance(NotServedService.class);
+		try {
+			service.dosync(new Context());
+			throw new AssertionError("unreachable code");
+		}
+		catch (NotFoundException ex) {
+			assertTrue(ex.getMessage().contains("Not Found"));
+		}
+	}
+
+	@Test
+	public void roundtrip_pipelined_success() throws Exception {
+		List<CompletableFuture<Double>> promises = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			promises.add(asyncService.plus(new Context(), Double.valueOf(i), Double.valueOf(1)));
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i + 1, promises.get(i).get(5, TimeUnit.SECONDS).doubleValue(), 0.001);
+		}
+	}
+
+	@Test
+	public void roundtrip_closedInvoker_throws() throws Exception {
+		WebSocketServiceInvoker closedInvoker = WebSocketServiceInvoker.httpClient(Vertx.vertx().createHttpClient()).build();
+		closedInvoker.close().get();
+		SyncService service = ServiceFactory.invoker(closedInvoker)
+			.serializer(JsonSerializer.builder().build())
+			.build()
+			.newInstance(SyncService.class);
+		try {
+			service.plus(new Context(), Double.valueOf(1), Double.valueOf(2));
+			throw new AssertionError("unreachable code");
+		}
+		catch (TechnicalException ex) {
+			assertTrue(ex.getMessage().contains("Invoker closed"));
+		}
+	}
+}
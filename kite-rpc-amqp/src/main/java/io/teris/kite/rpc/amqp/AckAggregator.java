@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+
+/**
+ * Acknowledges the deliveries of a consumer channel in batches. Requests complete in
+ * any order, but a multiple acknowledgement covers all deliveries up to its tag, so
+ * completed tags are collected and only the lowest contiguous range of settled
+ * deliveries is acknowledged at once: when it reaches the batch size, when no
+ * deliveries remain outstanding or, at the latest, after the batch delay. Rejections
+ * are sent right away and are skipped by the following acknowledgement. With a batch
+ * size of one every delivery is acknowledged on its own as it completes. A delivery
+ * counts as settled once completed even if its acknowledgement or rejection fails, and
+ * all deliveries of a channel that shut down are settled, so that neither leaves a gap
+ * holding up the acknowledgement of later deliveries.
+ */
+class AckAggregator implements ShutdownListener {
+
+	private static final Logger log = LoggerFactory.getLogger(AckAggregator.class);
+
+	// tags tracked in the bit sets before these are shifted down to the lowest unsettled tag
+	private static final int COMPACT_THRESHOLD = 4096;
+
+	private final Channel channel;
+
+	private final int batchSize;
+
+	private final long delayMillis;
+
+	private final ScheduledExecutorService scheduler;
+
+	// bit i stands for delivery tag base + i
+	private BitSet completed = new BitSet();
+
+	private BitSet rejected = new BitSet();
+
+	private long base = 1;
+
+	// all tags up to settled are completed; all up to acked are acknowledged or rejected
+	private long settled = 0;
+
+	private long acked = 0;
+
+	// the highest delivered tag
+	private long delivered = 0;
+
+	private int outstanding = 0;
+
+	private ScheduledFuture<?> scheduledFlush = null;
+
+	AckAggregator(@Nonnull Channel channel, int batchSize, long delayMillis, @Nullable ScheduledExecutorService scheduler) {
+		if (batchSize > 1 && scheduler == null) {
+			throw new IllegalArgumentException("Batched acknowledgements require a scheduler");
+		}
+		this.channel = channel;
+		this.batchSize = batchSize;
+		this.delayMillis = delayMillis;
+		this.scheduler = scheduler;
+	}
+
+	synchronized void delivered(long deliveryTag) {
+		delivered = Math.max(delivered, deliveryTag);
+		outstanding++;
+	}
+
+	void ack(long deliveryTag) throws IOException {
+		if (batchSize == 1) {
+			if (settle(deliveryTag)) {
+				channel.basicAck(deliveryTag, false);
+			}
+			return;
+		}
+		complete(deliveryTag, false);
+	}
+
+	/**
+	 * Rejects the delivery without requeueing it.
+	 */
+	void reject(long deliveryTag) throws IOException {
+		if (batchSize == 1) {
+			if (settle(deliveryTag)) {
+				channel.basicNack(deliveryTag, false, false);
+			}
+			return;
+		}
+		// reject before the tag can be covered by a multiple acknowledgement
+		try {
+			channel.basicNack(deliveryTag, false, false);
+		}
+		finally {
+			complete(deliveryTag, true);
+		}
+	}
+
+	/**
+	 * Acknowledges the completed contiguous range of deliveries.
+	 */
+	synchronized void flush() throws IOException {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		if (settled <= acked) {
+			return;
+		}
+		// the highest settled tag that was not rejected, i.e. is still unacknowledged
+		long ackTag = base + rejected.previousClearBit(index(settled));
+		long previouslyAcked = acked;
+		acked = settled;
+		if (ackTag > previouslyAcked) {
+			channel.basicAck(ackTag, true);
+		}
+		compact();
+	}
+
+	synchronized int outstanding() {
+		return outstanding;
+	}
+
+	/**
+	 * Settles all deliveries of the channel on its shutdown without acknowledging them:
+	 * the broker requeues the unacknowledged deliveries and, with automatic recovery,
+	 * the delivery tags of the recovered channel continue above them.
+	 */
+	@Override
+	public synchronized void shutdownCompleted(ShutdownSignalException cause) {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		completed = new BitSet();
+		rejected = new BitSet();
+		base = delivered + 1;
+		settled = delivered;
+		acked = delivered;
+		outstanding = 0;
+	}
+
+	/**
+	 * @return false if the delivery was settled by a channel shutdown already.
+	 */
+	private synchronized boolean settle(long deliveryTag) {
+		if (deliveryTag < base) {
+			return false;
+		}
+		outstanding--;
+		return true;
+	}
+
+	private synchronized void complete(long deliveryTag, boolean reject) throws IOException {
+		if (deliveryTag < base || completed.get(index(deliveryTag))) {
+			// already covered, e.g. completed twice or settled by a channel shutdown
+			return;
+		}
+		outstanding--;
+		completed.set(index(deliveryTag));
+		if (reject) {
+			rejected.set(index(deliveryTag));
+		}
+		settled = base + completed.nextClearBit(index(settled + 1)) - 1;
+		if (settled - acked >= batchSize || outstanding <= 0) {
+			flush();
+		}
+		else if (scheduledFlush == null && settled > acked) {
+			scheduledFlush = scheduler.schedule(this::scheduledFlush, delayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void scheduledFlush() {
+		try {
+			flush();
+		}
+		catch (IOException | RuntimeException ex) {
+			log.error("Failed to acknowledge requests", ex);
+		}
+	}
+
+	private void compact() {
+		if (acked - base < COMPACT_THRESHOLD) {
+			return;
+		}
+		int from = index(acked + 1);
+		completed = completed.get(from, Math.max(completed.length(), from));
+		rejected = rejected.get(from, Math.max(rejected.length(), from));
+		base = acked + 1;
+	}
+
+	private int index(long deliveryTag) {
+		return (int) (deliveryTag - base);
+	}
+}
@@ -6,11 +6,15 @@ package io.teris.kite.rpc.amqp;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
 
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
 
 
 abstract class AmqpServiceBase {
@@ -25,6 +29,21 @@ abstract class AmqpServiceBase {
 
 	static final String MSGTYPE_ERROR_NOTFOUND = "error:not-found";
 
+	/**
+	 * The RabbitMQ pseudo-queue for replies straight to the consuming channel; the broker
+	 * substitutes a channel specific name in reply-to, to be published to via the default
+	 * exchange.
+	 */
+	static final String DIRECT_REPLY_TO = "amq.rabbitmq.reply-to";
+
+	/**
+	 * The type of the exchange of the RabbitMQ consistent hash exchange plugin, which
+	 * distributes requests over the shard queues by the hash of their message id.
+	 */
+	static final String CONSISTENT_HASH_EXCHANGE = "x-consistent-hash";
+
+	private static final AtomicInteger consumerThreadCount = new AtomicInteger(0);
+
 	final Connection connection;
 
 	final Channel channel;
@@ -35,6 +54,36 @@ abstract class AmqpServiceBase {
 		this.channel = channel;
 	}
 
+	/**
+	 * Opens a connection delivering to consumers on a pool of its own with the given
+	 * number of threads, or on the default pool of the client library for zero. The pool
+	 * outlives automatic recoveries and is shut down when the connection is closed.
+	 */
+	@Nonnull
+	static Connection newConnection(@Nonnull ConnectionFactory connectionFactory, int consumerThreads) throws IOException, TimeoutException {
+		if (consumerThreads == 0) {
+			return connectionFactory.newConnection();
+		}
+		ExecutorService consumerPool = Executors.newFixedThreadPool(consumerThreads, (r) -> {
+			Thread thread = new Thread(r, "kite-amqp-consumer-" + consumerThreadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			Connection res = connectionFactory.newConnection(consumerPool);
+			res.addShutdownListener((cause) -> {
+				if (cause.isInitiatedByApplication()) {
+					consumerPool.shutdown();
+				}
+			});
+			return res;
+		}
+		catch (IOException | TimeoutException | RuntimeException ex) {
+			consumerPool.shutdown();
+			throw ex;
+		}
+	}
+
 	@Nonnull
 	public CompletableFuture<Void> close() {
 		CompletableFuture<Void> result = new CompletableFuture<>();
@@ -7,6 +7,7 @@ package io.teris.kite.rpc.amqp;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeoutException;
 import javax.annotation.Nonnull;
 
@@ -18,9 +19,20 @@ import io.teris.kite.rpc.amqp.AmqpServiceExporterImpl.ConfiguratorImpl;
 
 public interface AmqpServiceExporter {
 
+	/**
+	 * Binds the routes of the service exporter to the request queue of this exporter.
+	 */
 	@Nonnull
 	AmqpServiceExporter export(@Nonnull ServiceExporter serviceExporter) throws IOException;
 
+	/**
+	 * Binds the routes of the service exporter to the given named request queue, e.g.
+	 * one queue per service or group of routes. The queue is durable and shared by all
+	 * exporters consuming it; these must export the same routes to it.
+	 */
+	@Nonnull
+	AmqpServiceExporter export(@Nonnull ServiceExporter serviceExporter, @Nonnull String requestQueue) throws IOException;
+
 	@Nonnull
 	AmqpServiceExporter start();
 
@@ -34,6 +46,96 @@ public interface AmqpServiceExporter {
 
 	interface Configurator {
 
+		/**
+		 * Names the request queue that services are exported to by default. All exporters
+		 * configured with the same name consume the one durable queue as competing consumers,
+		 * each request going to one of them. Without a name, every exporter declares a
+		 * private queue of its own, so that exporters of the same routes all receive
+		 * every request.
+		 */
+		@Nonnull
+		Configurator requestQueue(@Nonnull String requestQueue);
+
+		/**
+		 * Splits every request queue into this many shard queues behind an exchange of the
+		 * RabbitMQ consistent hash exchange plugin, which must be enabled on the broker,
+		 * so that the requests to a set of routes are no longer bound by the throughput of
+		 * a single queue (default: 1, no sharding). Requests are distributed by their shard
+		 * key, see AmqpServiceInvoker.Configurator.shardKey. Each shard queue is consumed
+		 * by a single consumer that dispatches a request only once the one before it has
+		 * been responded to, so that requests with the same key are processed in order,
+		 * also with a dispatch executor. The shards, not the consumers, then bound the
+		 * requests processed concurrently per queue.
+		 */
+		@Nonnull
+		Configurator shards(int shards);
+
+		/**
+		 * Puts the channel into confirm mode acknowledging a request only once the broker
+		 * has confirmed its response (default: false).
+		 */
+		@Nonnull
+		Configurator publisherConfirms(boolean publisherConfirms);
+
+		/**
+		 * The number of channels the exporter consumes its request queues on (default: 1).
+		 * Every request queue is consumed on each channel, while the shard queues are
+		 * spread across them. The service calls complete asynchronously, so the consumers
+		 * spread the deliveries and responses over the connection rather than limit the
+		 * requests processed concurrently; maxInFlight and prefetch limit those.
+		 */
+		@Nonnull
+		Configurator consumers(int consumers);
+
+		/**
+		 * Limits the requests the broker delivers to each consumer channel ahead of their
+		 * acknowledgement, which follows the response, across all request queues and shards
+		 * consumed on it (default: 0, no limit). Other exporters on the same queues receive
+		 * the rest.
+		 */
+		@Nonnull
+		Configurator prefetch(int prefetch);
+
+		/**
+		 * Derives the prefetch from the capacity of the exporter: the consumer channels
+		 * together hold at most about maxInFlight requests that have not been acknowledged
+		 * yet, across all request queues and shards. Takes precedence over prefetch.
+		 */
+		@Nonnull
+		Configurator maxInFlight(int maxInFlight);
+
+		/**
+		 * Acknowledges requests in batches of up to this many with a single multiple
+		 * acknowledgement instead of one per request (default: 1). A batch covers only the
+		 * lowest contiguous range of responded requests and is sent when full, when no
+		 * requests remain outstanding or after the batch delay. Keep it below the prefetch.
+		 */
+		@Nonnull
+		Configurator ackBatchSize(int ackBatchSize);
+
+		/**
+		 * The longest time a responded request waits for its batched acknowledgement
+		 * (default: 10ms).
+		 */
+		@Nonnull
+		Configurator ackBatchDelayMillis(long ackBatchDelayMillis);
+
+		/**
+		 * The number of threads of the connection to deliver requests to the exporter on
+		 * (default: the pool of the client library, shared by its connections).
+		 */
+		@Nonnull
+		Configurator consumerThreads(int consumerThreads);
+
+		/**
+		 * Dispatches the requests to the services on the executor rather than on the
+		 * consumer threads of the connection, so that slow services and continuations do
+		 * not delay the deliveries of all other requests. Requests of one consumer are then
+		 * no longer dispatched one at a time (default: none, on the consumer threads).
+		 */
+		@Nonnull
+		Configurator dispatchExecutor(@Nonnull ExecutorService dispatchExecutor);
+
 		@Nonnull
 		AmqpServiceExporter requestExchange(String requestExchange) throws IOException, TimeoutException;
 	}
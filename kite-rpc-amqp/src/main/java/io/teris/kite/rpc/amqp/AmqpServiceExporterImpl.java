@@ -6,14 +6,26 @@ package io.teris.kite.rpc.amqp;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +38,7 @@ import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.Recoverable;
 
 import io.teris.kite.Context;
 import io.teris.kite.rpc.AuthenticationException;
@@ -37,53 +50,312 @@ class AmqpServiceExporterImpl extends AmqpServiceBase implements AmqpServiceExpo
 
 	private static final Logger logger = LoggerFactory.getLogger(AmqpServiceExporter.class);
 
+	// prefetch count is an unsigned short in AMQP 0-9-1
+	static final int MAX_PREFETCH = 65535;
+
 	private final String exchangeName;
 
-	private final String requestQueue = "request-" + UUID.randomUUID().toString(); // FIXME pass in
+	private final String requestQueue;
+
+	private final boolean sharedRequestQueue;
+
+	private final boolean publisherConfirms;
+
+	private final int consumers;
+
+	private final int prefetch;
+
+	private final int shards;
+
+	private final int ackBatchSize;
+
+	private final long ackBatchDelayMillis;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final ExecutorService dispatchExecutor;
+
+	private final List<ConsumerChannel> consumerChannels = new CopyOnWriteArrayList<>();
 
 	private final Map<String, ServiceExporter> serviceDispatchers = new ConcurrentHashMap<>();
 
+	private final Set<String> consumedQueues = new HashSet<>();
+
 
-	AmqpServiceExporterImpl(ConnectionFactory connectionFactory, String exchangeName) throws IOException, TimeoutException {
-		this(connectionFactory.newConnection(), exchangeName);
+	AmqpServiceExporterImpl(ConnectionFactory connectionFactory, int consumerThreads, String exchangeName, @Nullable String requestQueue, int shards, boolean publisherConfirms, int consumers, int prefetch, int ackBatchSize, long ackBatchDelayMillis, @Nullable ExecutorService dispatchExecutor) throws IOException, TimeoutException {
+		this(newConnection(connectionFactory, consumerThreads), exchangeName, requestQueue, shards, publisherConfirms, consumers, prefetch, ackBatchSize, ackBatchDelayMillis, dispatchExecutor);
 	}
 
-	AmqpServiceExporterImpl(Connection connection, String exchangeName) throws IOException {
+	AmqpServiceExporterImpl(Connection connection, String exchangeName, @Nullable String requestQueue, int shards, boolean publisherConfirms, int consumers, int prefetch, int ackBatchSize, long ackBatchDelayMillis, @Nullable ExecutorService dispatchExecutor) throws IOException {
 		super(connection, connection.createChannel());
 
 		this.exchangeName = exchangeName;
+		this.requestQueue = requestQueue != null ? requestQueue : "request-" + UUID.randomUUID().toString();
+		this.sharedRequestQueue = requestQueue != null;
+		this.shards = shards;
+		this.publisherConfirms = publisherConfirms;
+		this.consumers = consumers;
+		this.prefetch = prefetch;
+		this.ackBatchSize = ackBatchSize;
+		this.ackBatchDelayMillis = ackBatchDelayMillis;
+		this.dispatchExecutor = dispatchExecutor;
+		this.scheduler = ackBatchSize > 1 ? Executors.newSingleThreadScheduledExecutor((r) -> {
+			Thread thread = new Thread(r, "kite-amqp-ack");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
 		channel.exchangeDeclare(exchangeName, BuiltinExchangeType.TOPIC);
-
-		channel.queueDeclare(requestQueue, true, false, true, Collections.emptyMap());
-		channel.basicConsume(requestQueue, false, requestQueue,
-			new RequestConsumer(channel, exchangeName, serviceDispatchers));
+		// with automatic recovery the client re-declares the exchange, queues and bindings
+		// and restarts the consumers; requests unacknowledged at the time are redelivered
+		if (!(connection instanceof Recoverable)) {
+			logger.warn("connection to {} does not recover automatically, the exporter stops on connection loss", connection.getAddress());
+		}
 	}
 
 	static class ConfiguratorImpl implements Configurator {
 
 		private final ConnectionFactory connectionFactory;
 
+		private String requestQueue = null;
+
+		private int shards = 1;
+
+		private boolean publisherConfirms = false;
+
+		private int consumers = 1;
+
+		private int prefetch = 0;
+
+		private int maxInFlight = 0;
+
+		private int ackBatchSize = 1;
+
+		private long ackBatchDelayMillis = 10;
+
+		private int consumerThreads = 0;
+
+		private ExecutorService dispatchExecutor = null;
+
 		ConfiguratorImpl(ConnectionFactory connectionFactory) {
 			this.connectionFactory = connectionFactory;
 		}
 
+		@Nonnull
+		@Override
+		public Configurator requestQueue(@Nonnull String requestQueue) {
+			this.requestQueue = Objects.requireNonNull(requestQueue, "Request queue name must not be null");
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator shards(int shards) {
+			if (shards < 1) {
+				throw new IllegalArgumentException("Number of shards must be positive");
+			}
+			this.shards = shards;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator publisherConfirms(boolean publisherConfirms) {
+			this.publisherConfirms = publisherConfirms;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator consumers(int consumers) {
+			if (consumers < 1) {
+				throw new IllegalArgumentException("Number of consumers must be positive");
+			}
+			this.consumers = consumers;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator prefetch(int prefetch) {
+			if (prefetch < 0 || prefetch > MAX_PREFETCH) {
+				throw new IllegalArgumentException(String.format("Prefetch must be within [0, %d]", Integer.valueOf(MAX_PREFETCH)));
+			}
+			this.prefetch = prefetch;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator maxInFlight(int maxInFlight) {
+			if (maxInFlight < 1) {
+				throw new IllegalArgumentException("Maximum of requests in flight must be positive");
+			}
+			this.maxInFlight = maxInFlight;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator ackBatchSize(int ackBatchSize) {
+			if (ackBatchSize < 1) {
+				throw new IllegalArgumentException("Acknowledgement batch size must be positive");
+			}
+			this.ackBatchSize = ackBatchSize;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator ackBatchDelayMillis(long ackBatchDelayMillis) {
+			if (ackBatchDelayMillis < 1) {
+				throw new IllegalArgumentException("Acknowledgement batch delay must be positive");
+			}
+			this.ackBatchDelayMillis = ackBatchDelayMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator consumerThreads(int consumerThreads) {
+			if (consumerThreads < 1) {
+				throw new IllegalArgumentException("Number of consumer threads must be positive");
+			}
+			this.consumerThreads = consumerThreads;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator dispatchExecutor(@Nonnull ExecutorService dispatchExecutor) {
+			this.dispatchExecutor = dispatchExecutor;
+			return this;
+		}
+
 		@Nonnull
 		@Override
 		public AmqpServiceExporter requestExchange(String requestExchange) throws IOException, TimeoutException {
-			return new AmqpServiceExporterImpl(connectionFactory, requestExchange);
+			return new AmqpServiceExporterImpl(connectionFactory, consumerThreads, requestExchange, requestQueue, shards, publisherConfirms, consumers,
+				prefetch(), ackBatchSize, ackBatchDelayMillis, dispatchExecutor);
+		}
+
+		int prefetch() {
+			if (maxInFlight == 0) {
+				return prefetch;
+			}
+			// rounded up, so that every consumer channel gets at least one
+			return Math.min((maxInFlight + consumers - 1) / consumers, MAX_PREFETCH);
 		}
 	}
 
 	@Nonnull
 	@Override
 	public AmqpServiceExporter export(@Nonnull ServiceExporter serviceExporter) throws IOException  {
+		return export(serviceExporter, requestQueue, sharedRequestQueue);
+	}
+
+	@Nonnull
+	@Override
+	public AmqpServiceExporter export(@Nonnull ServiceExporter serviceExporter, @Nonnull String requestQueue) throws IOException {
+		return export(serviceExporter, requestQueue, true);
+	}
+
+	private synchronized AmqpServiceExporter export(ServiceExporter serviceExporter, String requestQueue, boolean shared) throws IOException {
+		if (consumedQueues.add(requestQueue)) {
+			if (shards > 1) {
+				declareShards(requestQueue, shared);
+			}
+			else {
+				// a shared queue outlives the exporters consuming it, keeping requests across restarts
+				channel.queueDeclare(requestQueue, true, false, !shared, Collections.emptyMap());
+				for (ConsumerChannel consumerChannel : consumerChannels()) {
+					consume(requestQueue, consumerChannel, false);
+				}
+			}
+		}
 		for (String route : serviceExporter.routes()) {
 			serviceDispatchers.put(route, serviceExporter);
-			channel.queueBind(requestQueue, exchangeName, route);
+			if (shards > 1) {
+				channel.exchangeBind(shardExchange(requestQueue), exchangeName, route);
+			}
+			else {
+				channel.queueBind(requestQueue, exchangeName, route);
+			}
 		}
 		return this;
 	}
 
+	/**
+	 * Splits the request queue into shard queues behind a consistent hash exchange, which
+	 * the routes are bound to instead of the queue. Requests with the same shard key land
+	 * in the same shard queue, which is consumed by one serial consumer of this exporter,
+	 * the shards spread across the consumer channels; a shared shard queue delivers to a
+	 * single active consumer across the exporters.
+	 */
+	private void declareShards(String requestQueue, boolean shared) throws IOException {
+		String shardExchange = shardExchange(requestQueue);
+		channel.exchangeDeclare(shardExchange, CONSISTENT_HASH_EXCHANGE, true, !shared,
+			Collections.singletonMap("hash-property", "message_id"));
+		Map<String, Object> arguments = shared ? Collections.singletonMap("x-single-active-consumer", Boolean.TRUE) : Collections.emptyMap();
+		for (int i = 0; i < shards; i++) {
+			String shardQueue = requestQueue + "-" + i;
+			channel.queueDeclare(shardQueue, true, false, !shared, arguments);
+			// the binding key is the weight of the queue on the hash ring
+			channel.queueBind(shardQueue, shardExchange, "1");
+			List<ConsumerChannel> consumerChannels = consumerChannels();
+			consume(shardQueue, consumerChannels.get(i % consumerChannels.size()), true);
+		}
+	}
+
+	static String shardExchange(String requestQueue) {
+		return requestQueue + "-shards";
+	}
+
+	/**
+	 * Opens the consumer channels on first use. All request queues are consumed on the
+	 * same channels, so that the channel-wide prefetch bounds the requests in flight
+	 * irrespective of the number of queues and shards.
+	 */
+	private List<ConsumerChannel> consumerChannels() throws IOException {
+		while (consumerChannels.size() < consumers) {
+			Channel consumerChannel = connection.createChannel();
+			if (prefetch > 0) {
+				consumerChannel.basicQos(prefetch, true);
+			}
+			PublishConfirms confirms = publisherConfirms ? PublishConfirms.enable(consumerChannel) : null;
+			AckAggregator acks = new AckAggregator(consumerChannel, ackBatchSize, ackBatchDelayMillis, scheduler);
+			consumerChannel.addShutdownListener(acks);
+			consumerChannels.add(new ConsumerChannel(consumerChannel, confirms, acks));
+		}
+		return consumerChannels;
+	}
+
+	/**
+	 * Starts a consumer of a request queue, which responds and acknowledges on the channel
+	 * the request was delivered on. A serial consumer dispatches each request only once
+	 * the one delivered before it has been responded to.
+	 */
+	private void consume(String requestQueue, ConsumerChannel consumerChannel, boolean serial) throws IOException {
+		Channel channel = consumerChannel.channel;
+		channel.basicConsume(requestQueue, false, requestQueue + "-" + consumerChannels.indexOf(consumerChannel),
+			new RequestConsumer(channel, exchangeName, serviceDispatchers, consumerChannel.confirms, consumerChannel.acks, dispatchExecutor, serial));
+	}
+
+
+	private static class ConsumerChannel {
+
+		final Channel channel;
+
+		final PublishConfirms confirms;
+
+		final AckAggregator acks;
+
+		ConsumerChannel(Channel channel, @Nullable PublishConfirms confirms, AckAggregator acks) {
+			this.channel = channel;
+			this.confirms = confirms;
+			this.acks = acks;
+		}
+	}
+
 
 	static class RequestConsumer extends DefaultConsumer implements Consumer {
 
@@ -91,15 +363,61 @@ class AmqpServiceExporterImpl extends AmqpServiceBase implements AmqpServiceExpo
 
 		private final Map<String, ServiceExporter> serviceDispatchers;
 
-		RequestConsumer(Channel channel, String exchangeName, Map<String, ServiceExporter> serviceDispatchers) {
+		private final PublishConfirms confirms;
+
+		private final AckAggregator acks;
+
+		private final ExecutorService dispatchExecutor;
+
+		private final boolean serial;
+
+		// completes once the request delivered last has been responded to
+		private CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+
+		RequestConsumer(Channel channel, String exchangeName, Map<String, ServiceExporter> serviceDispatchers, @Nullable PublishConfirms confirms, AckAggregator acks, @Nullable ExecutorService dispatchExecutor, boolean serial) {
 			super(channel);
 			this.exchangeName = exchangeName;
 			// do not copy content, assign reference
 			this.serviceDispatchers = serviceDispatchers;
+			this.confirms = confirms;
+			this.acks = acks;
+			this.dispatchExecutor = dispatchExecutor;
+			this.serial = serial;
 		}
 
 		@Override
 		public void handleDelivery(String consumerTag, Envelope envelope, BasicProperties props, byte[] body) {
+			acks.delivered(envelope.getDeliveryTag());
+			if (!serial) {
+				dispatchAsync(envelope, props, body);
+				return;
+			}
+			// deliveries of a channel arrive one at a time, so the chain follows their order
+			previous = previous
+				.thenCompose((v) -> dispatchAsync(envelope, props, body))
+				.exceptionally((t) -> null);
+		}
+
+		private CompletableFuture<Void> dispatchAsync(Envelope envelope, BasicProperties props, byte[] body) {
+			if (dispatchExecutor == null) {
+				return dispatch(envelope, props, body);
+			}
+			// slow services and their continuations must not hold up the deliveries of the connection
+			try {
+				return CompletableFuture.supplyAsync(() -> dispatch(envelope, props, body), dispatchExecutor)
+					.thenCompose(Function.identity());
+			}
+			catch (RejectedExecutionException ex) {
+				respond(props, envelope, ex);
+				return CompletableFuture.completedFuture(null);
+			}
+		}
+
+		/**
+		 * Calls the service and responds, the returned future completing once the response
+		 * has been sent or has failed.
+		 */
+		private CompletableFuture<Void> dispatch(Envelope envelope, BasicProperties props, byte[] body) {
 			try {
 				String replyTo = props.getReplyTo();
 				if (replyTo == null) {
@@ -122,8 +440,8 @@ class AmqpServiceExporterImpl extends AmqpServiceBase implements AmqpServiceExpo
 						context.put(prop.getKey(), String.valueOf(prop.getValue()));
 					}
 
-					serviceExporter.call(route, context, body)
-						.whenComplete((entry, t) -> {
+					return serviceExporter.call(route, context, body)
+						.handle((entry, t) -> {
 							if (t != null) {
 								respond(props, envelope, t);
 							}
@@ -133,14 +451,16 @@ class AmqpServiceExporterImpl extends AmqpServiceBase implements AmqpServiceExpo
 							else {
 								respond(props, envelope, entry.getKey(), entry.getValue());
 							}
+							return null;
 						});
 				}
 				else {
 					throw new IOException(String.format("unsupported message type %s", props.getType()));
 				}
 			}
-			catch (IOException ex) {
+			catch (IOException | RuntimeException ex) {
 				respond(props, envelope, ex);
+				return CompletableFuture.completedFuture(null);
 			}
 		}
 
@@ -157,18 +477,18 @@ class AmqpServiceExporterImpl extends AmqpServiceBase implements AmqpServiceExpo
 
 				if (replyTo != null) {
 					String message = t.getMessage() != null ? t.getMessage() : t.toString();
-					getChannel().basicPublish(exchangeName, replyTo, props, message.getBytes());
-					getChannel().basicAck(envelope.getDeliveryTag(), false);
+					publish(replyTo, props, message.getBytes(), envelope);
 					logger.debug("server sent response for {} to '{}'", props.getCorrelationId(), replyTo);
 				}
 				else {
-					getChannel().basicAck(envelope.getDeliveryTag(), false);
+					acknowledge(props, envelope);
 					logger.error(String.format("No address to reply for Id %s", props.getCorrelationId()), t);
 				}
 			}
-			catch (IOException ex) {
-				// FIXME implement with retries, log
+			// also an AlreadyClosedException of a lost connection, the request must be settled
+			catch (IOException | RuntimeException ex) {
 				logger.error(String.format("Failed to send response to request Id %s", props.getCorrelationId()), ex);
+				reject(props, envelope);
 			}
 		}
 
@@ -185,15 +505,62 @@ class AmqpServiceExporterImpl extends AmqpServiceBase implements AmqpServiceExpo
 					.type(MSGTYPE_RESPONSE)
 					.build();
 
-				getChannel().basicPublish(exchangeName, replyTo, props, data);
-				getChannel().basicAck(envelope.getDeliveryTag(), false);
+				publish(replyTo, props, data, envelope);
 				logger.debug("server sent response for {} to '{}'", props.getCorrelationId(), replyTo);
 			}
-			catch (IOException ex) {
-				// FIXME implement with retries, log
+			catch (IOException | RuntimeException ex) {
 				logger.error(String.format("Failed to send response to request Id %s", props.getCorrelationId()), ex);
+				reject(props, envelope);
+			}
+		}
+
+		/**
+		 * Settles a request that could not be responded to, so that it neither holds on to
+		 * the prefetch nor blocks the batched acknowledgement of the requests after it.
+		 */
+		private void reject(BasicProperties props, Envelope envelope) {
+			try {
+				acks.reject(envelope.getDeliveryTag());
+			}
+			catch (IOException | RuntimeException ex) {
+				logger.error(String.format("Failed to reject request Id %s", props.getCorrelationId()), ex);
+			}
+		}
+
+		private void acknowledge(BasicProperties props, Envelope envelope) {
+			try {
+				acks.ack(envelope.getDeliveryTag());
+			}
+			catch (IOException | RuntimeException ex) {
+				logger.error(String.format("Failed to acknowledge request Id %s", props.getCorrelationId()), ex);
 			}
 		}
+
+		/**
+		 * Publishes the response and acknowledges the request, with publisher confirms
+		 * only once the broker has confirmed the response. A request whose response
+		 * was rejected is not redelivered as it has been executed already.
+		 */
+		private void publish(String replyTo, BasicProperties props, byte[] data, Envelope envelope) throws IOException {
+			// direct replies go via the default exchange to the channel named in reply-to
+			String exchangeName = replyTo.startsWith(DIRECT_REPLY_TO) ? "" : this.exchangeName;
+			if (confirms == null) {
+				getChannel().basicPublish(exchangeName, replyTo, props, data);
+				// the response is out, a failed acknowledgement must not reject the request
+				acknowledge(props, envelope);
+				return;
+			}
+			confirms.publish(getChannel(), (channel) -> channel.basicPublish(exchangeName, replyTo, props, data))
+				.whenComplete((res, t) -> {
+					if (t != null) {
+						logger.error(String.format("Failed to send response to request Id %s", props.getCorrelationId()), t);
+						reject(props, envelope);
+					}
+					else {
+						acknowledge(props, envelope);
+					}
+				});
+		}
 	}
 
 	@Nonnull
@@ -201,4 +568,21 @@ class AmqpServiceExporterImpl extends AmqpServiceBase implements AmqpServiceExpo
 	public AmqpServiceExporter start() {
 		return this;
 	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Void> close() {
+		for (ConsumerChannel consumerChannel : consumerChannels) {
+			try {
+				consumerChannel.acks.flush();
+			}
+			catch (IOException | RuntimeException ex) {
+				logger.error("Failed to acknowledge requests on close", ex);
+			}
+		}
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		return super.close();
+	}
 }
@@ -6,7 +6,9 @@ package io.teris.kite.rpc.amqp;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 
 import com.rabbitmq.client.ConnectionFactory;
@@ -30,6 +32,92 @@ public interface AmqpServiceInvoker extends ServiceInvoker {
 
 	interface Configurator {
 
+		/**
+		 * The number of channels to publish requests over concurrently (default: the
+		 * number of available processors).
+		 */
+		@Nonnull
+		Configurator publishChannels(int publishChannels);
+
+		/**
+		 * Puts the publishing channels into confirm mode failing a call as soon as the
+		 * broker rejects its request or the channel closes before confirming it, rather
+		 * than leaving it hanging (default: false).
+		 */
+		@Nonnull
+		Configurator publisherConfirms(boolean publisherConfirms);
+
+		/**
+		 * Receives responses via the RabbitMQ direct reply-to pseudo-queue on the publishing
+		 * channels instead of a response queue of its own bound to the request exchange,
+		 * saving the queue and the exchange routing per response (default: false).
+		 */
+		@Nonnull
+		Configurator directReplyTo(boolean directReplyTo);
+
+		/**
+		 * The time to wait for a response before failing the call with a
+		 * RequestTimeoutException, zero to wait forever (default: 30 seconds).
+		 */
+		@Nonnull
+		Configurator requestTimeoutMillis(long timeoutMillis);
+
+		/**
+		 * Caps the number of calls awaiting a response (default: unlimited).
+		 */
+		@Nonnull
+		Configurator maxPendingRequests(int maxPending);
+
+		/**
+		 * The time a call blocks while the maximum of pending requests is reached before
+		 * failing with a TechnicalException (default: 0, failing immediately).
+		 */
+		@Nonnull
+		Configurator maxPendingWaitMillis(long waitMillis);
+
+		/**
+		 * How long to buffer calls while the connection is recovering automatically, and
+		 * to retain the calls on idempotent routes that were in flight when it failed,
+		 * before failing them (default: 10 seconds). Applies to connections with the
+		 * automatic recovery of the client library enabled, which is its default.
+		 */
+		@Nonnull
+		Configurator recoveryWindowMillis(long windowMillis);
+
+		/**
+		 * Selects the routes safe to call twice: their calls in flight when the connection
+		 * fails are re-published after it recovers, calls to all other routes fail fast
+		 * (default: none).
+		 */
+		@Nonnull
+		Configurator idempotentRoutes(@Nonnull Predicate<String> idempotentRoutes);
+
+		/**
+		 * The number of threads of the connection to deliver responses to the invoker on
+		 * (default: the pool of the client library, shared by its connections).
+		 */
+		@Nonnull
+		Configurator consumerThreads(int consumerThreads);
+
+		/**
+		 * Processes the responses and completes the calls on the executor rather than on
+		 * the consumer threads of the connection, so that slow continuations of one call
+		 * do not delay the responses to all others (default: none, on the consumer threads).
+		 * Calls failed by a timeout or an unconfirmed request complete on it too.
+		 */
+		@Nonnull
+		Configurator dispatchExecutor(@Nonnull ExecutorService dispatchExecutor);
+
+		/**
+		 * Names the context entry whose value keys the requests for sharded exporters: the
+		 * requests with the same value are published on the same channel and go to the
+		 * same shard queue, so that they stay in order. The key is carried as the message
+		 * id; without the entry, or by default, the request id is used, spreading requests
+		 * evenly across the shards.
+		 */
+		@Nonnull
+		Configurator shardKey(@Nonnull String contextKey);
+
 		@Nonnull
 		AmqpServiceInvoker requestExchange(String exchangeName) throws IOException, TimeoutException;
 	}
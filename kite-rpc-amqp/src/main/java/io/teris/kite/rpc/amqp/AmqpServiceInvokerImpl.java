@@ -12,8 +12,12 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -28,11 +32,15 @@ import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.Recoverable;
 
 import io.teris.kite.Context;
 import io.teris.kite.rpc.AuthenticationException;
 import io.teris.kite.rpc.NotFoundException;
+import io.teris.kite.rpc.PendingRequests;
 import io.teris.kite.rpc.TechnicalException;
+import io.teris.kite.rpc.amqp.ChannelPool.ChannelAction;
+import io.teris.kite.rpc.amqp.ConnectionRecovery.Request;
 
 
 class AmqpServiceInvokerImpl extends AmqpServiceBase implements AmqpServiceInvoker {
@@ -41,41 +49,189 @@ class AmqpServiceInvokerImpl extends AmqpServiceBase implements AmqpServiceInvok
 
 	private final String exchangeName;
 
-	private final Map<String, Entry<Context, CompletableFuture<Entry<Context, byte[]>>>> requestStore = new ConcurrentHashMap<>();
+	private final PendingRequests pendingRequests;
 
-	private final String clientId;
+	private final String replyTo;
 
+	private final ChannelPool publishChannels;
 
-	AmqpServiceInvokerImpl(ConnectionFactory connectionFactory, String exchangeName) throws IOException, TimeoutException {
-		this(connectionFactory.newConnection(), exchangeName);
+	private final Predicate<String> idempotentRoutes;
+
+	private final String shardKey;
+
+	private final ExecutorService dispatchExecutor;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final ConnectionRecovery recovery;
+
+
+	AmqpServiceInvokerImpl(ConnectionFactory connectionFactory, int consumerThreads, String exchangeName, PendingRequests pendingRequests, int publishChannels, boolean publisherConfirms, boolean directReplyTo, long recoveryWindowMillis, Predicate<String> idempotentRoutes, @Nullable ExecutorService dispatchExecutor, @Nullable String shardKey) throws IOException, TimeoutException {
+		this(newConnection(connectionFactory, consumerThreads), exchangeName, pendingRequests, publishChannels, publisherConfirms, directReplyTo, recoveryWindowMillis, idempotentRoutes, dispatchExecutor, shardKey);
 	}
 
-	AmqpServiceInvokerImpl(Connection connection, String exchangeName) throws IOException {
+	AmqpServiceInvokerImpl(Connection connection, String exchangeName, PendingRequests pendingRequests, int publishChannels, boolean publisherConfirms, boolean directReplyTo, long recoveryWindowMillis, Predicate<String> idempotentRoutes, @Nullable ExecutorService dispatchExecutor, @Nullable String shardKey) throws IOException {
 		super(connection, connection.createChannel());
 		this.exchangeName = exchangeName;
+		this.pendingRequests = pendingRequests;
+		this.idempotentRoutes = idempotentRoutes;
+		this.shardKey = shardKey;
+		this.dispatchExecutor = dispatchExecutor;
 
 		channel.exchangeDeclare(exchangeName, BuiltinExchangeType.TOPIC);
 
-		clientId = UUID.randomUUID().toString();
-		// routed via the same exchange but to a queue with the clientId name via routing key being clientId
-		String responseQueueName = "response-" + clientId;
-		channel.queueDeclare(responseQueueName, true, true, true, Collections.emptyMap());
-		channel.queueBind(responseQueueName, exchangeName, clientId);
-		channel.basicConsume(responseQueueName, true, clientId, new ResponseReceiver(channel, clientId, requestStore));
+		if (directReplyTo) {
+			// replies arrive on the channel the request was published on, which must be consuming
+			// from the pseudo-queue in no-ack mode beforehand
+			replyTo = DIRECT_REPLY_TO;
+			this.publishChannels = new ChannelPool(connection, publishChannels, publisherConfirms, (publishChannel) ->
+				publishChannel.basicConsume(DIRECT_REPLY_TO, true, new ResponseReceiver(publishChannel, DIRECT_REPLY_TO, pendingRequests, dispatchExecutor)));
+		}
+		else {
+			String clientId = UUID.randomUUID().toString();
+			// routed via the same exchange but to a queue with the clientId name via routing key being clientId
+			String responseQueueName = "response-" + clientId;
+			channel.queueDeclare(responseQueueName, true, true, true, Collections.emptyMap());
+			channel.queueBind(responseQueueName, exchangeName, clientId);
+			channel.basicConsume(responseQueueName, true, clientId, new ResponseReceiver(channel, responseQueueName, pendingRequests, dispatchExecutor));
+			replyTo = clientId;
+			this.publishChannels = new ChannelPool(connection, publishChannels, publisherConfirms, null);
+		}
+
+		if (connection instanceof Recoverable) {
+			scheduler = Executors.newSingleThreadScheduledExecutor((r) -> {
+				Thread thread = new Thread(r, "kite-amqp-recovery");
+				thread.setDaemon(true);
+				return thread;
+			});
+			recovery = new ConnectionRecovery(pendingRequests, recoveryWindowMillis, scheduler, this::publish);
+			recovery.attach(connection);
+		}
+		else {
+			log.warn("connection to {} does not recover automatically, calls will fail on connection loss", connection.getAddress());
+			scheduler = null;
+			recovery = null;
+		}
 	}
 
 	static class ConfiguratorImpl implements Configurator {
 
 		private final ConnectionFactory connectionFactory;
 
+		private final PendingRequests.Builder pendingRequests = PendingRequests.builder();
+
+		private int publishChannels = Runtime.getRuntime().availableProcessors();
+
+		private boolean publisherConfirms = false;
+
+		private boolean directReplyTo = false;
+
+		private long recoveryWindowMillis = 10000;
+
+		private Predicate<String> idempotentRoutes = (route) -> false;
+
+		private int consumerThreads = 0;
+
+		private ExecutorService dispatchExecutor = null;
+
+		private String shardKey = null;
+
 		ConfiguratorImpl(ConnectionFactory connectionFactory) {
 			this.connectionFactory = connectionFactory;
 		}
 
+		@Nonnull
+		@Override
+		public Configurator publishChannels(int publishChannels) {
+			if (publishChannels < 1) {
+				throw new IllegalArgumentException("Number of publish channels must be positive");
+			}
+			this.publishChannels = publishChannels;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator publisherConfirms(boolean publisherConfirms) {
+			this.publisherConfirms = publisherConfirms;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator directReplyTo(boolean directReplyTo) {
+			this.directReplyTo = directReplyTo;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator requestTimeoutMillis(long timeoutMillis) {
+			pendingRequests.timeoutMillis(timeoutMillis);
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator maxPendingRequests(int maxPending) {
+			pendingRequests.maxPending(maxPending);
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator maxPendingWaitMillis(long waitMillis) {
+			pendingRequests.maxPendingWaitMillis(waitMillis);
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator recoveryWindowMillis(long windowMillis) {
+			if (windowMillis < 0) {
+				throw new IllegalArgumentException("Recovery window must not be negative");
+			}
+			this.recoveryWindowMillis = windowMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator idempotentRoutes(@Nonnull Predicate<String> idempotentRoutes) {
+			this.idempotentRoutes = idempotentRoutes;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator consumerThreads(int consumerThreads) {
+			if (consumerThreads < 1) {
+				throw new IllegalArgumentException("Number of consumer threads must be positive");
+			}
+			this.consumerThreads = consumerThreads;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator dispatchExecutor(@Nonnull ExecutorService dispatchExecutor) {
+			this.dispatchExecutor = dispatchExecutor;
+			pendingRequests.timeoutExecutor(dispatchExecutor);
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator shardKey(@Nonnull String contextKey) {
+			this.shardKey = Objects.requireNonNull(contextKey, "Shard key must not be null");
+			return this;
+		}
+
 		@Nonnull
 		@Override
 		public AmqpServiceInvoker requestExchange(String exchangeName) throws IOException, TimeoutException {
-			return new AmqpServiceInvokerImpl(connectionFactory, exchangeName);
+			return new AmqpServiceInvokerImpl(connectionFactory, consumerThreads, exchangeName, pendingRequests.build(), publishChannels,
+				publisherConfirms, directReplyTo, recoveryWindowMillis, idempotentRoutes, dispatchExecutor, shardKey);
 		}
 	}
 
@@ -84,55 +240,130 @@ class AmqpServiceInvokerImpl extends AmqpServiceBase implements AmqpServiceInvok
 	public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] outgoing) {
 		String correlationId = context.get(Context.X_REQUEST_ID_KEY);
 		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		boolean registered = false;
 		try {
 			Objects.requireNonNull(correlationId, "Context contains no " + Context.X_REQUEST_ID_KEY);
 			@SuppressWarnings("unchecked")
 			Map<String, Object> headers = (Map) context;
+			String messageId = shardKey != null ? context.get(shardKey) : null;
 			BasicProperties props = new BasicProperties.Builder()
 				.correlationId(correlationId)
-				.replyTo(clientId)
+				// hashed by sharded exporters to pick the shard queue
+				.messageId(messageId != null ? messageId : correlationId)
+				.replyTo(replyTo)
 				.contentType(context.get(Context.CONTENT_TYPE_KEY))
 				.contentEncoding("UTF-8")
 				.headers(headers)
 				.type(MSGTYPE_REQUEST)
 				.build();
-				requestStore.put(correlationId, new SimpleEntry<>(context, promise));
-				channel.basicPublish(exchangeName, route, props, outgoing);
-			log.debug("client sent request {} to '{}'", correlationId, exchangeName);
+			pendingRequests.register(correlationId, context, promise);
+			registered = true;
+			Request request = new Request(correlationId, route, props, outgoing, promise, idempotentRoutes.test(route));
+			if (recovery == null || !recovery.buffer(request)) {
+				send(request);
+			}
 		}
 		catch (Exception ex) {
-			if (correlationId != null) {
-				requestStore.remove(correlationId);
+			if (registered) {
+				pendingRequests.remove(correlationId);
 			}
 			promise.completeExceptionally(ex);
 		}
 		return promise;
 	}
 
+	private void send(Request request) throws IOException {
+		if (recovery != null && request.idempotent) {
+			recovery.track(request);
+		}
+		try {
+			publish(request);
+		}
+		catch (IOException | RuntimeException ex) {
+			// the connection may have failed since checking, then the request waits for recovery
+			if (recovery == null || connection.isOpen() || !recovery.buffer(request)) {
+				throw ex;
+			}
+		}
+	}
+
+	private void publish(Request request) throws IOException {
+		ChannelAction action = (publishChannel) -> publishChannel.basicPublish(exchangeName, request.route, request.props, request.body);
+		// requests of a shard key stay in order only if published on the same channel
+		(shardKey != null ? publishChannels.publish(request.props.getMessageId(), action) : publishChannels.publish(action))
+			.whenComplete((res, t) -> {
+				// a response may have arrived before the confirm, then the call is complete; idempotent
+				// requests unconfirmed on connection loss are re-published after recovery
+				if (t != null && !(recovery != null && request.idempotent && !connection.isOpen())
+					&& pendingRequests.remove(request.correlationId) != null) {
+					fail(request.promise, t);
+				}
+			});
+		log.debug("client sent request {} to '{}'", request.correlationId, exchangeName);
+	}
+
+	/**
+	 * Fails a call whose request the broker did not confirm, on the dispatch executor if
+	 * any, so that the continuations of the call do not run on the connection thread.
+	 */
+	private void fail(CompletableFuture<Entry<Context, byte[]>> promise, Throwable t) {
+		if (dispatchExecutor != null) {
+			try {
+				dispatchExecutor.execute(() -> promise.completeExceptionally(t));
+				return;
+			}
+			catch (RejectedExecutionException ex) {
+				// failed on the connection thread rather than never
+			}
+		}
+		promise.completeExceptionally(t);
+	}
+
 	static class ResponseReceiver extends DefaultConsumer implements Consumer {
 
-		private final String clientId;
+		private final String responseQueueName;
 
-		private final Map<String, Entry<Context, CompletableFuture<Entry<Context, byte[]>>>> requestStore;
+		private final PendingRequests pendingRequests;
 
-		ResponseReceiver(Channel channel, String clientId, Map<String, Entry<Context, CompletableFuture<Entry<Context, byte[]>>>> requestStore) {
+		private final ExecutorService dispatchExecutor;
+
+		ResponseReceiver(Channel channel, String responseQueueName, PendingRequests pendingRequests, @Nullable ExecutorService dispatchExecutor) {
 			super(channel);
-			this.clientId = clientId;
-			this.requestStore = requestStore;
+			this.responseQueueName = responseQueueName;
+			this.pendingRequests = pendingRequests;
+			this.dispatchExecutor = dispatchExecutor;
 		}
 
 		@Override
 		public void handleDelivery(String consumerTag, Envelope envelope, BasicProperties props, byte[] body) {
+			if (dispatchExecutor == null) {
+				receive(props, body);
+				return;
+			}
+			// continuations of the call must not hold up the deliveries of the connection
+			try {
+				dispatchExecutor.execute(() -> receive(props, body));
+			}
+			catch (RejectedExecutionException ex) {
+				Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = pendingRequests.remove(props.getCorrelationId());
+				if (entry != null) {
+					entry.getValue().completeExceptionally(new TechnicalException("Response dispatch rejected", ex));
+				}
+			}
+		}
+
+		private void receive(BasicProperties props, byte[] body) {
 			String correlationId = null;
 			try {
 				correlationId = props.getCorrelationId();
 
-				Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = requestStore.remove(correlationId);
-				if (entry == null || entry.getValue() == null) {
+				Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = pendingRequests.remove(correlationId);
+				if (entry == null) {
+					// timed out or never sent by this client
 					throw new IOException("No request information found");
 				}
 
-				log.debug("client received response for {} on  '{}'", correlationId, "response-" + clientId);
+				log.debug("client received response for {} on  '{}'", correlationId, responseQueueName);
 
 				CompletableFuture<Entry<Context, byte[]>> promise = entry.getValue();
 				if (MSGTYPE_RESPONSE.equals(props.getType())) {
@@ -159,7 +390,7 @@ class AmqpServiceInvokerImpl extends AmqpServiceBase implements AmqpServiceInvok
 				}
 			}
 			catch (IOException ex) {
-				log.error(String.format("client %s from 'response-%s' failed to process", correlationId, clientId), ex);
+				log.error(String.format("client %s from '%s' failed to process", correlationId, responseQueueName), ex);
 			}
 		}
 	}
@@ -169,4 +400,18 @@ class AmqpServiceInvokerImpl extends AmqpServiceBase implements AmqpServiceInvok
 	public AmqpServiceInvoker start()  {
 		return this;
 	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Void> close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		pendingRequests.failAll(new TechnicalException("Invoker closed"));
+		return super.close();
+	}
+
+	int retained() {
+		return recovery != null ? recovery.retained() : 0;
+	}
 }
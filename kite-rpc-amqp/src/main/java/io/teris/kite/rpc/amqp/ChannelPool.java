@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+
+/**
+ * A fixed set of channels for publishing from arbitrary caller threads. A channel
+ * is used by one thread at a time: a caller takes the first free channel starting
+ * from a round-robin position and only waits for the channel at that position if
+ * all of them are in use. Messages published with a key all go on the channel the key
+ * is pinned to, as the broker keeps messages in order per publishing channel only.
+ * With publisher confirms each channel tracks its own. The channels are closed with
+ * their connection.
+ */
+class ChannelPool {
+
+	@FunctionalInterface
+	interface ChannelAction {
+
+		void run(@Nonnull Channel channel) throws IOException;
+	}
+
+	private final Channel[] channels;
+
+	private static final CompletableFuture<Void> UNCONFIRMED = CompletableFuture.completedFuture(null);
+
+	private final ReentrantLock[] locks;
+
+	private final PublishConfirms[] confirms;
+
+	private final AtomicInteger next = new AtomicInteger(0);
+
+	/**
+	 * @param initializer runs on every channel once created, e.g. to consume from it.
+	 */
+	ChannelPool(@Nonnull Connection connection, int size, boolean publisherConfirms, @Nullable ChannelAction initializer) throws IOException {
+		if (size < 1) {
+			throw new IllegalArgumentException("Pool size must be positive");
+		}
+		channels = new Channel[size];
+		locks = new ReentrantLock[size];
+		confirms = publisherConfirms ? new PublishConfirms[size] : null;
+		for (int i = 0; i < size; i++) {
+			channels[i] = connection.createChannel();
+			locks[i] = new ReentrantLock();
+			if (confirms != null) {
+				confirms[i] = PublishConfirms.enable(channels[i]);
+			}
+			if (initializer != null) {
+				initializer.run(channels[i]);
+			}
+		}
+	}
+
+	/**
+	 * Publishes on a pooled channel returning the future of the broker confirm, or a
+	 * completed future without publisher confirms.
+	 */
+	@Nonnull
+	CompletableFuture<Void> publish(@Nonnull ChannelAction action) throws IOException {
+		return publish(acquire(), action);
+	}
+
+	/**
+	 * Publishes on the channel the key is pinned to, waiting for it if in use, so that
+	 * the messages of a key reach their queue in the order they were published.
+	 */
+	@Nonnull
+	CompletableFuture<Void> publish(@Nonnull String key, @Nonnull ChannelAction action) throws IOException {
+		int index = Math.floorMod(key.hashCode(), channels.length);
+		locks[index].lock();
+		return publish(index, action);
+	}
+
+	private CompletableFuture<Void> publish(int index, ChannelAction action) throws IOException {
+		try {
+			if (confirms != null) {
+				return confirms[index].publish(channels[index], action);
+			}
+			action.run(channels[index]);
+			return UNCONFIRMED;
+		}
+		finally {
+			locks[index].unlock();
+		}
+	}
+
+	private int acquire() {
+		int start = Math.floorMod(next.getAndIncrement(), channels.length);
+		for (int i = 0; i < channels.length; i++) {
+			int index = (start + i) % channels.length;
+			if (locks[index].tryLock()) {
+				return index;
+			}
+		}
+		locks[start].lock();
+		return start;
+	}
+
+	int size() {
+		return channels.length;
+	}
+}
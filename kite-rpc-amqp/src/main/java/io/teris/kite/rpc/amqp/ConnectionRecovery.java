@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.PendingRequests;
+import io.teris.kite.rpc.TechnicalException;
+
+
+/**
+ * Carries the calls of an invoker across an automatic recovery of its connection.
+ * The client library reconnects and re-declares the recorded exchanges, queues,
+ * bindings and consumers; meanwhile responses to requests in flight are lost. Those
+ * on idempotent routes are retained and re-published once the connection has
+ * recovered, all others fail fast. New calls are buffered for the recovery window
+ * and published on recovery, or failed together with the retained ones if the
+ * connection does not recover in time.
+ */
+class ConnectionRecovery implements ShutdownListener, RecoveryListener {
+
+	private static final Logger log = LoggerFactory.getLogger(ConnectionRecovery.class);
+
+	@FunctionalInterface
+	interface Publisher {
+
+		void publish(@Nonnull Request request) throws IOException;
+	}
+
+	static final class Request {
+
+		final String correlationId;
+
+		final String route;
+
+		final BasicProperties props;
+
+		final byte[] body;
+
+		final CompletableFuture<Entry<Context, byte[]>> promise;
+
+		final boolean idempotent;
+
+		Request(String correlationId, String route, BasicProperties props, byte[] body, CompletableFuture<Entry<Context, byte[]>> promise, boolean idempotent) {
+			this.correlationId = correlationId;
+			this.route = route;
+			this.props = props;
+			this.body = body;
+			this.promise = promise;
+			this.idempotent = idempotent;
+		}
+	}
+
+	private enum State { CONNECTED, RECOVERING, FAILED }
+
+	private final PendingRequests pendingRequests;
+
+	private final long windowMillis;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final Publisher publisher;
+
+	private final Map<String, Request> retained = new ConcurrentHashMap<>();
+
+	private State state = State.CONNECTED;
+
+	private ScheduledFuture<?> windowExpiry = null;
+
+	ConnectionRecovery(@Nonnull PendingRequests pendingRequests, long windowMillis, @Nonnull ScheduledExecutorService scheduler, @Nonnull Publisher publisher) {
+		this.pendingRequests = pendingRequests;
+		this.windowMillis = windowMillis;
+		this.scheduler = scheduler;
+		this.publisher = publisher;
+	}
+
+	/**
+	 * Listens to the shutdown and recovery of a connection implementing Recoverable.
+	 */
+	void attach(@Nonnull Connection connection) {
+		connection.addShutdownListener(this);
+		((Recoverable) connection).addRecoveryListener(this);
+	}
+
+	/**
+	 * Keeps a request on an idempotent route until it completes, to re-publish it should
+	 * the connection fail before the response arrives.
+	 */
+	void track(@Nonnull Request request) {
+		retain(request);
+	}
+
+	/**
+	 * Buffers the request while the connection is recovering.
+	 *
+	 * @return false if connected and the request should be published right away.
+	 * @throws TechnicalException if the connection has not recovered within the window.
+	 */
+	synchronized boolean buffer(@Nonnull Request request) {
+		switch (state) {
+			case CONNECTED:
+				return false;
+			case RECOVERING:
+				retain(request);
+				return true;
+			default:
+				throw notRecovered();
+		}
+	}
+
+	@Override
+	public void shutdownCompleted(ShutdownSignalException cause) {
+		if (cause.isInitiatedByApplication()) {
+			return;
+		}
+		synchronized (this) {
+			if (state == State.RECOVERING) {
+				return;
+			}
+			log.warn("connection lost, recovering for up to {} ms: {}", Long.valueOf(windowMillis), cause.getMessage());
+			state = State.RECOVERING;
+			windowExpiry = scheduler.schedule(this::expire, windowMillis, TimeUnit.MILLISECONDS);
+		}
+		// responses to requests in flight are lost with the connection
+		pendingRequests.failAll(new TechnicalException("Connection lost awaiting the response"),
+			(correlationId) -> !retained.containsKey(correlationId));
+	}
+
+	@Override
+	public void handleRecovery(Recoverable recoverable) {
+		List<Request> requests;
+		synchronized (this) {
+			log.info("connection recovered, re-publishing {} requests", Integer.valueOf(retained.size()));
+			state = State.CONNECTED;
+			if (windowExpiry != null) {
+				windowExpiry.cancel(false);
+				windowExpiry = null;
+			}
+			requests = new ArrayList<>(retained.values());
+		}
+		for (Request request : requests) {
+			if (!request.idempotent) {
+				retained.remove(request.correlationId);
+			}
+			if (request.promise.isDone()) {
+				continue;
+			}
+			try {
+				publisher.publish(request);
+			}
+			catch (IOException | RuntimeException ex) {
+				if (pendingRequests.remove(request.correlationId) != null) {
+					request.promise.completeExceptionally(ex);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void handleRecoveryStarted(Recoverable recoverable) {
+		// nothing to do before the topology is recovered
+	}
+
+	int retained() {
+		return retained.size();
+	}
+
+	private void retain(Request request) {
+		retained.put(request.correlationId, request);
+		request.promise.whenComplete((res, t) -> retained.remove(request.correlationId, request));
+	}
+
+	private void expire() {
+		synchronized (this) {
+			if (state != State.RECOVERING) {
+				return;
+			}
+			log.error("connection not recovered within {} ms", Long.valueOf(windowMillis));
+			state = State.FAILED;
+			windowExpiry = null;
+		}
+		for (Request request : new ArrayList<>(retained.values())) {
+			retained.remove(request.correlationId);
+			if (pendingRequests.remove(request.correlationId) != null) {
+				request.promise.completeExceptionally(notRecovered());
+			}
+		}
+	}
+
+	private TechnicalException notRecovered() {
+		return new TechnicalException(String.format("Connection not recovered within %d ms", Long.valueOf(windowMillis)));
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.annotation.Nonnull;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import io.teris.kite.rpc.TechnicalException;
+import io.teris.kite.rpc.amqp.ChannelPool.ChannelAction;
+
+
+/**
+ * Tracks publisher confirms of a channel in confirm mode without blocking: every
+ * publish is registered under its delivery tag and completed when the broker acks
+ * or nacks it, singly or with all tags up to the given one (multiple=true), or
+ * failed when the channel shuts down before the confirm arrives.
+ */
+class PublishConfirms implements ConfirmListener, ShutdownListener {
+
+	private final ConcurrentNavigableMap<Long, CompletableFuture<Void>> outstanding = new ConcurrentSkipListMap<>();
+
+	private PublishConfirms() {}
+
+	@Nonnull
+	static PublishConfirms enable(@Nonnull Channel channel) throws IOException {
+		PublishConfirms res = new PublishConfirms();
+		channel.confirmSelect();
+		channel.addConfirmListener(res);
+		channel.addShutdownListener(res);
+		return res;
+	}
+
+	/**
+	 * Publishes on the channel returning the future of its confirm. Synchronized as the
+	 * delivery tag must be taken and used by the same publish.
+	 */
+	@Nonnull
+	synchronized CompletableFuture<Void> publish(@Nonnull Channel channel, @Nonnull ChannelAction action) throws IOException {
+		Long deliveryTag = Long.valueOf(channel.getNextPublishSeqNo());
+		CompletableFuture<Void> res = new CompletableFuture<>();
+		outstanding.put(deliveryTag, res);
+		try {
+			action.run(channel);
+		}
+		catch (IOException | RuntimeException ex) {
+			outstanding.remove(deliveryTag);
+			throw ex;
+		}
+		return res;
+	}
+
+	@Override
+	public void handleAck(long deliveryTag, boolean multiple) {
+		complete(deliveryTag, multiple, null);
+	}
+
+	@Override
+	public void handleNack(long deliveryTag, boolean multiple) {
+		complete(deliveryTag, multiple, new TechnicalException("Message rejected by the broker"));
+	}
+
+	@Override
+	public void shutdownCompleted(ShutdownSignalException cause) {
+		complete(Long.MAX_VALUE, true, new TechnicalException("Channel closed before the broker confirmed the message", cause));
+	}
+
+	int outstanding() {
+		return outstanding.size();
+	}
+
+	private void complete(long deliveryTag, boolean multiple, Throwable t) {
+		if (multiple) {
+			NavigableMap<Long, CompletableFuture<Void>> confirmed = outstanding.headMap(Long.valueOf(deliveryTag), true);
+			Entry<Long, CompletableFuture<Void>> entry;
+			while ((entry = confirmed.pollFirstEntry()) != null) {
+				complete(entry.getValue(), t);
+			}
+		}
+		else {
+			CompletableFuture<Void> promise = outstanding.remove(Long.valueOf(deliveryTag));
+			if (promise != null) {
+				complete(promise, t);
+			}
+		}
+	}
+
+	private static void complete(CompletableFuture<Void> promise, Throwable t) {
+		if (t != null) {
+			promise.completeExceptionally(t);
+		}
+		else {
+			promise.complete(null);
+		}
+	}
+}
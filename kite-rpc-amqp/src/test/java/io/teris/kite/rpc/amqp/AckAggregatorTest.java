@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+
+
+public class AckAggregatorTest {
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	private final Channel channel = mock(Channel.class);
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	private AckAggregator aggregator(int batchSize, long delayMillis, int deliveries) {
+		AckAggregator res = new AckAggregator(channel, batchSize, delayMillis, scheduler);
+		for (int tag = 1; tag <= deliveries; tag++) {
+			res.delivered(tag);
+		}
+		return res;
+	}
+
+	@Test
+	public void ack_batchSizeOne_ackedSingly() throws Exception {
+		AckAggregator underTest = aggregator(1, 10, 2);
+		underTest.ack(2);
+		verify(channel).basicAck(2, false);
+		underTest.reject(1);
+		verify(channel).basicNack(1, false, false);
+		assertEquals(0, underTest.outstanding());
+	}
+
+	@Test
+	public void ack_outOfOrder_acksLowestContiguousRange() throws Exception {
+		AckAggregator underTest = aggregator(3, 10000, 5);
+		underTest.ack(2);
+		underTest.ack(3);
+		underTest.ack(5);
+		verify(channel, never()).basicAck(anyLong(), anyBoolean());
+		underTest.ack(1);
+		verify(channel).basicAck(3, true);
+		assertEquals(1, underTest.outstanding());
+	}
+
+	@Test
+	public void ack_noneOutstanding_flushedRightAway() throws Exception {
+		AckAggregator underTest = aggregator(10, 10000, 2);
+		underTest.ack(2);
+		verify(channel, never()).basicAck(anyLong(), anyBoolean());
+		underTest.ack(1);
+		verify(channel).basicAck(2, true);
+	}
+
+	@Test
+	public void ack_belowBatchSize_flushedAfterDelay() throws Exception {
+		AckAggregator underTest = aggregator(10, 20, 3);
+		underTest.ack(1);
+		underTest.ack(3);
+		verify(channel, timeout(5000)).basicAck(1, true);
+	}
+
+	@Test
+	public void reject_withinRange_nackedRightAwayAndSkipped() throws Exception {
+		AckAggregator underTest = aggregator(3, 10000, 4);
+		underTest.ack(1);
+		underTest.reject(3);
+		verify(channel).basicNack(3, false, false);
+		underTest.ack(2);
+		verify(channel).basicAck(2, true);
+	}
+
+	@Test
+	public void reject_wholeRange_noAck() throws Exception {
+		AckAggregator underTest = aggregator(2, 10000, 3);
+		underTest.reject(1);
+		underTest.reject(2);
+		underTest.flush();
+		verify(channel, never()).basicAck(anyLong(), anyBoolean());
+		underTest.ack(3);
+		verify(channel).basicAck(3, true);
+	}
+
+	@Test
+	public void reject_nackThrows_settledAndLaterAcked() throws Exception {
+		AckAggregator underTest = aggregator(2, 10000, 3);
+		doThrow(new AlreadyClosedException(new ShutdownSignalException(true, false, null, channel)))
+			.when(channel).basicNack(1, false, false);
+		try {
+			underTest.reject(1);
+			throw new AssertionError("unreachable code");
+		}
+		catch (AlreadyClosedException ex) {
+			// expected
+		}
+		underTest.ack(2);
+		verify(channel).basicAck(2, true);
+		assertEquals(1, underTest.outstanding());
+	}
+
+	@Test
+	public void shutdownCompleted_outstanding_settledAndRecoveredDeliveriesAcked() throws Exception {
+		AckAggregator underTest = aggregator(2, 10000, 3);
+		underTest.ack(2);
+		underTest.shutdownCompleted(new ShutdownSignalException(true, false, null, channel));
+		assertEquals(0, underTest.outstanding());
+
+		// tags of the recovered channel continue above those of the old one
+		underTest.delivered(4);
+		underTest.delivered(5);
+		underTest.ack(1);
+		underTest.reject(3);
+		verify(channel, never()).basicAck(anyLong(), anyBoolean());
+		underTest.ack(5);
+		underTest.ack(4);
+		verify(channel).basicAck(5, true);
+		assertEquals(0, underTest.outstanding());
+	}
+
+	@Test
+	public void ack_batchSizeOneAfterShutdown_oldTagsNotAcked() throws Exception {
+		AckAggregator underTest = aggregator(1, 10, 1);
+		underTest.shutdownCompleted(new ShutdownSignalException(true, false, null, channel));
+		underTest.ack(1);
+		verify(channel, never()).basicAck(anyLong(), anyBoolean());
+		assertEquals(0, underTest.outstanding());
+	}
+
+	@Test
+	public void ack_manyDeliveries_compactedAndAcked() throws Exception {
+		int count = 10000;
+		AckAggregator underTest = aggregator(100, 10000, count);
+		// complete in pairs out of order
+		for (int tag = 1; tag < count; tag += 2) {
+			underTest.ack(tag + 1);
+			underTest.ack(tag);
+		}
+		verify(channel).basicAck(5000, true);
+		verify(channel).basicAck(count, true);
+		assertEquals(0, underTest.outstanding());
+	}
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.ServiceExporter;
+import io.teris.kite.rpc.amqp.AmqpServiceExporterImpl.ConfiguratorImpl;
+import io.teris.kite.rpc.amqp.AmqpServiceExporterImpl.RequestConsumer;
+
+
+public class AmqpServiceExporterImplTest {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private static ServiceExporter serviceExporter(String... routes) {
+		ServiceExporter res = mock(ServiceExporter.class);
+		when(res.routes()).thenReturn(new HashSet<>(Arrays.asList(routes)));
+		return res;
+	}
+
+	@Test
+	public void export_consumers_consumeOnSeparateChannelsWithPrefetch() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel topology = mock(Channel.class);
+		Channel first = mock(Channel.class);
+		Channel second = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(topology, first, second);
+
+		new AmqpServiceExporterImpl(connection, "exchange", null, 1, false, 2, 16, 1, 10, null)
+			.export(serviceExporter("a.b"));
+
+		verify(topology, never()).basicConsume(anyString(), anyBoolean(), anyString(), any(Consumer.class));
+		for (Channel channel: new Channel[]{first, second}) {
+			verify(channel).basicQos(16, true);
+			verify(channel).basicConsume(anyString(), anyBoolean(), anyString(), any(Consumer.class));
+		}
+	}
+
+	@Test
+	public void export_noPrefetch_noQos() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel topology = mock(Channel.class);
+		Channel consumer = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(topology, consumer);
+
+		new AmqpServiceExporterImpl(connection, "exchange", null, 1, false, 1, 0, 1, 10, null)
+			.export(serviceExporter("a.b"));
+
+		verify(consumer, never()).basicQos(anyInt(), anyBoolean());
+		verify(consumer).basicConsume(anyString(), anyBoolean(), anyString(), any(Consumer.class));
+	}
+
+	@Test
+	public void export_noQueueName_privateAutoDeleteQueue() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel topology = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(topology, mock(Channel.class));
+
+		new AmqpServiceExporterImpl(connection, "exchange", null, 1, false, 1, 0, 1, 10, null)
+			.export(serviceExporter("a.b"));
+
+		verify(topology).queueDeclare(startsWith("request-"), eq(true), eq(false), eq(true), anyMap());
+		verify(topology).queueBind(startsWith("request-"), eq("exchange"), eq("a.b"));
+	}
+
+	@Test
+	public void export_namedQueues_sharedQueuePerNameConsumedOnceOnSameChannel() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel topology = mock(Channel.class);
+		Channel consumer = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(topology, consumer);
+
+		new AmqpServiceExporterImpl(connection, "exchange", "orders", 1, false, 1, 0, 1, 10, null)
+			.export(serviceExporter("a.b"))
+			.export(serviceExporter("a.c"))
+			.export(serviceExporter("x.y"), "reports");
+
+		verify(topology).queueDeclare("orders", true, false, false, Collections.emptyMap());
+		verify(topology).queueDeclare("reports", true, false, false, Collections.emptyMap());
+		verify(topology).queueBind("orders", "exchange", "a.b");
+		verify(topology).queueBind("orders", "exchange", "a.c");
+		verify(topology).queueBind("reports", "exchange", "x.y");
+		verify(connection, times(2)).createChannel();
+		verify(consumer).basicConsume(eq("orders"), eq(false), anyString(), any(Consumer.class));
+		verify(consumer).basicConsume(eq("reports"), eq(false), anyString(), any(Consumer.class));
+	}
+
+	@Test
+	public void export_shards_queuesBehindConsistentHashExchange() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel topology = mock(Channel.class);
+		Channel first = mock(Channel.class);
+		Channel second = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(topology, first, second);
+
+		new AmqpServiceExporterImpl(connection, "exchange", "orders", 2, false, 2, 0, 1, 10, null)
+			.export(serviceExporter("a.b"));
+
+		verify(topology).exchangeDeclare("orders-shards", AmqpServiceBase.CONSISTENT_HASH_EXCHANGE, true, false,
+			Collections.singletonMap("hash-property", "message_id"));
+		Map<String, Object> arguments = Collections.singletonMap("x-single-active-consumer", Boolean.TRUE);
+		verify(topology).queueDeclare("orders-0", true, false, false, arguments);
+		verify(topology).queueDeclare("orders-1", true, false, false, arguments);
+		verify(topology).queueBind("orders-0", "orders-shards", "1");
+		verify(topology).queueBind("orders-1", "orders-shards", "1");
+		verify(topology).exchangeBind("orders-shards", "exchange", "a.b");
+		verify(topology, never()).queueBind(anyString(), eq("exchange"), anyString());
+		verify(first).basicConsume(eq("orders-0"), eq(false), anyString(), any(Consumer.class));
+		verify(second).basicConsume(eq("orders-1"), eq(false), anyString(), any(Consumer.class));
+	}
+
+	@Test
+	public void export_shardsOverConsumers_oneConsumerPerShardSpreadAcrossChannels() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel topology = mock(Channel.class);
+		Channel first = mock(Channel.class);
+		Channel second = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(topology, first, second);
+
+		new AmqpServiceExporterImpl(connection, "exchange", "orders", 3, false, 2, 8, 1, 10, null)
+			.export(serviceExporter("a.b"));
+
+		verify(connection, times(3)).createChannel();
+		verify(first).basicQos(8, true);
+		verify(second).basicQos(8, true);
+		verify(first).basicConsume(eq("orders-0"), eq(false), anyString(), any(Consumer.class));
+		verify(second).basicConsume(eq("orders-1"), eq(false), anyString(), any(Consumer.class));
+		verify(first).basicConsume(eq("orders-2"), eq(false), anyString(), any(Consumer.class));
+		verify(first, times(2)).basicConsume(anyString(), anyBoolean(), anyString(), any(Consumer.class));
+		verify(second, times(1)).basicConsume(anyString(), anyBoolean(), anyString(), any(Consumer.class));
+	}
+
+	@Test
+	public void configurator_shardsNotPositive_throws() {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Number of shards must be positive");
+		new ConfiguratorImpl(new ConnectionFactory()).shards(0);
+	}
+
+	private static void respond(String replyTo, Channel channel) throws Exception {
+		ServiceExporter serviceExporter = mock(ServiceExporter.class);
+		when(serviceExporter.call(anyString(), any(Context.class), any(byte[].class)))
+			.thenReturn(CompletableFuture.completedFuture(new SimpleEntry<>(new Context(), new byte[]{1})));
+		RequestConsumer underTest = new RequestConsumer(channel, "exchange", Collections.singletonMap("a.b", serviceExporter), null,
+			new AckAggregator(channel, 1, 10, null), null, false);
+		BasicProperties props = new BasicProperties.Builder()
+			.type(AmqpServiceBase.MSGTYPE_REQUEST)
+			.correlationId("1")
+			.replyTo(replyTo)
+			.headers(Collections.emptyMap())
+			.build();
+		underTest.handleDelivery("tag", new Envelope(7, false, "exchange", "a.b"), props, new byte[0]);
+	}
+
+	@Test
+	public void handleDelivery_directReplyTo_respondsViaDefaultExchange() throws Exception {
+		Channel channel = mock(Channel.class);
+		respond("amq.rabbitmq.reply-to.g1hkABC", channel);
+		verify(channel).basicPublish(eq(""), eq("amq.rabbitmq.reply-to.g1hkABC"), any(BasicProperties.class), any(byte[].class));
+		verify(channel).basicAck(7, false);
+	}
+
+	@Test
+	public void handleDelivery_clientQueue_respondsViaRequestExchange() throws Exception {
+		Channel channel = mock(Channel.class);
+		respond("client-id", channel);
+		verify(channel).basicPublish(eq("exchange"), eq("client-id"), any(BasicProperties.class), any(byte[].class));
+		verify(channel).basicAck(7, false);
+	}
+
+	private static BasicProperties request() {
+		return new BasicProperties.Builder()
+			.type(AmqpServiceBase.MSGTYPE_REQUEST)
+			.correlationId("1")
+			.replyTo("client-id")
+			.headers(Collections.emptyMap())
+			.build();
+	}
+
+	@Test
+	public void handleDelivery_dispatchExecutor_dispatchedOnExecutor() throws Exception {
+		Channel channel = mock(Channel.class);
+		ServiceExporter serviceExporter = mock(ServiceExporter.class);
+		when(serviceExporter.call(anyString(), any(Context.class), any(byte[].class)))
+			.thenReturn(CompletableFuture.completedFuture(new SimpleEntry<>(new Context(), new byte[]{1})));
+		ExecutorService executor = mock(ExecutorService.class);
+		RequestConsumer underTest = new RequestConsumer(channel, "exchange", Collections.singletonMap("a.b", serviceExporter), null,
+			new AckAggregator(channel, 1, 10, null), executor, false);
+
+		underTest.handleDelivery("tag", new Envelope(7, false, "exchange", "a.b"), request(), new byte[0]);
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		verify(executor).execute(task.capture());
+		verify(serviceExporter, never()).call(anyString(), any(Context.class), any(byte[].class));
+
+		task.getValue().run();
+		verify(channel).basicPublish(eq("exchange"), eq("client-id"), any(BasicProperties.class), any(byte[].class));
+		verify(channel).basicAck(7, false);
+	}
+
+	@Test
+	public void handleDelivery_dispatchRejected_respondsWithError() throws Exception {
+		Channel channel = mock(Channel.class);
+		ExecutorService executor = mock(ExecutorService.class);
+		doThrow(new RejectedExecutionException("full")).when(executor).execute(any(Runnable.class));
+		RequestConsumer underTest = new RequestConsumer(channel, "exchange", Collections.emptyMap(), null,
+			new AckAggregator(channel, 1, 10, null), executor, false);
+
+		underTest.handleDelivery("tag", new Envelope(7, false, "exchange", "a.b"), request(), new byte[0]);
+		ArgumentCaptor<BasicProperties> props = ArgumentCaptor.forClass(BasicProperties.class);
+		verify(channel).basicPublish(eq("exchange"), eq("client-id"), props.capture(), eq("full".getBytes()));
+		assertEquals(AmqpServiceBase.MSGTYPE_ERROR, props.getValue().getType());
+		verify(channel).basicAck(7, false);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void handleDelivery_serialWithSlowService_dispatchedInOrderOfDelivery() throws Exception {
+		Channel channel = mock(Channel.class);
+		CompletableFuture<Entry<Context, byte[]>> slow = new CompletableFuture<>();
+		ServiceExporter serviceExporter = mock(ServiceExporter.class);
+		when(serviceExporter.call(anyString(), any(Context.class), any(byte[].class)))
+			.thenReturn(slow, CompletableFuture.completedFuture(new SimpleEntry<>(new Context(), new byte[]{2})));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			RequestConsumer underTest = new RequestConsumer(channel, "exchange", Collections.singletonMap("a.b", serviceExporter), null,
+				new AckAggregator(channel, 1, 10, null), executor, true);
+
+			underTest.handleDelivery("tag", new Envelope(7, false, "exchange", "a.b"), request(), new byte[]{1});
+			underTest.handleDelivery("tag", new Envelope(8, false, "exchange", "a.b"), request(), new byte[]{2});
+			verify(serviceExporter, timeout(1000)).call(eq("a.b"), any(Context.class), eq(new byte[]{1}));
+			Thread.sleep(100);
+			verify(serviceExporter, never()).call(eq("a.b"), any(Context.class), eq(new byte[]{2}));
+
+			slow.complete(new SimpleEntry<>(new Context(), new byte[]{1}));
+			verify(channel, timeout(1000)).basicAck(8, false);
+			InOrder inOrder = inOrder(channel);
+			inOrder.verify(channel).basicPublish(anyString(), anyString(), any(BasicProperties.class), eq(new byte[]{1}));
+			inOrder.verify(channel).basicPublish(anyString(), anyString(), any(BasicProperties.class), eq(new byte[]{2}));
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void handleDelivery_serialAfterFailedService_nextDispatched() throws Exception {
+		Channel channel = mock(Channel.class);
+		CompletableFuture<Entry<Context, byte[]>> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IllegalStateException("failed"));
+		ServiceExporter serviceExporter = mock(ServiceExporter.class);
+		when(serviceExporter.call(anyString(), any(Context.class), any(byte[].class)))
+			.thenReturn(failed, CompletableFuture.completedFuture(new SimpleEntry<>(new Context(), new byte[]{2})));
+		RequestConsumer underTest = new RequestConsumer(channel, "exchange", Collections.singletonMap("a.b", serviceExporter), null,
+			new AckAggregator(channel, 1, 10, null), null, true);
+
+		underTest.handleDelivery("tag", new Envelope(7, false, "exchange", "a.b"), request(), new byte[0]);
+		underTest.handleDelivery("tag", new Envelope(8, false, "exchange", "a.b"), request(), new byte[0]);
+		verify(channel).basicPublish(anyString(), anyString(), any(BasicProperties.class), eq("failed".getBytes()));
+		verify(channel).basicPublish(anyString(), anyString(), any(BasicProperties.class), eq(new byte[]{2}));
+		verify(channel).basicAck(8, false);
+	}
+
+	@Test
+	public void handleDelivery_publishThrowsOnLostConnection_rejectedAndLaterAcked() throws Exception {
+		Channel channel = mock(Channel.class);
+		doThrow(new AlreadyClosedException(new ShutdownSignalException(true, false, null, channel)))
+			.doNothing()
+			.when(channel).basicPublish(anyString(), anyString(), any(BasicProperties.class), any(byte[].class));
+		doThrow(new AlreadyClosedException(new ShutdownSignalException(true, false, null, channel)))
+			.when(channel).basicNack(1, false, false);
+		ServiceExporter serviceExporter = mock(ServiceExporter.class);
+		when(serviceExporter.call(anyString(), any(Context.class), any(byte[].class)))
+			.thenReturn(CompletableFuture.completedFuture(new SimpleEntry<>(new Context(), new byte[]{1})));
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try {
+			AckAggregator acks = new AckAggregator(channel, 2, 10000, scheduler);
+			RequestConsumer underTest = new RequestConsumer(channel, "exchange", Collections.singletonMap("a.b", serviceExporter), null,
+				acks, null, false);
+
+			underTest.handleDelivery("tag", new Envelope(1, false, "exchange", "a.b"), request(), new byte[0]);
+			verify(channel).basicNack(1, false, false);
+			underTest.handleDelivery("tag", new Envelope(2, false, "exchange", "a.b"), request(), new byte[0]);
+			verify(channel).basicAck(2, true);
+			assertEquals(0, acks.outstanding());
+		}
+		finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void export_consumerChannel_acksSettledOnShutdown() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel consumer = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(mock(Channel.class), consumer);
+
+		new AmqpServiceExporterImpl(connection, "exchange", null, 1, false, 1, 0, 2, 10, null)
+			.export(serviceExporter("a.b"));
+
+		verify(consumer).addShutdownListener(any(AckAggregator.class));
+	}
+
+	@Test
+	public void newConnection_consumerThreads_ownPoolShutDownOnClose() throws Exception {
+		ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+		Connection connection = mock(Connection.class);
+		when(connectionFactory.newConnection(any(ExecutorService.class))).thenReturn(connection);
+
+		AmqpServiceBase.newConnection(connectionFactory, 2);
+		ArgumentCaptor<ExecutorService> pool = ArgumentCaptor.forClass(ExecutorService.class);
+		verify(connectionFactory).newConnection(pool.capture());
+		ArgumentCaptor<ShutdownListener> listener = ArgumentCaptor.forClass(ShutdownListener.class);
+		verify(connection).addShutdownListener(listener.capture());
+
+		// kept across connection failures for the automatic recovery
+		listener.getValue().shutdownCompleted(new ShutdownSignalException(true, false, null, connection));
+		assertFalse(pool.getValue().isShutdown());
+		listener.getValue().shutdownCompleted(new ShutdownSignalException(true, true, null, connection));
+		assertTrue(pool.getValue().isShutdown());
+	}
+
+	@Test
+	public void configurator_maxInFlight_splitAcrossConsumers() {
+		ConfiguratorImpl underTest = new ConfiguratorImpl(new ConnectionFactory());
+		underTest.prefetch(5).consumers(4).maxInFlight(10);
+		assertEquals(3, underTest.prefetch());
+		underTest.consumers(20);
+		assertEquals(1, underTest.prefetch());
+	}
+
+	@Test
+	public void configurator_prefetchWithoutMaxInFlight_asIs() {
+		ConfiguratorImpl underTest = new ConfiguratorImpl(new ConnectionFactory());
+		underTest.prefetch(5).consumers(4);
+		assertEquals(5, underTest.prefetch());
+	}
+
+	@Test
+	public void configurator_prefetchOutOfRange_throws() {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Prefetch must be within [0, 65535]");
+		new ConfiguratorImpl(new ConnectionFactory()).prefetch(65536);
+	}
+}
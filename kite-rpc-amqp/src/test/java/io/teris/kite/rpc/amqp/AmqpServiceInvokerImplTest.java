@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.PendingRequests;
+import io.teris.kite.rpc.RequestTimeoutException;
+import io.teris.kite.rpc.TechnicalException;
+import io.teris.kite.rpc.amqp.AmqpServiceInvokerImpl.ResponseReceiver;
+
+
+public class AmqpServiceInvokerImplTest {
+
+	private static Context context() {
+		Context res = new Context();
+		res.put(Context.X_REQUEST_ID_KEY, "1");
+		res.put(Context.CONTENT_TYPE_KEY, "application/json");
+		return res;
+	}
+
+	@Test
+	public void call_directReplyTo_publishesOnConsumingChannel() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel topology = mock(Channel.class);
+		Channel publishChannel = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(topology, publishChannel);
+
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange", PendingRequests.builder().build(), 1, false, true, 10000, (route) -> false, null, null);
+
+		verify(topology, never()).queueDeclare(anyString(), anyBoolean(), anyBoolean(), anyBoolean(), anyMap());
+		verify(publishChannel).basicConsume(eq(AmqpServiceBase.DIRECT_REPLY_TO), eq(true), any(Consumer.class));
+
+		assertFalse(underTest.call("a.b", context(), new byte[]{1}).isDone());
+		ArgumentCaptor<BasicProperties> props = ArgumentCaptor.forClass(BasicProperties.class);
+		verify(publishChannel).basicPublish(eq("exchange"), eq("a.b"), props.capture(), any(byte[].class));
+		assertEquals(AmqpServiceBase.DIRECT_REPLY_TO, props.getValue().getReplyTo());
+	}
+
+	@Test
+	public void call_responseQueue_repliesRoutedViaExchange() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel topology = mock(Channel.class);
+		Channel publishChannel = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(topology, publishChannel);
+
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange", PendingRequests.builder().build(), 1, false, false, 10000, (route) -> false, null, null);
+
+		verify(topology).queueDeclare(startsWith("response-"), eq(true), eq(true), eq(true), anyMap());
+		verify(publishChannel, never()).basicConsume(anyString(), anyBoolean(), any(Consumer.class));
+
+		underTest.call("a.b", context(), new byte[]{1});
+		ArgumentCaptor<BasicProperties> props = ArgumentCaptor.forClass(BasicProperties.class);
+		verify(publishChannel).basicPublish(eq("exchange"), eq("a.b"), props.capture(), any(byte[].class));
+		ArgumentCaptor<String> responseQueue = ArgumentCaptor.forClass(String.class);
+		verify(topology).queueBind(responseQueue.capture(), eq("exchange"), eq(props.getValue().getReplyTo()));
+		assertTrue(responseQueue.getValue().endsWith(props.getValue().getReplyTo()));
+	}
+
+	@Test
+	public void call_noResponse_failsOnTimeout() throws Exception {
+		Connection connection = mock(Connection.class);
+		when(connection.createChannel()).thenReturn(mock(Channel.class), mock(Channel.class));
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange",
+			PendingRequests.builder().timeoutMillis(50).build(), 1, false, true, 10000, (route) -> false, null, null);
+
+		CompletableFuture<Entry<Context, byte[]>> promise = underTest.call("a.b", context(), new byte[]{1});
+		try {
+			promise.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(RequestTimeoutException.class, ex.getCause().getClass());
+			assertEquals("No response to request 1 within 50 ms", ex.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void call_maxPendingReached_failsWithoutPublishing() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel publishChannel = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(mock(Channel.class), publishChannel);
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange",
+			PendingRequests.builder().maxPending(1).build(), 1, false, true, 10000, (route) -> false, null, null);
+
+		assertFalse(underTest.call("a.b", context(), new byte[]{1}).isDone());
+		Context context = context();
+		context.put(Context.X_REQUEST_ID_KEY, "2");
+		CompletableFuture<Entry<Context, byte[]>> promise = underTest.call("a.b", context, new byte[]{2});
+		try {
+			promise.get();
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(TechnicalException.class, ex.getCause().getClass());
+			assertEquals("Too many pending requests, maximum 1", ex.getCause().getMessage());
+		}
+		verify(publishChannel).basicPublish(anyString(), anyString(), any(BasicProperties.class), any(byte[].class));
+	}
+
+	@Test
+	public void close_pendingCalls_failed() throws Exception {
+		Connection connection = mock(Connection.class);
+		when(connection.createChannel()).thenReturn(mock(Channel.class), mock(Channel.class));
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange", PendingRequests.builder().build(), 1, false, true, 10000, (route) -> false, null, null);
+
+		CompletableFuture<Entry<Context, byte[]>> promise = underTest.call("a.b", context(), new byte[]{1});
+		underTest.close();
+		try {
+			promise.get();
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(TechnicalException.class, ex.getCause().getClass());
+			assertEquals("Invoker closed", ex.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void call_connectionRecovering_bufferedUntilRecovered() throws Exception {
+		Connection connection = mock(Connection.class, withSettings().extraInterfaces(Recoverable.class));
+		Channel publishChannel = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(mock(Channel.class), publishChannel);
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange", PendingRequests.builder().build(), 1, false, true, 10000, (route) -> false, null, null);
+		ArgumentCaptor<ShutdownListener> shutdownListener = ArgumentCaptor.forClass(ShutdownListener.class);
+		verify(connection).addShutdownListener(shutdownListener.capture());
+		ArgumentCaptor<RecoveryListener> recoveryListener = ArgumentCaptor.forClass(RecoveryListener.class);
+		verify((Recoverable) connection).addRecoveryListener(recoveryListener.capture());
+
+		shutdownListener.getValue().shutdownCompleted(new ShutdownSignalException(true, false, null, connection));
+		CompletableFuture<Entry<Context, byte[]>> promise = underTest.call("a.b", context(), new byte[]{1});
+		verify(publishChannel, never()).basicPublish(anyString(), anyString(), any(BasicProperties.class), any(byte[].class));
+
+		recoveryListener.getValue().handleRecovery((Recoverable) connection);
+		verify(publishChannel).basicPublish(eq("exchange"), eq("a.b"), any(BasicProperties.class), any(byte[].class));
+		assertFalse(promise.isDone());
+		assertEquals(0, underTest.retained());
+		underTest.close();
+	}
+
+	@Test
+	public void call_idempotentUnconfirmedOnConnectionLoss_republished() throws Exception {
+		Connection connection = mock(Connection.class, withSettings().extraInterfaces(Recoverable.class));
+		Channel publishChannel = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(mock(Channel.class), publishChannel);
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange", PendingRequests.builder().build(), 1, false, true, 10000, "a.b"::equals, null, null);
+		ArgumentCaptor<ShutdownListener> shutdownListener = ArgumentCaptor.forClass(ShutdownListener.class);
+		verify(connection).addShutdownListener(shutdownListener.capture());
+		ArgumentCaptor<RecoveryListener> recoveryListener = ArgumentCaptor.forClass(RecoveryListener.class);
+		verify((Recoverable) connection).addRecoveryListener(recoveryListener.capture());
+
+		CompletableFuture<Entry<Context, byte[]>> idempotent = underTest.call("a.b", context(), new byte[]{1});
+		Context context = context();
+		context.put(Context.X_REQUEST_ID_KEY, "2");
+		CompletableFuture<Entry<Context, byte[]>> plain = underTest.call("a.c", context, new byte[]{2});
+		assertEquals(1, underTest.retained());
+
+		shutdownListener.getValue().shutdownCompleted(new ShutdownSignalException(true, false, null, connection));
+		assertTrue(plain.isCompletedExceptionally());
+		assertFalse(idempotent.isDone());
+
+		recoveryListener.getValue().handleRecovery((Recoverable) connection);
+		verify(publishChannel, times(2)).basicPublish(eq("exchange"), eq("a.b"), any(BasicProperties.class), any(byte[].class));
+		underTest.close();
+	}
+
+	@Test
+	public void handleDelivery_dispatchExecutor_completesOnExecutor() throws Exception {
+		PendingRequests pendingRequests = PendingRequests.builder().build();
+		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		pendingRequests.register("1", new Context(), promise);
+		ExecutorService executor = mock(ExecutorService.class);
+		ResponseReceiver underTest = new ResponseReceiver(mock(Channel.class), "queue", pendingRequests, executor);
+
+		BasicProperties props = new BasicProperties.Builder()
+			.type(AmqpServiceBase.MSGTYPE_RESPONSE)
+			.correlationId("1")
+			.headers(Collections.singletonMap("k", "v"))
+			.build();
+		underTest.handleDelivery("tag", new Envelope(1, false, "", "queue"), props, new byte[]{1});
+		assertFalse(promise.isDone());
+
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		verify(executor).execute(task.capture());
+		task.getValue().run();
+		assertEquals("v", promise.get().getKey().get("k"));
+	}
+
+	@Test
+	public void call_nackedWithDispatchExecutor_failedOnExecutor() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel publishChannel = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(mock(Channel.class), publishChannel);
+		when(Long.valueOf(publishChannel.getNextPublishSeqNo())).thenReturn(Long.valueOf(1));
+		ExecutorService executor = mock(ExecutorService.class);
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange", PendingRequests.builder().build(), 1, true, true, 10000, (route) -> false, executor, null);
+		ArgumentCaptor<ConfirmListener> confirmListener = ArgumentCaptor.forClass(ConfirmListener.class);
+		verify(publishChannel).addConfirmListener(confirmListener.capture());
+
+		CompletableFuture<Entry<Context, byte[]>> promise = underTest.call("a.b", context(), new byte[]{1});
+		confirmListener.getValue().handleNack(1, false);
+		assertFalse(promise.isDone());
+
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		verify(executor).execute(task.capture());
+		task.getValue().run();
+		try {
+			promise.get();
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals("Message rejected by the broker", ex.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void call_shardKey_carriedAsMessageId() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel publishChannel = mock(Channel.class);
+		when(connection.createChannel()).thenReturn(mock(Channel.class), publishChannel);
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange", PendingRequests.builder().build(), 1, false, true, 10000, (route) -> false, null, "account");
+
+		Context context = context();
+		context.put("account", "42");
+		underTest.call("a.b", context, new byte[]{1});
+		Context unkeyed = context();
+		unkeyed.put(Context.X_REQUEST_ID_KEY, "2");
+		underTest.call("a.b", unkeyed, new byte[]{1});
+
+		ArgumentCaptor<BasicProperties> props = ArgumentCaptor.forClass(BasicProperties.class);
+		verify(publishChannel, times(2)).basicPublish(eq("exchange"), eq("a.b"), props.capture(), any(byte[].class));
+		assertEquals("42", props.getAllValues().get(0).getMessageId());
+		assertEquals("2", props.getAllValues().get(1).getMessageId());
+	}
+
+	@Test
+	public void call_shardKey_sameKeyPublishedOnOneChannel() throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel[] publishChannels = {mock(Channel.class), mock(Channel.class), mock(Channel.class)};
+		when(connection.createChannel()).thenReturn(mock(Channel.class), publishChannels);
+		AmqpServiceInvokerImpl underTest = new AmqpServiceInvokerImpl(connection, "exchange", PendingRequests.builder().build(), 3, false, true, 10000, (route) -> false, null, "account");
+
+		for (int i = 0; i < 6; i++) {
+			Context context = context();
+			context.put(Context.X_REQUEST_ID_KEY, String.valueOf(i));
+			context.put("account", "42");
+			underTest.call("a.b", context, new byte[]{1});
+		}
+
+		List<Long> published = new ArrayList<>();
+		for (Channel publishChannel : publishChannels) {
+			published.add(Long.valueOf(mockingDetails(publishChannel).getInvocations().stream()
+				.filter((invocation) -> "basicPublish".equals(invocation.getMethod().getName()))
+				.count()));
+		}
+		Collections.sort(published);
+		assertEquals(Arrays.asList(Long.valueOf(0), Long.valueOf(0), Long.valueOf(6)), published);
+	}
+}
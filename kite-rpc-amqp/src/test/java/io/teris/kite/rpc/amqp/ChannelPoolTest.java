@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+
+public class ChannelPoolTest {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private Connection connection(int channels) throws Exception {
+		Connection connection = mock(Connection.class);
+		Channel first = mock(Channel.class);
+		Channel[] rest = new Channel[channels - 1];
+		for (int i = 0; i < rest.length; i++) {
+			rest[i] = mock(Channel.class);
+		}
+		when(connection.createChannel()).thenReturn(first, rest);
+		return connection;
+	}
+
+	@Test
+	public void execute_sequentialCalls_roundRobin() throws Exception {
+		ChannelPool underTest = new ChannelPool(connection(3), 3, false, null);
+		List<Channel> used = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			underTest.publish(used::add);
+		}
+		assertNotSame(used.get(0), used.get(1));
+		assertNotSame(used.get(1), used.get(2));
+		assertNotSame(used.get(0), used.get(2));
+		assertSame(used.get(0), used.get(3));
+		assertSame(used.get(1), used.get(4));
+		assertSame(used.get(2), used.get(5));
+	}
+
+	@Test
+	public void publish_key_pinnedToOneChannel() throws Exception {
+		ChannelPool underTest = new ChannelPool(connection(4), 4, false, null);
+		List<Channel> keyed = new ArrayList<>();
+		List<Channel> other = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			underTest.publish(other::add);
+			underTest.publish("account-42", keyed::add);
+		}
+		for (Channel channel : keyed) {
+			assertSame(keyed.get(0), channel);
+		}
+		// round robin continues for the other messages
+		assertNotSame(other.get(0), other.get(1));
+	}
+
+	@Test
+	public void execute_channelInUse_takesNextFree() throws Exception {
+		ChannelPool underTest = new ChannelPool(connection(2), 2, false, null);
+		CountDownLatch inUse = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Channel> busy = new CompletableFuture<>();
+		Thread holder = new Thread(() -> {
+			try {
+				underTest.publish((channel) -> {
+					busy.complete(channel);
+					inUse.countDown();
+					try {
+						release.await();
+					}
+					catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+			catch (Exception ex) {
+				busy.completeExceptionally(ex);
+			}
+		});
+		holder.start();
+		assertTrue(inUse.await(5, TimeUnit.SECONDS));
+
+		// the round-robin position points at the busy channel now and the next two calls
+		// both get the free one
+		List<Channel> used = new ArrayList<>();
+		underTest.publish(used::add);
+		underTest.publish(used::add);
+		release.countDown();
+		holder.join(5000);
+
+		assertNotSame(busy.get(), used.get(0));
+		assertSame(used.get(0), used.get(1));
+	}
+
+	@Test
+	public void publish_publisherConfirms_confirmsPerChannel() throws Exception {
+		Connection connection = connection(2);
+		ChannelPool underTest = new ChannelPool(connection, 2, true, null);
+		List<Channel> used = new ArrayList<>();
+		CompletableFuture<Void> confirm = underTest.publish(used::add);
+		verify(used.get(0)).confirmSelect();
+		assertFalse(confirm.isDone());
+		assertTrue(underTest.publish(used::add) != confirm);
+		verify(used.get(1)).confirmSelect();
+	}
+
+	@Test
+	public void constructor_initializer_runsPerChannel() throws Exception {
+		List<Channel> initialized = new ArrayList<>();
+		ChannelPool underTest = new ChannelPool(connection(3), 3, false, initialized::add);
+		assertEquals(3, initialized.size());
+		List<Channel> used = new ArrayList<>();
+		underTest.publish(used::add);
+		assertTrue(initialized.contains(used.get(0)));
+	}
+
+	@Test
+	public void constructor_nonPositiveSize_throws() throws Exception {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Pool size must be positive");
+		new ChannelPool(connection(1), 0, false, null);
+	}
+}
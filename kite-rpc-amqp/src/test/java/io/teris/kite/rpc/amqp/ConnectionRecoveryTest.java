@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.PendingRequests;
+import io.teris.kite.rpc.TechnicalException;
+import io.teris.kite.rpc.amqp.ConnectionRecovery.Request;
+
+
+public class ConnectionRecoveryTest {
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	private final PendingRequests pendingRequests = PendingRequests.builder().build();
+
+	private final List<String> published = new CopyOnWriteArrayList<>();
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	private ConnectionRecovery recovery(long windowMillis) {
+		return new ConnectionRecovery(pendingRequests, windowMillis, scheduler, (request) -> published.add(request.correlationId));
+	}
+
+	private Request request(String correlationId, boolean idempotent) {
+		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		pendingRequests.register(correlationId, new Context(), promise);
+		return new Request(correlationId, "a.b", new BasicProperties(), new byte[]{1}, promise, idempotent);
+	}
+
+	private static ShutdownSignalException connectionLost() {
+		return new ShutdownSignalException(true, false, null, null);
+	}
+
+	private static void assertFailed(Request request, String message) throws Exception {
+		try {
+			request.promise.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(TechnicalException.class, ex.getCause().getClass());
+			assertEquals(message, ex.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void buffer_connected_publishRightAway() {
+		assertFalse(recovery(1000).buffer(request("1", false)));
+	}
+
+	@Test
+	public void shutdown_inFlight_nonIdempotentFailFastIdempotentRetained() throws Exception {
+		ConnectionRecovery underTest = recovery(10000);
+		Request plain = request("1", false);
+		Request idempotent = request("2", true);
+		underTest.track(idempotent);
+
+		underTest.shutdownCompleted(connectionLost());
+
+		assertFailed(plain, "Connection lost awaiting the response");
+		assertFalse(idempotent.promise.isDone());
+		assertEquals(1, underTest.retained());
+	}
+
+	@Test
+	public void handleRecovery_bufferedAndRetained_republished() {
+		ConnectionRecovery underTest = recovery(10000);
+		Request idempotent = request("1", true);
+		underTest.track(idempotent);
+		underTest.shutdownCompleted(connectionLost());
+
+		Request buffered = request("2", false);
+		assertTrue(underTest.buffer(buffered));
+		assertTrue(published.isEmpty());
+
+		underTest.handleRecovery(mock(Recoverable.class));
+		assertEquals(2, published.size());
+		assertTrue(published.contains("1"));
+		assertTrue(published.contains("2"));
+		// idempotent requests stay tracked until their response
+		assertEquals(1, underTest.retained());
+		assertFalse(underTest.buffer(request("3", false)));
+	}
+
+	@Test
+	public void shutdown_windowExpired_failsRetainedAndNewCalls() throws Exception {
+		ConnectionRecovery underTest = recovery(30);
+		Request idempotent = request("1", true);
+		underTest.track(idempotent);
+		underTest.shutdownCompleted(connectionLost());
+		Request buffered = request("2", false);
+		assertTrue(underTest.buffer(buffered));
+
+		assertFailed(idempotent, "Connection not recovered within 30 ms");
+		assertFailed(buffered, "Connection not recovered within 30 ms");
+		assertEquals(0, pendingRequests.size());
+		try {
+			underTest.buffer(request("3", false));
+			throw new AssertionError("unreachable code");
+		}
+		catch (TechnicalException ex) {
+			assertEquals("Connection not recovered within 30 ms", ex.getMessage());
+		}
+	}
+
+	@Test
+	public void shutdown_initiatedByApplication_ignored() {
+		ConnectionRecovery underTest = recovery(10000);
+		Request plain = request("1", false);
+		underTest.shutdownCompleted(new ShutdownSignalException(true, true, null, null));
+		assertFalse(plain.promise.isDone());
+		assertFalse(underTest.buffer(request("2", false)));
+	}
+
+	@Test
+	public void track_completed_released() {
+		ConnectionRecovery underTest = recovery(10000);
+		Request idempotent = request("1", true);
+		underTest.track(idempotent);
+		idempotent.promise.complete(null);
+		assertEquals(0, underTest.retained());
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import io.teris.kite.rpc.TechnicalException;
+
+
+public class PublishConfirmsTest {
+
+	private Channel channel;
+
+	private PublishConfirms underTest;
+
+	@Before
+	public void init() throws Exception {
+		channel = mock(Channel.class);
+		when(Long.valueOf(channel.getNextPublishSeqNo())).thenReturn(Long.valueOf(1), Long.valueOf(2), Long.valueOf(3), Long.valueOf(4));
+		underTest = PublishConfirms.enable(channel);
+	}
+
+	@Test
+	public void enable_setsConfirmModeAndListeners() throws Exception {
+		verify(channel).confirmSelect();
+		verify(channel).addConfirmListener(underTest);
+		verify(channel).addShutdownListener(underTest);
+	}
+
+	@Test
+	public void handleAck_single_completesOnlyThatTag() throws Exception {
+		CompletableFuture<Void> first = underTest.publish(channel, (c) -> {});
+		CompletableFuture<Void> second = underTest.publish(channel, (c) -> {});
+		underTest.handleAck(2, false);
+		assertFalse(first.isDone());
+		assertTrue(second.isDone() && !second.isCompletedExceptionally());
+		assertEquals(1, underTest.outstanding());
+	}
+
+	@Test
+	public void handleAck_multiple_completesAllUpToTag() throws Exception {
+		CompletableFuture<Void> first = underTest.publish(channel, (c) -> {});
+		CompletableFuture<Void> second = underTest.publish(channel, (c) -> {});
+		CompletableFuture<Void> third = underTest.publish(channel, (c) -> {});
+		underTest.handleAck(2, true);
+		assertTrue(first.isDone() && !first.isCompletedExceptionally());
+		assertTrue(second.isDone() && !second.isCompletedExceptionally());
+		assertFalse(third.isDone());
+		assertEquals(1, underTest.outstanding());
+	}
+
+	@Test
+	public void handleNack_multiple_failsAllUpToTag() throws Exception {
+		CompletableFuture<Void> first = underTest.publish(channel, (c) -> {});
+		CompletableFuture<Void> second = underTest.publish(channel, (c) -> {});
+		underTest.handleNack(2, true);
+		assertTrue(first.isCompletedExceptionally());
+		try {
+			second.get();
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(TechnicalException.class, ex.getCause().getClass());
+			assertEquals("Message rejected by the broker", ex.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void shutdownCompleted_failsOutstanding() throws Exception {
+		CompletableFuture<Void> first = underTest.publish(channel, (c) -> {});
+		underTest.shutdownCompleted(new ShutdownSignalException(false, false, null, channel));
+		assertTrue(first.isCompletedExceptionally());
+		assertEquals(0, underTest.outstanding());
+	}
+
+	@Test
+	public void publish_failing_notTracked() throws Exception {
+		try {
+			underTest.publish(channel, (c) -> {
+				throw new IOException("BOOM");
+			});
+			throw new AssertionError("unreachable code");
+		}
+		catch (IOException ex) {
+			assertEquals("BOOM", ex.getMessage());
+		}
+		assertEquals(0, underTest.outstanding());
+	}
+}
@@ -28,6 +28,26 @@ public interface JmsServiceInvoker extends ServiceInvoker {
 
 	interface Configurator {
 
+		/**
+		 * The time to wait for a response before failing the call with a
+		 * RequestTimeoutException, zero to wait forever (default: 30 seconds).
+		 */
+		@Nonnull
+		Configurator requestTimeoutMillis(long timeoutMillis);
+
+		/**
+		 * Caps the number of calls awaiting a response (default: unlimited).
+		 */
+		@Nonnull
+		Configurator maxPendingRequests(int maxPending);
+
+		/**
+		 * The time a call blocks while the maximum of pending requests is reached before
+		 * failing with a TechnicalException (default: 0, failing immediately).
+		 */
+		@Nonnull
+		Configurator maxPendingWaitMillis(long waitMillis);
+
 		@Nonnull
 		JmsServiceInvoker requestTopic(String requestTopic) throws JMSException;
 	}
@@ -6,11 +6,9 @@ package io.teris.kite.rpc.jms;
 
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Enumeration;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.jms.BytesMessage;
@@ -31,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import io.teris.kite.Context;
 import io.teris.kite.rpc.AuthenticationException;
+import io.teris.kite.rpc.PendingRequests;
 import io.teris.kite.rpc.TechnicalException;
 
 
@@ -44,17 +43,18 @@ class JmsServiceInvokerImpl extends JmsServiceBase implements JmsServiceInvoker
 
 	private final Queue responseQueue;
 
-	private final Map<String, Entry<Context, CompletableFuture<Entry<Context, byte[]>>>> requestStore = new ConcurrentHashMap<>();
+	private final PendingRequests pendingRequests;
 
 
-	JmsServiceInvokerImpl(ConnectionFactory connectionFactory, String topicName) throws JMSException {
-		this(connectionFactory.createConnection(), topicName);
+	JmsServiceInvokerImpl(ConnectionFactory connectionFactory, String topicName, PendingRequests pendingRequests) throws JMSException {
+		this(connectionFactory.createConnection(), topicName, pendingRequests);
 
 	}
 
-	JmsServiceInvokerImpl(Connection connection, String topicName) throws JMSException {
+	JmsServiceInvokerImpl(Connection connection, String topicName, PendingRequests pendingRequests) throws JMSException {
 		super(connection, connection.createSession(false, Session.CLIENT_ACKNOWLEDGE),
 			connection.createSession(false, Session.AUTO_ACKNOWLEDGE));
+		this.pendingRequests = pendingRequests;
 
 		requestTopic = requestSession.createTopic(topicName);
 		requestProducer = requestSession.createProducer(requestTopic);
@@ -63,21 +63,44 @@ class JmsServiceInvokerImpl extends JmsServiceBase implements JmsServiceInvoker
 		responseQueue = responseSession.createTemporaryQueue();
 		responseSession
 			.createConsumer(responseQueue)
-			.setMessageListener(new ResponseReceiver(responseQueue.toString(), requestStore));
+			.setMessageListener(new ResponseReceiver(responseQueue.toString(), pendingRequests));
 	}
 
 	static class ConfiguratorImpl implements Configurator {
 
 		private final ConnectionFactory connectionFactory;
 
+		private final PendingRequests.Builder pendingRequests = PendingRequests.builder();
+
 		ConfiguratorImpl(ConnectionFactory connectionFactory) {
 			this.connectionFactory = connectionFactory;
 		}
 
+		@Nonnull
+		@Override
+		public Configurator requestTimeoutMillis(long timeoutMillis) {
+			pendingRequests.timeoutMillis(timeoutMillis);
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator maxPendingRequests(int maxPending) {
+			pendingRequests.maxPending(maxPending);
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator maxPendingWaitMillis(long waitMillis) {
+			pendingRequests.maxPendingWaitMillis(waitMillis);
+			return this;
+		}
+
 		@Nonnull
 		@Override
 		public JmsServiceInvoker requestTopic(String topicName) throws JMSException {
-			return new JmsServiceInvokerImpl(connectionFactory, topicName);
+			return new JmsServiceInvokerImpl(connectionFactory, topicName, pendingRequests.build());
 		}
 	}
 
@@ -86,6 +109,7 @@ class JmsServiceInvokerImpl extends JmsServiceBase implements JmsServiceInvoker
 	public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] outgoing) {
 		String correlationId = context.get(Context.X_REQUEST_ID_KEY);
 		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		boolean registered = false;
 		try {
 			Objects.requireNonNull(correlationId, "Context contains no " + Context.X_REQUEST_ID_KEY);
 			BytesMessage message = requestSession.createBytesMessage();
@@ -99,13 +123,14 @@ class JmsServiceInvokerImpl extends JmsServiceBase implements JmsServiceInvoker
 			}
 			message.setStringProperty(JMS_ROUTE, route);
 			message.setStringProperty(Context.CONTENT_TYPE_KEY, context.get(Context.CONTENT_TYPE_KEY));
-			requestStore.put(correlationId, new SimpleEntry<>(context, promise));
+			pendingRequests.register(correlationId, context, promise);
+			registered = true;
 			requestProducer.send(requestTopic, message);
 			log.debug("client sent request {} to '{}'", correlationId, requestTopic.getTopicName());
 		}
 		catch (Exception ex) {
-			if (correlationId != null) {
-				requestStore.remove(correlationId);
+			if (registered) {
+				pendingRequests.remove(correlationId);
 			}
 			promise.completeExceptionally(ex);
 		}
@@ -116,11 +141,11 @@ class JmsServiceInvokerImpl extends JmsServiceBase implements JmsServiceInvoker
 
 		private final String responseQueueName;
 
-		private final Map<String, Entry<Context, CompletableFuture<Entry<Context, byte[]>>>> requestStore;
+		private final PendingRequests pendingRequests;
 
-		ResponseReceiver(String responseQueueName, Map<String, Entry<Context, CompletableFuture<Entry<Context, byte[]>>>> requestStore) {
+		ResponseReceiver(String responseQueueName, PendingRequests pendingRequests) {
 			this.responseQueueName = responseQueueName;
-			this.requestStore = requestStore;
+			this.pendingRequests = pendingRequests;
 		}
 
 		@Override
@@ -130,8 +155,9 @@ class JmsServiceInvokerImpl extends JmsServiceBase implements JmsServiceInvoker
 			try {
 				correlationId = message.getJMSCorrelationID();
 
-				Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = requestStore.remove(correlationId);
-				if (entry == null || entry.getValue() == null) {
+				Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = pendingRequests.remove(correlationId);
+				if (entry == null) {
+					// timed out or never sent by this client
 					throw new JMSException("No request information found");
 				}
 
@@ -188,4 +214,11 @@ class JmsServiceInvokerImpl extends JmsServiceBase implements JmsServiceInvoker
 		connection.start();
 		return this;
 	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Void> close() {
+		pendingRequests.failAll(new TechnicalException("Invoker closed"));
+		return super.close();
+	}
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.shm;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+
+
+/**
+ * A single-producer single-consumer ring buffer of frames in a region of a mapped file
+ * shared between processes. The region starts with the consumer position (head) and the
+ * producer position (tail), each on its own cache line, followed by the data. Positions
+ * grow monotonically and are only ever written by their owner. A record is a four byte
+ * length followed by the frame and padded to eight bytes; a record that does not fit
+ * before the end of the data is preceded by a padding marker and written at its start.
+ * <p>
+ * The producer publishes the tail only after the record is written and the consumer
+ * releases the head only after the record is read; the ordering is enforced with
+ * full fences (volatile accesses) as Java 8 offers no ordered access to mapped memory.
+ * Offering is synchronized, so that multiple threads of a process can act as the
+ * single producer; polling must be performed by a single thread.
+ */
+class Ring {
+
+	static final int HEADER_LENGTH = 128;
+
+	private static final int HEAD_OFFSET = 0;
+
+	private static final int TAIL_OFFSET = 64;
+
+	private static final int RECORD_HEADER = 4;
+
+	private static final int PADDING = -1;
+
+	private static volatile int fence = 0;
+
+	private final ByteBuffer buffer;
+
+	private final int offset;
+
+	private final int capacity;
+
+	private final ByteBuffer producerView;
+
+	private final ByteBuffer consumerView;
+
+	/**
+	 * @param capacity the size of the data in bytes, a power of two.
+	 */
+	Ring(ByteBuffer buffer, int offset, int capacity) {
+		if (Integer.bitCount(capacity) != 1 || capacity < 1024) {
+			throw new IllegalArgumentException("Ring capacity must be a power of two of at least 1024 bytes");
+		}
+		this.buffer = buffer;
+		this.offset = offset;
+		this.capacity = capacity;
+		this.producerView = buffer.duplicate();
+		this.consumerView = buffer.duplicate();
+	}
+
+	static int length(int capacity) {
+		return HEADER_LENGTH + capacity;
+	}
+
+	/**
+	 * @return false if there is currently not enough space for the frame.
+	 * @throws IllegalArgumentException if the frame can never fit into the ring.
+	 */
+	synchronized boolean offer(Frame frame) throws IllegalArgumentException {
+		int frameLength = frame.encodedLength();
+		int recordLength = align(RECORD_HEADER + frameLength);
+		if (recordLength > capacity / 2) {
+			throw new IllegalArgumentException(String.format("Frame of %d bytes exceeds the ring capacity of %d bytes",
+				Integer.valueOf(frameLength), Integer.valueOf(capacity)));
+		}
+		long tail = buffer.getLong(offset + TAIL_OFFSET);
+		long head = buffer.getLong(offset + HEAD_OFFSET);
+		acquire();
+		int index = (int) (tail & (capacity - 1));
+		int toEnd = capacity - index;
+		int required = toEnd < recordLength ? toEnd + recordLength : recordLength;
+		if (tail + required - head > capacity) {
+			return false;
+		}
+		if (toEnd < recordLength) {
+			buffer.putInt(data(index), PADDING);
+			tail += toEnd;
+			index = 0;
+		}
+		producerView.limit(data(index) + recordLength).position(data(index) + RECORD_HEADER);
+		frame.encode(producerView);
+		buffer.putInt(data(index), frameLength);
+		release();
+		buffer.putLong(offset + TAIL_OFFSET, tail + recordLength);
+		return true;
+	}
+
+	/**
+	 * @return the next frame or null if the ring is empty.
+	 * @throws IllegalArgumentException if the record is malformed. A frame that fails to
+	 * decode is skipped, while a record of an invalid length leaves the ring unreadable.
+	 */
+	@Nullable
+	Frame poll() throws IllegalArgumentException {
+		long head = buffer.getLong(offset + HEAD_OFFSET);
+		long tail = buffer.getLong(offset + TAIL_OFFSET);
+		acquire();
+		if (head == tail) {
+			return null;
+		}
+		int index = (int) (head & (capacity - 1));
+		int frameLength = buffer.getInt(data(index));
+		if (frameLength == PADDING) {
+			head += capacity - index;
+			index = 0;
+			frameLength = buffer.getInt(data(index));
+		}
+		if (frameLength < 0 || RECORD_HEADER + frameLength > capacity - index) {
+			throw new IllegalArgumentException("Malformed ring record");
+		}
+		int recordLength = align(RECORD_HEADER + frameLength);
+		try {
+			consumerView.limit(data(index) + RECORD_HEADER + frameLength).position(data(index) + RECORD_HEADER);
+			return RpcFrames.decode(consumerView);
+		}
+		finally {
+			release();
+			buffer.putLong(offset + HEAD_OFFSET, head + recordLength);
+		}
+	}
+
+	/**
+	 * @return the consumer position, for the producer to observe the progress of the
+	 * consumer.
+	 */
+	long head() {
+		long res = buffer.getLong(offset + HEAD_OFFSET);
+		acquire();
+		return res;
+	}
+
+	private int data(int index) {
+		return offset + HEADER_LENGTH + index;
+	}
+
+	private static int align(int length) {
+		return (length + 7) & ~7;
+	}
+
+	/**
+	 * A volatile read: loads after it are not performed before it.
+	 */
+	private static int acquire() {
+		return fence;
+	}
+
+	/**
+	 * A volatile write: stores before it are performed before it.
+	 */
+	private static void release() {
+		fence = 0;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.shm;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+
+/**
+ * A memory-mapped file shared by one client and the server, holding the ring of requests
+ * (written by the client) and the ring of responses (written by the server). The file
+ * header holds a marker written by the client once the file is initialized, the ring
+ * capacity, the closed flag set by the client on close and the abandoned flag set by the
+ * server on dropping the client.
+ */
+class ShmChannel {
+
+	static final String SUFFIX = ".kite";
+
+	private static final int MAGIC = 0x4b495445;
+
+	private static final int MAGIC_OFFSET = 0;
+
+	private static final int CAPACITY_OFFSET = 4;
+
+	private static final int CLOSED_OFFSET = 8;
+
+	private static final int ABANDONED_OFFSET = 12;
+
+	private static final int HEADER_LENGTH = 64;
+
+	private static volatile int fence = 0;
+
+	final Path file;
+
+	final Ring requests;
+
+	final Ring responses;
+
+	private final MappedByteBuffer buffer;
+
+	private ShmChannel(Path file, MappedByteBuffer buffer, int capacity) {
+		this.file = file;
+		this.buffer = buffer;
+		this.requests = new Ring(buffer, HEADER_LENGTH, capacity);
+		this.responses = new Ring(buffer, HEADER_LENGTH + Ring.length(capacity), capacity);
+	}
+
+	/**
+	 * Creates a new channel file in the directory (client side).
+	 */
+	@Nonnull
+	static ShmChannel create(@Nonnull Path directory, int capacity) throws IOException {
+		Path file = directory.resolve(UUID.randomUUID().toString() + SUFFIX);
+		MappedByteBuffer buffer = map(file, HEADER_LENGTH + 2 * Ring.length(capacity));
+		buffer.putInt(CAPACITY_OFFSET, capacity);
+		ShmChannel res = new ShmChannel(file, buffer, capacity);
+		// the marker is written only after the header
+		fence = 0;
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+		return res;
+	}
+
+	/**
+	 * Opens a channel file created by a client (server side).
+	 *
+	 * @return null if the file is not (yet) initialized.
+	 */
+	@Nullable
+	static ShmChannel open(@Nonnull Path file) throws IOException {
+		long size = Files.size(file);
+		if (size < HEADER_LENGTH) {
+			return null;
+		}
+		MappedByteBuffer buffer = map(file, size);
+		if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+			return null;
+		}
+		// the header is read only after the marker
+		int capacity = fence + buffer.getInt(CAPACITY_OFFSET);
+		if (size != HEADER_LENGTH + 2L * Ring.length(capacity)) {
+			throw new IOException(String.format("Channel %s has an invalid size", file));
+		}
+		return new ShmChannel(file, buffer, capacity);
+	}
+
+	boolean isClosed() {
+		return buffer.getInt(CLOSED_OFFSET) != 0;
+	}
+
+	/**
+	 * Marks the channel closed for the server to drop it.
+	 */
+	void close() {
+		buffer.putInt(CLOSED_OFFSET, 1);
+	}
+
+	/**
+	 * Marks the channel dropped by the server, e.g. as its client stopped consuming
+	 * responses, for the client to fail its calls.
+	 */
+	void abandon() {
+		buffer.putInt(ABANDONED_OFFSET, 1);
+	}
+
+	boolean isAbandoned() {
+		return buffer.getInt(ABANDONED_OFFSET) != 0;
+	}
+
+	private static MappedByteBuffer map(Path file, long size) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			if (raf.length() < size) {
+				raf.setLength(size);
+			}
+			return raf.getChannel().map(MapMode.READ_WRITE, 0, size);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.shm;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+
+import io.teris.kite.rpc.ServiceExporter;
+
+
+/**
+ * Serves requests of clients on the same host exchanged through memory-mapped files in
+ * a shared directory (preferably on tmpfs such as /dev/shm). Each client creates its own
+ * channel file, which the exporter discovers and polls from a single thread.
+ */
+public interface ShmServiceExporter {
+
+	@Nonnull
+	ShmServiceExporter export(@Nonnull ServiceExporter serviceExporter);
+
+	/**
+	 * Starts the polling thread.
+	 */
+	@Nonnull
+	ShmServiceExporter start();
+
+	@Nonnull
+	CompletableFuture<Void> close();
+
+	@Nonnull
+	static Configurator directory(@Nonnull Path directory) {
+		return new ShmServiceExporterImpl.ConfiguratorImpl(directory);
+	}
+
+	interface Configurator {
+
+		/**
+		 * Defines how the polling thread waits when there are no requests (default:
+		 * backoff from spinning to parking for up to 1ms).
+		 */
+		@Nonnull
+		Configurator waitStrategy(@Nonnull WaitStrategy waitStrategy);
+
+		/**
+		 * The interval at which the directory is scanned for new clients (default: 100ms).
+		 */
+		@Nonnull
+		Configurator scanIntervalMillis(long scanIntervalMillis);
+
+		/**
+		 * The longest time a response waits for space in the response ring of a client that
+		 * consumes no responses meanwhile (default: 5s). The client is then taken for dead,
+		 * e.g. crashed without closing its channel, and its channel is dropped; a client
+		 * still running fails its pending calls.
+		 */
+		@Nonnull
+		Configurator responseTimeoutMillis(long responseTimeoutMillis);
+
+		@Nonnull
+		ShmServiceExporter export(@Nonnull ServiceExporter serviceExporter);
+	}
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.shm;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.teris.kite.rpc.ServerErrors;
+import io.teris.kite.rpc.ServiceExporter;
+
+
+class ShmServiceExporterImpl implements ShmServiceExporter {
+
+	static final WaitStrategy DEFAULT_WAIT_STRATEGY = WaitStrategy.backoff(1000, 1000000L);
+
+	// frames polled from a channel before moving to the next one
+	private static final int BATCH = 16;
+
+	private static final Logger log = LoggerFactory.getLogger(ShmServiceExporter.class);
+
+	private final Path directory;
+
+	private final WaitStrategy waitStrategy;
+
+	private final long scanIntervalMillis;
+
+	private final long responseTimeoutMillis;
+
+	private final Map<String, ServiceExporter> exporters = new ConcurrentHashMap<>();
+
+	// accessed by the polling thread only
+	private final Map<Path, ShmChannel> channels = new HashMap<>();
+
+	// files of abandoned channels not to be picked up again, accessed by the polling thread only
+	private final Set<Path> abandoned = new HashSet<>();
+
+	private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+
+	private volatile boolean running = false;
+
+	private Thread poller = null;
+
+	ShmServiceExporterImpl(Path directory, WaitStrategy waitStrategy, long scanIntervalMillis, long responseTimeoutMillis) {
+		this.directory = directory;
+		this.waitStrategy = waitStrategy;
+		this.scanIntervalMillis = scanIntervalMillis;
+		this.responseTimeoutMillis = responseTimeoutMillis;
+	}
+
+	static class ConfiguratorImpl implements ShmServiceExporter.Configurator {
+
+		private final Path directory;
+
+		private WaitStrategy waitStrategy = DEFAULT_WAIT_STRATEGY;
+
+		private long scanIntervalMillis = 100;
+
+		private long responseTimeoutMillis = 5000;
+
+		ConfiguratorImpl(Path directory) {
+			this.directory = directory;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator waitStrategy(@Nonnull WaitStrategy waitStrategy) {
+			this.waitStrategy = waitStrategy;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator scanIntervalMillis(long scanIntervalMillis) {
+			this.scanIntervalMillis = scanIntervalMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator responseTimeoutMillis(long responseTimeoutMillis) {
+			if (responseTimeoutMillis < 1) {
+				throw new IllegalArgumentException("Response timeout must be positive");
+			}
+			this.responseTimeoutMillis = responseTimeoutMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public ShmServiceExporter export(@Nonnull ServiceExporter serviceExporter) {
+			return new ShmServiceExporterImpl(directory, waitStrategy, scanIntervalMillis, responseTimeoutMillis).export(serviceExporter);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public ShmServiceExporter export(@Nonnull ServiceExporter serviceExporter) {
+		for (String route : serviceExporter.routes()) {
+			exporters.put(route, serviceExporter);
+		}
+		return this;
+	}
+
+	@Nonnull
+	@Override
+	public synchronized ShmServiceExporter start() {
+		if (poller == null) {
+			running = true;
+			poller = new Thread(this::poll, "kite-shm-exporter");
+			poller.setDaemon(true);
+			poller.start();
+		}
+		return this;
+	}
+
+	@Nonnull
+	@Override
+	public synchronized CompletableFuture<Void> close() {
+		if (poller == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		running = false;
+		return stopped;
+	}
+
+	private void poll() {
+		long nextScan = 0;
+		int idleCount = 0;
+		while (running) {
+			long now = System.currentTimeMillis();
+			if (now >= nextScan) {
+				scan();
+				nextScan = now + scanIntervalMillis;
+			}
+			int workCount = 0;
+			for (Iterator<ShmChannel> it = channels.values().iterator(); it.hasNext(); ) {
+				ShmChannel channel = it.next();
+				try {
+					if (channel.isClosed()) {
+						log.debug("status=SERVER-DISCONNECTED, channel={}", channel.file);
+						it.remove();
+						continue;
+					}
+					if (channel.isAbandoned()) {
+						abandoned.add(channel.file);
+						it.remove();
+						continue;
+					}
+					for (int i = 0; i < BATCH; i++) {
+						Frame request = channel.requests.poll();
+						if (request == null) {
+							break;
+						}
+						workCount++;
+						dispatch(channel, request);
+					}
+				}
+				catch (IllegalArgumentException ex) {
+					log.error(String.format("status=SERVER-ERROR, channel=%s", channel.file), ex);
+					// not to be picked up by the next scan and fail on the same record again
+					channel.abandon();
+					abandoned.add(channel.file);
+					it.remove();
+				}
+			}
+			if (workCount > 0) {
+				idleCount = 0;
+			}
+			else {
+				waitStrategy.idle(++idleCount);
+			}
+		}
+		channels.clear();
+		abandoned.clear();
+		stopped.complete(null);
+	}
+
+	private void scan() {
+		Set<Path> present = new HashSet<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ShmChannel.SUFFIX)) {
+			for (Path file : stream) {
+				present.add(file);
+				if (channels.containsKey(file) || abandoned.contains(file)) {
+					continue;
+				}
+				try {
+					ShmChannel channel = ShmChannel.open(file);
+					if (channel != null && !channel.isClosed()) {
+						log.debug("status=SERVER-CONNECTED, channel={}", file);
+						channels.put(file, channel);
+					}
+				}
+				catch (IOException ex) {
+					// the file may have been removed by its client in the meantime
+					log.debug("status=SERVER-ERROR, channel={}, message={}", file, ex.getMessage());
+				}
+			}
+		}
+		catch (IOException ex) {
+			log.error(String.format("status=SERVER-ERROR, directory=%s", directory), ex);
+			return;
+		}
+		// forget abandoned channels once their files are gone
+		abandoned.retainAll(present);
+	}
+
+	private void dispatch(ShmChannel channel, Frame request) {
+		if (request.kind != RpcFrames.REQUEST) {
+			throw new IllegalArgumentException(String.format("Unexpected frame kind %d", Byte.valueOf(request.kind)));
+		}
+		String corrId = request.context.get(Context.X_REQUEST_ID_KEY);
+		ServiceExporter serviceExporter = exporters.get(request.route);
+		if (serviceExporter == null) {
+			log.info("status=SERVER-ERROR, corrId={}, target={}, message=Not Found", corrId, request.route);
+			respond(channel, RpcFrames.error(request.id, ServerErrors.NOT_FOUND, "Not Found"));
+			return;
+		}
+		log.trace("status=SERVER-EXECUTING, corrId={}, target={}", corrId, request.route);
+		serviceExporter
+			.call(request.route, request.context, request.data)
+			.whenComplete((entry, t) -> {
+				// it is expected that all exceptions are serialized as normal response (unless exactly that failed)
+				if (t != null || entry == null) {
+					int statusCode = ServerErrors.statusCode(t);
+					String message = ServerErrors.message(t);
+					log.info("status=SERVER-ERROR, corrId={}, target={}, message={}", corrId, request.route, message);
+					respond(channel, RpcFrames.error(request.id, statusCode, message));
+					return;
+				}
+				Context outgoingContext = entry.getKey() != null ? entry.getKey() : request.context;
+				respond(channel, RpcFrames.response(request.id, outgoingContext, entry.getValue()));
+				log.debug("status=SERVER-COMPLETED, corrId={}, target={}", corrId, request.route);
+			});
+	}
+
+	/**
+	 * Waits for space in the response ring while the client is there to drain it. A client
+	 * that consumes no response within the response timeout is taken for dead: the response
+	 * is dropped and the channel abandoned, so that it holds up neither the responding
+	 * thread nor, with it, the other clients.
+	 */
+	private void respond(ShmChannel channel, Frame response) {
+		try {
+			int idleCount = 0;
+			long head = channel.responses.head();
+			long deadline = System.currentTimeMillis() + responseTimeoutMillis;
+			while (!channel.responses.offer(response)) {
+				if (!running || channel.isClosed() || channel.isAbandoned()) {
+					return;
+				}
+				long now = System.currentTimeMillis();
+				long current = channel.responses.head();
+				if (current != head) {
+					head = current;
+					deadline = now + responseTimeoutMillis;
+				}
+				else if (now >= deadline) {
+					log.warn("status=SERVER-STALLED, channel={}, message=No response consumed within {} ms", channel.file, Long.valueOf(responseTimeoutMillis));
+					channel.abandon();
+					return;
+				}
+				waitStrategy.idle(++idleCount);
+			}
+		}
+		catch (IllegalArgumentException ex) {
+			log.error(String.format("status=SERVER-ERROR, channel=%s", channel.file), ex);
+			respond(channel, RpcFrames.error(response.id, ServerErrors.SERVER_ERROR, ex.getMessage()));
+		}
+	}
+}
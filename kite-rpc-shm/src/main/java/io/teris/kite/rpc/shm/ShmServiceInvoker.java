@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.shm;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+
+import io.teris.kite.rpc.ServiceInvoker;
+
+
+/**
+ * Performs calls to a {@link ShmServiceExporter} on the same host through a channel file
+ * created in the shared directory. Requests are written into the mapped file by the
+ * calling thread, responses are polled by a single thread of the invoker that also
+ * completes the calls (continuations should thus not block). Calls fail and the invoker
+ * stops once the exporter abandons the channel, e.g. as responses were not consumed in
+ * time.
+ */
+public interface ShmServiceInvoker extends ServiceInvoker {
+
+	/**
+	 * Stops polling, fails the calls in flight and removes the channel file.
+	 */
+	@Nonnull
+	CompletableFuture<Void> close();
+
+	@Nonnull
+	static Configurator directory(@Nonnull Path directory) {
+		return new ShmServiceInvokerImpl.ConfiguratorImpl(directory);
+	}
+
+	interface Configurator {
+
+		/**
+		 * The size of each of the request and response rings in bytes, a power of two
+		 * (default: 1MB). A frame may take at most half of it.
+		 */
+		@Nonnull
+		Configurator capacity(int capacity);
+
+		/**
+		 * Defines how the polling thread waits when there are no responses (default:
+		 * backoff from spinning to parking for up to 1ms).
+		 */
+		@Nonnull
+		Configurator waitStrategy(@Nonnull WaitStrategy waitStrategy);
+
+		/**
+		 * How long a call waits for space in a full request ring before failing
+		 * (default: 1s).
+		 */
+		@Nonnull
+		Configurator offerTimeoutMillis(long offerTimeoutMillis);
+
+		/**
+		 * Creates the channel file and starts polling.
+		 */
+		@Nonnull
+		ShmServiceInvoker connect() throws IOException;
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.shm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.teris.kite.rpc.ServerErrors;
+import io.teris.kite.rpc.TechnicalException;
+
+
+class ShmServiceInvokerImpl implements ShmServiceInvoker {
+
+	private static final Logger log = LoggerFactory.getLogger(ShmServiceInvoker.class);
+
+	private final ShmChannel channel;
+
+	private final WaitStrategy waitStrategy;
+
+	private final long offerTimeoutNanos;
+
+	private final AtomicInteger ids = new AtomicInteger(0);
+
+	private final Map<Integer, Entry<Context, CompletableFuture<Entry<Context, byte[]>>>> requestStore = new ConcurrentHashMap<>();
+
+	private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+
+	private volatile boolean running = true;
+
+	ShmServiceInvokerImpl(ShmChannel channel, WaitStrategy waitStrategy, long offerTimeoutMillis) {
+		this.channel = channel;
+		this.waitStrategy = waitStrategy;
+		this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+		Thread poller = new Thread(this::poll, "kite-shm-invoker");
+		poller.setDaemon(true);
+		poller.start();
+	}
+
+	static class ConfiguratorImpl implements ShmServiceInvoker.Configurator {
+
+		private final Path directory;
+
+		private int capacity = 1024 * 1024;
+
+		private WaitStrategy waitStrategy = ShmServiceExporterImpl.DEFAULT_WAIT_STRATEGY;
+
+		private long offerTimeoutMillis = 1000;
+
+		ConfiguratorImpl(Path directory) {
+			this.directory = directory;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator capacity(int capacity) {
+			this.capacity = capacity;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator waitStrategy(@Nonnull WaitStrategy waitStrategy) {
+			this.waitStrategy = waitStrategy;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator offerTimeoutMillis(long offerTimeoutMillis) {
+			this.offerTimeoutMillis = offerTimeoutMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public ShmServiceInvoker connect() throws IOException {
+			return new ShmServiceInvokerImpl(ShmChannel.create(directory, capacity), waitStrategy, offerTimeoutMillis);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] outgoing) {
+		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		if (!running) {
+			promise.completeExceptionally(new TechnicalException("Invoker closed"));
+			return promise;
+		}
+		Integer id = Integer.valueOf(ids.incrementAndGet());
+		requestStore.put(id, new SimpleEntry<>(context, promise));
+		log.trace("status=CLIENT-SENDING, corrId={}, target={}", context.get(Context.X_REQUEST_ID_KEY), route);
+		try {
+			Frame request = RpcFrames.request(id.intValue(), route, context, outgoing);
+			long deadline = System.nanoTime() + offerTimeoutNanos;
+			int idleCount = 0;
+			while (!channel.requests.offer(request)) {
+				if (!running || System.nanoTime() - deadline > 0) {
+					throw new TechnicalException("Request ring full");
+				}
+				waitStrategy.idle(++idleCount);
+			}
+			// the poller may have failed all calls meanwhile, e.g. on the channel being abandoned
+			if (!running && requestStore.remove(id) != null) {
+				promise.completeExceptionally(new TechnicalException("Invoker closed"));
+			}
+		}
+		catch (RuntimeException ex) {
+			requestStore.remove(id);
+			promise.completeExceptionally(ex instanceof TechnicalException ? ex : new TechnicalException(ex.getMessage()));
+		}
+		return promise;
+	}
+
+	private void poll() {
+		int idleCount = 0;
+		try {
+			while (running) {
+				Frame response = channel.responses.poll();
+				if (response == null) {
+					if (channel.isAbandoned()) {
+						// the server sends no more responses
+						log.error("status=CLIENT-ERROR, channel={}, message=Channel abandoned by the server", channel.file);
+						running = false;
+						failAll(new TechnicalException("Channel abandoned by the server"));
+						break;
+					}
+					waitStrategy.idle(++idleCount);
+					continue;
+				}
+				idleCount = 0;
+				complete(response);
+			}
+		}
+		catch (IllegalArgumentException ex) {
+			log.error(String.format("status=CLIENT-ERROR, channel=%s", channel.file), ex);
+			running = false;
+			failAll(new TechnicalException("Malformed response"));
+		}
+		finally {
+			stopped.complete(null);
+		}
+	}
+
+	private void complete(Frame response) {
+		Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = requestStore.remove(Integer.valueOf(response.id));
+		if (entry == null) {
+			log.error("status=CLIENT-ERROR, message=No request information found for {}", Integer.valueOf(response.id));
+			return;
+		}
+		CompletableFuture<Entry<Context, byte[]>> promise = entry.getValue();
+		if (response.kind == RpcFrames.RESPONSE) {
+			Context incomingContext = new Context(entry.getKey());
+			incomingContext.putAll(response.context);
+			promise.complete(new SimpleEntry<>(incomingContext, response.data));
+			log.debug("status=CLIENT-COMPLETED, corrId={}", entry.getKey().get(Context.X_REQUEST_ID_KEY));
+		}
+		else {
+			promise.completeExceptionally(ServerErrors.exception(response.statusCode, response.errorMessage));
+		}
+	}
+
+	private void failAll(Throwable t) {
+		for (Integer id : new ArrayList<>(requestStore.keySet())) {
+			Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = requestStore.remove(id);
+			if (entry != null) {
+				entry.getValue().completeExceptionally(t);
+			}
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Void> close() {
+		running = false;
+		return stopped.thenRun(() -> {
+			channel.close();
+			failAll(new TechnicalException("Invoker closed"));
+			try {
+				Files.deleteIfExists(channel.file);
+			}
+			catch (IOException ex) {
+				log.error(String.format("status=CLIENT-ERROR, channel=%s", channel.file), ex);
+			}
+		});
+	}
+}
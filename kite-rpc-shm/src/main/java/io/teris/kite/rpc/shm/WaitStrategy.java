@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.shm;
+
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nonnull;
+
+
+/**
+ * Defines how a thread polling a ring buffer waits when there is nothing to do. Busy
+ * spinning gives the lowest latency at the cost of a fully used core per polling thread,
+ * parking frees the core at the cost of wake-up latency.
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+
+	/**
+	 * Called after every unsuccessful poll.
+	 *
+	 * @param idleCount the number of consecutive unsuccessful polls so far, starting at 1.
+	 */
+	void idle(int idleCount);
+
+	/**
+	 * Spins without yielding the core.
+	 */
+	@Nonnull
+	static WaitStrategy busySpin() {
+		return (idleCount) -> {};
+	}
+
+	/**
+	 * Yields the core to other threads on every unsuccessful poll.
+	 */
+	@Nonnull
+	static WaitStrategy yielding() {
+		return (idleCount) -> Thread.yield();
+	}
+
+	/**
+	 * Parks the thread for the given period on every unsuccessful poll.
+	 */
+	@Nonnull
+	static WaitStrategy parking(long parkNanos) {
+		return (idleCount) -> LockSupport.parkNanos(parkNanos);
+	}
+
+	/**
+	 * Spins for the given number of polls, then yields for the same number of polls and
+	 * parks thereafter for a period doubling up to the maximum.
+	 */
+	@Nonnull
+	static WaitStrategy backoff(int spins, long maxParkNanos) {
+		return (idleCount) -> {
+			if (idleCount <= spins) {
+				return;
+			}
+			if (idleCount <= 2 * spins) {
+				Thread.yield();
+				return;
+			}
+			int shift = Math.min(idleCount - 2 * spins, 20);
+			LockSupport.parkNanos(Math.min(1000L << shift, maxParkNanos));
+		};
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.shm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+
+
+public class RingTest {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private final Ring underTest = new Ring(ByteBuffer.allocateDirect(Ring.length(1024)), 0, 1024);
+
+	@Test
+	public void offerPoll_request_roundtrip() {
+		Context context = new Context();
+		context.put("X-Request-ID", "abc");
+		assertTrue(underTest.offer(RpcFrames.request(42, "some.route", context, new byte[]{1, 2, 3})));
+		Frame res = underTest.poll();
+		assertEquals(RpcFrames.REQUEST, res.kind);
+		assertEquals(42, res.id);
+		assertEquals("some.route", res.route);
+		assertEquals(context, res.context);
+		assertArrayEquals(new byte[]{1, 2, 3}, res.data);
+		assertNull(underTest.poll());
+	}
+
+	@Test
+	public void offerPoll_errorAndNullData_roundtrip() {
+		assertTrue(underTest.offer(RpcFrames.response(1, new Context(), null)));
+		assertTrue(underTest.offer(RpcFrames.error(2, 404, "Not Found")));
+		Frame response = underTest.poll();
+		assertEquals(RpcFrames.RESPONSE, response.kind);
+		assertNull(response.data);
+		Frame error = underTest.poll();
+		assertEquals(RpcFrames.ERROR, error.kind);
+		assertEquals(404, error.statusCode);
+		assertEquals("Not Found", error.errorMessage);
+	}
+
+	@Test
+	public void offer_full_false() {
+		int count = 0;
+		while (underTest.offer(RpcFrames.request(count, "r", new Context(), new byte[100]))) {
+			count++;
+		}
+		assertTrue(count > 0);
+		assertFalse(underTest.offer(RpcFrames.request(count, "r", new Context(), new byte[100])));
+		assertEquals(0, underTest.poll().id);
+		assertTrue(underTest.offer(RpcFrames.request(count, "r", new Context(), new byte[100])));
+	}
+
+	@Test
+	public void offerPoll_wrapAround_preservesOrder() {
+		int next = 0;
+		for (int i = 0; i < 1000; i++) {
+			// varying sizes move the record boundaries across the end of the data
+			Frame frame = RpcFrames.request(i, "r", new Context(), new byte[i % 300]);
+			if (underTest.offer(frame)) {
+				continue;
+			}
+			Frame res;
+			while ((res = underTest.poll()) != null) {
+				assertEquals(next, res.id);
+				assertEquals(next % 300, res.data.length);
+				next++;
+			}
+			assertTrue(underTest.offer(frame));
+		}
+		while (underTest.poll() != null) {
+			next++;
+		}
+		assertEquals(1000, next);
+	}
+
+	@Test
+	public void offer_frameExceedingHalfCapacity_throws() {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("exceeds the ring capacity of 1024 bytes");
+		underTest.offer(RpcFrames.request(1, "r", new Context(), new byte[600]));
+	}
+
+	@Test
+	public void construct_capacityNotPowerOfTwo_throws() {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Ring capacity must be a power of two of at least 1024 bytes");
+		new Ring(ByteBuffer.allocate(Ring.length(1500)), 0, 1500);
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.shm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.teris.kite.rpc.TechnicalException;
+
+
+public class ShmServiceExporterImplTest {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Frame poll(ShmChannel channel, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		Frame res;
+		while ((res = channel.responses.poll()) == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		return res;
+	}
+
+	@Test
+	public void respond_clientNotConsuming_channelAbandonedOthersServed() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		ShmServiceExporterImpl underTest = new ShmServiceExporterImpl(directory, ShmServiceExporterImpl.DEFAULT_WAIT_STRATEGY, 10, 100);
+		underTest.start();
+		try {
+			// never polls its responses, filling the response ring
+			ShmChannel stalled = ShmChannel.create(directory, 1024);
+			int sent = 0;
+			long lastSent = System.currentTimeMillis();
+			while (System.currentTimeMillis() - lastSent < 500) {
+				if (stalled.requests.offer(RpcFrames.request(sent, "missing.route", new Context(), new byte[0]))) {
+					sent++;
+					lastSent = System.currentTimeMillis();
+				}
+				else {
+					Thread.sleep(1);
+				}
+			}
+			assertTrue(sent > 0);
+			assertTrue(stalled.responses.head() == 0);
+			// published to the client to fail its calls
+			assertTrue(stalled.isAbandoned());
+
+			ShmChannel healthy = ShmChannel.create(directory, 1024);
+			assertTrue(healthy.requests.offer(RpcFrames.request(1, "missing.route", new Context(), new byte[0])));
+			Frame response = poll(healthy, 5000);
+			assertEquals(RpcFrames.ERROR, response.kind);
+			assertEquals(404, response.statusCode);
+		}
+		finally {
+			underTest.close().get();
+		}
+	}
+
+	@Test
+	public void poll_malformedRecord_channelAbandoned() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		ShmChannel malformed = ShmChannel.create(directory, 1024);
+		try (RandomAccessFile raf = new RandomAccessFile(malformed.file.toFile(), "rw")) {
+			MappedByteBuffer buffer = raf.getChannel().map(MapMode.READ_WRITE, 0, raf.length());
+			// request ring after the file header: head, tail and data at 0, 64 and 128
+			buffer.putInt(64 + 128, Integer.MAX_VALUE);
+			buffer.putLong(64 + 64, 8);
+		}
+		ShmServiceExporterImpl underTest = new ShmServiceExporterImpl(directory, ShmServiceExporterImpl.DEFAULT_WAIT_STRATEGY, 10, 100);
+		underTest.start();
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!malformed.isAbandoned() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(1);
+			}
+			assertTrue(malformed.isAbandoned());
+
+			// still serving others
+			ShmChannel healthy = ShmChannel.create(directory, 1024);
+			assertTrue(healthy.requests.offer(RpcFrames.request(1, "missing.route", new Context(), new byte[0])));
+			assertEquals(404, poll(healthy, 5000).statusCode);
+		}
+		finally {
+			underTest.close().get();
+		}
+	}
+
+	@Test
+	public void call_channelAbandoned_pendingCallsFailed() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		ShmChannel channel = ShmChannel.create(directory, 1024);
+		ShmServiceInvokerImpl invoker = new ShmServiceInvokerImpl(channel, ShmServiceExporterImpl.DEFAULT_WAIT_STRATEGY, 1000);
+		try {
+			Context context = new Context();
+			CompletableFuture<Entry<Context, byte[]>> promise = invoker.call("some.route", context, new byte[0]);
+			ShmChannel.open(channel.file).abandon();
+			try {
+				promise.get(5, TimeUnit.SECONDS);
+				throw new AssertionError("unreachable code");
+			}
+			catch (ExecutionException ex) {
+				assertEquals(TechnicalException.class, ex.getCause().getClass());
+				assertEquals("Channel abandoned by the server", ex.getCause().getMessage());
+			}
+		}
+		finally {
+			invoker.close().get();
+		}
+	}
+
+	@Test
+	public void configurator_responseTimeoutNotPositive_throws() {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Response timeout must be positive");
+		ShmServiceExporter.directory(folder.getRoot().toPath()).responseTimeoutMillis(0);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.tcp;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+
+
+/**
+ * Batches frames written to a socket from any thread into a single write (and flush)
+ * per event loop turn: the first frame of a batch schedules the flush on the context of
+ * the socket, frames written until it runs are gathered into the same write without
+ * copying.
+ */
+class FrameWriter {
+
+	private final NetSocket socket;
+
+	private final Context context;
+
+	private final boolean pauseWhenFull;
+
+	private List<Buffer> batch = null;
+
+	/**
+	 * @param pauseWhenFull stop reading from the socket while its write queue is full
+	 * (servers), so that peers pipelining faster than they read do not make frames
+	 * accumulate.
+	 */
+	FrameWriter(NetSocket socket, Context context, boolean pauseWhenFull) {
+		this.socket = socket;
+		this.context = context;
+		this.pauseWhenFull = pauseWhenFull;
+	}
+
+	void write(@Nonnull Buffer frame) {
+		boolean schedule;
+		synchronized (this) {
+			schedule = batch == null;
+			if (schedule) {
+				batch = new ArrayList<>();
+			}
+			batch.add(frame);
+		}
+		if (schedule) {
+			context.runOnContext($ -> flush());
+		}
+	}
+
+	private void flush() {
+		List<Buffer> frames;
+		synchronized (this) {
+			frames = batch;
+			batch = null;
+		}
+		if (frames.size() == 1) {
+			socket.write(frames.get(0));
+		}
+		else {
+			ByteBuf[] byteBufs = new ByteBuf[frames.size()];
+			for (int i = 0; i < byteBufs.length; i++) {
+				byteBufs[i] = frames.get(i).getByteBuf();
+			}
+			socket.write(Buffer.buffer(Unpooled.wrappedBuffer(byteBufs)));
+		}
+		if (pauseWhenFull && socket.writeQueueFull()) {
+			socket.pause();
+			socket.drainHandler($ -> socket.resume());
+		}
+	}
+}
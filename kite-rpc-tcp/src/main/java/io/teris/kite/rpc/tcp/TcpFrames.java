@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.tcp;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.netty.buffer.Unpooled;
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.parsetools.RecordParser;
+
+
+/**
+ * Delimits the frames exchanged over a TCP connection: every frame as defined by
+ * RpcFrames is preceded by a four byte big-endian length of the remainder.
+ */
+final class TcpFrames {
+
+	private static final int LENGTH_PREFIX = 4;
+
+	private TcpFrames() {}
+
+	@Nonnull
+	static Buffer request(int id, @Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+		return encode(RpcFrames.request(id, route, context, data));
+	}
+
+	@Nonnull
+	static Buffer response(int id, @Nonnull Context context, @Nullable byte[] data) {
+		return encode(RpcFrames.response(id, context, data));
+	}
+
+	@Nonnull
+	static Buffer error(int id, int statusCode, @Nonnull String errorMessage) {
+		return encode(RpcFrames.error(id, statusCode, errorMessage));
+	}
+
+	/**
+	 * Decodes a frame without its length prefix as delivered by the parser.
+	 *
+	 * @throws IllegalArgumentException if the frame is malformed.
+	 */
+	@Nonnull
+	static Frame decode(@Nonnull Buffer buffer) throws IllegalArgumentException {
+		return RpcFrames.decode(buffer.getByteBuf().nioBuffer());
+	}
+
+	/**
+	 * Creates a parser splitting the incoming byte stream into frames (without their
+	 * length prefix). A frame longer than the maximum size is reported to the error
+	 * handler and nothing is parsed after it.
+	 */
+	@Nonnull
+	static RecordParser parser(int maxFrameSize, @Nonnull Handler<Buffer> frameHandler, @Nonnull Handler<Throwable> errorHandler) {
+		RecordParser parser = RecordParser.newFixed(LENGTH_PREFIX);
+		boolean[] expectLength = new boolean[]{true};
+		boolean[] failed = new boolean[]{false};
+		parser.setOutput(buffer -> {
+			if (failed[0]) {
+				return;
+			}
+			if (expectLength[0]) {
+				int length = buffer.getInt(0);
+				if (length <= 0 || length > maxFrameSize) {
+					failed[0] = true;
+					errorHandler.handle(new IllegalArgumentException(
+						String.format("Frame of %d bytes exceeds the maximum of %d bytes", Integer.valueOf(length), Integer.valueOf(maxFrameSize))));
+					return;
+				}
+				expectLength[0] = false;
+				parser.fixedSizeMode(length);
+			}
+			else {
+				expectLength[0] = true;
+				parser.fixedSizeMode(LENGTH_PREFIX);
+				frameHandler.handle(buffer);
+			}
+		});
+		return parser;
+	}
+
+	private static Buffer encode(Frame frame) {
+		int length = frame.encodedLength();
+		ByteBuffer target = ByteBuffer.allocate(LENGTH_PREFIX + length).putInt(length);
+		frame.encode(target);
+		// wraps rather than copies the encoded frame
+		return Buffer.buffer(Unpooled.wrappedBuffer(target.array()));
+	}
+}
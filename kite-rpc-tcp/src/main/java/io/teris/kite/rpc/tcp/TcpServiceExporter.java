@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.tcp;
+
+import javax.annotation.Nonnull;
+
+import io.teris.kite.rpc.ServiceExporter;
+import io.vertx.core.Handler;
+import io.vertx.core.net.NetSocket;
+
+
+/**
+ * Relays requests received over TCP connections to the matching service exporters.
+ * Requests are processed concurrently as they arrive and responses are written in the
+ * order of completion. The exporter is registered as the connect handler of a Vert.x
+ * NetServer:
+ *
+ * <pre>
+ * vertx.createNetServer(options)
+ *     .connectHandler(TcpServiceExporter.builder().export(serviceExporter))
+ *     .listen();
+ * </pre>
+ *
+ * For services on the same host the server can instead listen on a Unix domain socket,
+ * {@code listen(SocketAddress.domainSocketAddress(path))}, given the native transport.
+ */
+public interface TcpServiceExporter extends Handler<NetSocket> {
+
+	/**
+	 * Registers every service method bound to the exporter for dispatching.
+	 */
+	@Nonnull
+	TcpServiceExporter export(@Nonnull ServiceExporter serviceExporter);
+
+	@Nonnull
+	static Builder builder() {
+		return new TcpServiceExporterImpl.BuilderImpl();
+	}
+
+	interface Builder {
+
+		/**
+		 * Limits the size of incoming frames in bytes (default: 16MB); connections
+		 * sending larger frames are closed.
+		 */
+		@Nonnull
+		Builder maxFrameSize(int maxFrameSize);
+
+		/**
+		 * Registers every service method bound to the exporter for dispatching.
+		 */
+		@Nonnull
+		TcpServiceExporter export(@Nonnull ServiceExporter serviceExporter);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.tcp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.teris.kite.rpc.ServerErrors;
+import io.teris.kite.rpc.ServiceExporter;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetSocket;
+
+
+class TcpServiceExporterImpl implements TcpServiceExporter {
+
+	static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+	private static final Logger log = LoggerFactory.getLogger(TcpServiceExporter.class);
+
+	private final int maxFrameSize;
+
+	private final Map<String, ServiceExporter> exporters = new ConcurrentHashMap<>();
+
+	TcpServiceExporterImpl(int maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	static class BuilderImpl implements TcpServiceExporter.Builder {
+
+		private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+
+		@Nonnull
+		@Override
+		public Builder maxFrameSize(int maxFrameSize) {
+			this.maxFrameSize = maxFrameSize;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public TcpServiceExporter export(@Nonnull ServiceExporter serviceExporter) {
+			return new TcpServiceExporterImpl(maxFrameSize).export(serviceExporter);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public TcpServiceExporter export(@Nonnull ServiceExporter serviceExporter) {
+		for (String route : serviceExporter.routes()) {
+			exporters.put(route, serviceExporter);
+		}
+		return this;
+	}
+
+	@Override
+	public void handle(NetSocket socket) {
+		FrameWriter writer = new FrameWriter(socket, Vertx.currentContext(), true);
+		String remote = String.valueOf(socket.remoteAddress());
+		socket.exceptionHandler(t -> log.error(String.format("status=SERVER-ERROR, remote=%s", remote), t));
+		socket.handler(TcpFrames.parser(maxFrameSize, buffer -> {
+			Frame request;
+			try {
+				request = TcpFrames.decode(buffer);
+				if (request.kind != RpcFrames.REQUEST) {
+					throw new IllegalArgumentException(String.format("Unexpected frame kind %d", Byte.valueOf(request.kind)));
+				}
+			}
+			catch (IllegalArgumentException ex) {
+				log.error(String.format("status=SERVER-ERROR, remote=%s", remote), ex);
+				socket.close();
+				return;
+			}
+			dispatch(writer, request);
+		}, t -> {
+			log.error(String.format("status=SERVER-ERROR, remote=%s", remote), t);
+			socket.close();
+		}));
+	}
+
+	private void dispatch(FrameWriter writer, Frame request) {
+		String corrId = request.context.get(Context.X_REQUEST_ID_KEY);
+		ServiceExporter serviceExporter = exporters.get(request.route);
+		if (serviceExporter == null) {
+			log.info("status=SERVER-ERROR, corrId={}, target={}, message=Not Found", corrId, request.route);
+			writer.write(TcpFrames.error(request.id, ServerErrors.NOT_FOUND, "Not Found"));
+			return;
+		}
+		log.trace("status=SERVER-EXECUTING, corrId={}, target={}", corrId, request.route);
+		serviceExporter
+			.call(request.route, request.context, request.data)
+			.whenComplete((entry, t) -> {
+				// it is expected that all exceptions are serialized as normal response (unless exactly that failed)
+				if (t != null || entry == null) {
+					int statusCode = ServerErrors.statusCode(t);
+					String message = ServerErrors.message(t);
+					log.info("status=SERVER-ERROR, corrId={}, target={}, message={}", corrId, request.route, message);
+					writer.write(TcpFrames.error(request.id, statusCode, message));
+					return;
+				}
+				Context outgoingContext = entry.getKey() != null ? entry.getKey() : request.context;
+				writer.write(TcpFrames.response(request.id, outgoingContext, entry.getValue()));
+				log.debug("status=SERVER-COMPLETED, corrId={}, target={}", corrId, request.route);
+			});
+	}
+}
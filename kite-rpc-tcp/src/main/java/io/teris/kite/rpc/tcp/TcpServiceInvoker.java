@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.tcp;
+
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+
+import io.teris.kite.rpc.ServiceInvoker;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.SocketAddress;
+
+
+/**
+ * Performs remote calls over a pool of TCP connections to a {@link TcpServiceExporter}.
+ * Connections are established on first use (and reestablished on the next call once
+ * lost) and calls are distributed over them round-robin. Calls are pipelined: any
+ * number of them can be in flight over a connection at the same time, their responses
+ * are matched by correlation Id in any order.
+ */
+public interface TcpServiceInvoker extends ServiceInvoker {
+
+	@Nonnull
+	CompletableFuture<Void> close();
+
+	@Nonnull
+	static Builder netClient(@Nonnull NetClient netClient) {
+		return new TcpServiceInvokerImpl.BuilderImpl(netClient);
+	}
+
+	interface Builder {
+
+		@Nonnull
+		Builder host(@Nonnull String host);
+
+		@Nonnull
+		Builder port(int port);
+
+		/**
+		 * Connects to the given address instead of host and port, e.g. to a Unix domain
+		 * socket for services on the same host:
+		 * {@code SocketAddress.domainSocketAddress("/var/run/service.sock")}. Domain sockets
+		 * require the native transport: Vert.x created with preferNativeTransport and
+		 * netty-transport-native-epoll (Linux) or -kqueue (macOS) on the classpath.
+		 */
+		@Nonnull
+		Builder address(@Nonnull SocketAddress address);
+
+		/**
+		 * The number of connections to distribute calls over (default: 1).
+		 */
+		@Nonnull
+		Builder poolSize(int poolSize);
+
+		/**
+		 * Limits the size of incoming frames in bytes (default: 16MB); a connection
+		 * receiving a larger frame is closed failing all calls in flight over it.
+		 */
+		@Nonnull
+		Builder maxFrameSize(int maxFrameSize);
+
+		@Nonnull
+		TcpServiceInvoker build();
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.tcp;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.teris.kite.rpc.ServerErrors;
+import io.teris.kite.rpc.TechnicalException;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.net.SocketAddress;
+
+
+class TcpServiceInvokerImpl implements TcpServiceInvoker {
+
+	private static final Logger log = LoggerFactory.getLogger(TcpServiceInvoker.class);
+
+	private final NetClient netClient;
+
+	final SocketAddress address;
+
+	private final int maxFrameSize;
+
+	private final List<CompletableFuture<Connection>> pool = new ArrayList<>();
+
+	private final AtomicInteger next = new AtomicInteger(0);
+
+	private boolean closed = false;
+
+	TcpServiceInvokerImpl(NetClient netClient, SocketAddress address, int poolSize, int maxFrameSize) {
+		this.netClient = netClient;
+		this.address = address;
+		this.maxFrameSize = maxFrameSize;
+		for (int i = 0; i < poolSize; i++) {
+			pool.add(null);
+		}
+	}
+
+	static class BuilderImpl implements TcpServiceInvoker.Builder {
+
+		private final NetClient netClient;
+
+		private String host = "localhost";
+
+		private Integer port = null;
+
+		private SocketAddress address = null;
+
+		private int poolSize = 1;
+
+		private int maxFrameSize = TcpServiceExporterImpl.DEFAULT_MAX_FRAME_SIZE;
+
+		BuilderImpl(NetClient netClient) {
+			this.netClient = netClient;
+		}
+
+		@Nonnull
+		@Override
+		public Builder host(@Nonnull String host) {
+			this.host = host;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder port(int port) {
+			this.port = Integer.valueOf(port);
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder address(@Nonnull SocketAddress address) {
+			this.address = address;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder poolSize(int poolSize) {
+			if (poolSize < 1) {
+				throw new IllegalArgumentException("Pool size must be positive");
+			}
+			this.poolSize = poolSize;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder maxFrameSize(int maxFrameSize) {
+			this.maxFrameSize = maxFrameSize;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public TcpServiceInvoker build() {
+			SocketAddress target = address;
+			if (target == null) {
+				Objects.requireNonNull(port, "Port or address is required");
+				target = SocketAddress.inetSocketAddress(port.intValue(), host);
+			}
+			return new TcpServiceInvokerImpl(netClient, target, poolSize, maxFrameSize);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] outgoing) {
+		int slot = Math.floorMod(next.getAndIncrement(), pool.size());
+		return connect(slot).thenCompose((connection) -> connection.call(route, context, outgoing));
+	}
+
+	private synchronized CompletableFuture<Connection> connect(int slot) {
+		if (closed) {
+			CompletableFuture<Connection> res = new CompletableFuture<>();
+			res.completeExceptionally(new TechnicalException("Invoker closed"));
+			return res;
+		}
+		CompletableFuture<Connection> current = pool.get(slot);
+		if (current != null) {
+			return current;
+		}
+		CompletableFuture<Connection> promise = new CompletableFuture<>();
+		pool.set(slot, promise);
+		netClient.connect(address, handler -> {
+			if (handler.failed()) {
+				release(slot, promise);
+				promise.completeExceptionally(new TechnicalException("connection exception", handler.cause()));
+				return;
+			}
+			NetSocket socket = handler.result();
+			Connection connection = new Connection(socket);
+			socket.closeHandler($ -> {
+				release(slot, promise);
+				connection.failAll(new TechnicalException("Connection closed"));
+			});
+			promise.complete(connection);
+		});
+		return promise;
+	}
+
+	private synchronized void release(int slot, CompletableFuture<Connection> lost) {
+		if (pool.get(slot) == lost) {
+			pool.set(slot, null);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Void> close() {
+		List<CompletableFuture<Connection>> connections = new ArrayList<>();
+		synchronized (this) {
+			closed = true;
+			for (CompletableFuture<Connection> connection : pool) {
+				if (connection != null) {
+					connections.add(connection);
+				}
+			}
+		}
+		return CompletableFuture
+			.allOf(connections.stream()
+				.map((promise) -> promise.handle((connection, t) -> {
+					if (connection != null) {
+						connection.socket.close();
+					}
+					return null;
+				}))
+				.toArray(CompletableFuture[]::new))
+			.thenRunAsync(netClient::close);
+	}
+
+	/**
+	 * A single connection multiplexing calls by correlation Id.
+	 */
+	private class Connection {
+
+		private final NetSocket socket;
+
+		private final FrameWriter writer;
+
+		private final AtomicInteger ids = new AtomicInteger(0);
+
+		private final Map<Integer, Entry<Context, CompletableFuture<Entry<Context, byte[]>>>> requestStore = new ConcurrentHashMap<>();
+
+		private volatile Throwable failure = null;
+
+		Connection(NetSocket socket) {
+			this.socket = socket;
+			this.writer = new FrameWriter(socket, Vertx.currentContext(), false);
+			socket.exceptionHandler(t -> log.error(String.format("status=CLIENT-ERROR, target=%s", address), t));
+			socket.handler(TcpFrames.parser(maxFrameSize, this::onFrame, t -> {
+				log.error(String.format("status=CLIENT-ERROR, target=%s", address), t);
+				socket.close();
+			}));
+		}
+
+		CompletableFuture<Entry<Context, byte[]>> call(String route, Context context, byte[] outgoing) {
+			Integer id = Integer.valueOf(ids.incrementAndGet());
+			CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+			requestStore.put(id, new SimpleEntry<>(context, promise));
+			if (failure != null && requestStore.remove(id) != null) {
+				// lost concurrently with the selection of this connection
+				promise.completeExceptionally(failure);
+				return promise;
+			}
+			log.trace("status=CLIENT-SENDING, corrId={}, target={}", context.get(Context.X_REQUEST_ID_KEY), route);
+			writer.write(TcpFrames.request(id.intValue(), route, context, outgoing));
+			return promise;
+		}
+
+		private void onFrame(Buffer buffer) {
+			Frame response;
+			try {
+				response = TcpFrames.decode(buffer);
+			}
+			catch (IllegalArgumentException ex) {
+				log.error(String.format("status=CLIENT-ERROR, target=%s", address), ex);
+				socket.close();
+				return;
+			}
+			Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = requestStore.remove(Integer.valueOf(response.id));
+			if (entry == null) {
+				log.error("status=CLIENT-ERROR, message=No request information found for {}", Integer.valueOf(response.id));
+				return;
+			}
+			CompletableFuture<Entry<Context, byte[]>> promise = entry.getValue();
+			if (response.kind == RpcFrames.RESPONSE) {
+				Context incomingContext = new Context(entry.getKey());
+				incomingContext.putAll(response.context);
+				promise.complete(new SimpleEntry<>(incomingContext, response.data));
+				log.debug("status=CLIENT-COMPLETED, corrId={}", entry.getKey().get(Context.X_REQUEST_ID_KEY));
+			}
+			else {
+				promise.completeExceptionally(ServerErrors.exception(response.statusCode, response.errorMessage));
+			}
+		}
+
+		void failAll(Throwable t) {
+			failure = t;
+			for (Integer id : new ArrayList<>(requestStore.keySet())) {
+				Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = requestStore.remove(id);
+				if (entry != null) {
+					entry.getValue().completeExceptionally(t);
+				}
+			}
+		}
+	}
+}
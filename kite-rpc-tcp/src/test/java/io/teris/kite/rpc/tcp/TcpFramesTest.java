@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.tcp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.parsetools.RecordParser;
+
+
+public class TcpFramesTest {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void request_roundtrip_success() {
+		Context context = new Context();
+		context.put("X-Request-ID", "abc");
+		Buffer frame = TcpFrames.request(42, "some.route", context, new byte[]{1, 2, 3});
+		assertEquals(frame.length() - 4, frame.getInt(0));
+		Frame res = TcpFrames.decode(frame.getBuffer(4, frame.length()));
+		assertEquals(RpcFrames.REQUEST, res.kind);
+		assertEquals(42, res.id);
+		assertEquals("some.route", res.route);
+		assertEquals(context, res.context);
+		assertArrayEquals(new byte[]{1, 2, 3}, res.data);
+	}
+
+	@Test
+	public void response_nullData_roundtrip() {
+		Buffer frame = TcpFrames.response(7, new Context(), null);
+		Frame res = TcpFrames.decode(frame.getBuffer(4, frame.length()));
+		assertEquals(RpcFrames.RESPONSE, res.kind);
+		assertNull(res.data);
+	}
+
+	@Test
+	public void parser_framesAcrossChunks_success() {
+		Buffer stream = Buffer.buffer()
+			.appendBuffer(TcpFrames.request(1, "a", new Context(), new byte[]{1}))
+			.appendBuffer(TcpFrames.error(2, 500, "boom"));
+		List<Frame> frames = new ArrayList<>();
+		RecordParser parser = TcpFrames.parser(1000, (buffer) -> frames.add(TcpFrames.decode(buffer)), (t) -> {
+			throw new AssertionError(t);
+		});
+		for (int i = 0; i < stream.length(); i += 3) {
+			parser.handle(stream.getBuffer(i, Math.min(i + 3, stream.length())));
+		}
+		assertEquals(2, frames.size());
+		assertEquals("a", frames.get(0).route);
+		assertEquals(500, frames.get(1).statusCode);
+		assertEquals("boom", frames.get(1).errorMessage);
+	}
+
+	@Test
+	public void parser_frameTooLarge_reportsError() {
+		List<Throwable> errors = new ArrayList<>();
+		RecordParser parser = TcpFrames.parser(10, (buffer) -> {
+			throw new AssertionError("unreachable code");
+		}, errors::add);
+		parser.handle(TcpFrames.request(1, "some.route", new Context(), new byte[100]));
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0).getMessage().contains("exceeds the maximum of 10 bytes"));
+	}
+
+	@Test
+	public void decode_truncated_throws() {
+		Buffer frame = TcpFrames.request(1, "route", new Context(), new byte[]{1, 2, 3});
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Malformed frame");
+		TcpFrames.decode(frame.getBuffer(4, frame.length() - 1));
+	}
+}
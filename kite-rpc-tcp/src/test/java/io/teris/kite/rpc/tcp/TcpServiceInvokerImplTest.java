@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.tcp;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+public class TcpServiceInvokerImplTest {
+
+	@Test
+	public void build_portChangedAfterBuild_newAddressUsed() {
+		TcpServiceInvoker.Builder builder = new TcpServiceInvokerImpl.BuilderImpl(null).host("localhost").port(5001);
+		TcpServiceInvokerImpl first = (TcpServiceInvokerImpl) builder.build();
+		TcpServiceInvokerImpl second = (TcpServiceInvokerImpl) builder.port(5002).build();
+		assertEquals(5001, first.address.port());
+		assertEquals(5002, second.address.port());
+	}
+}
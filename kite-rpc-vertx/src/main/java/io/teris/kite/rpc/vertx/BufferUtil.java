@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+
+/**
+ * Moves message bodies between Vert.x buffers and the byte arrays of the codecs
+ * avoiding intermediate copies where the buffer layout permits.
+ */
+final class BufferUtil {
+
+	private BufferUtil() {}
+
+	/**
+	 * Wraps the array into a buffer without copying it. The array must not be modified
+	 * until the buffer has been written.
+	 */
+	@Nonnull
+	static Buffer wrap(@Nonnull byte[] data) {
+		return Buffer.buffer(Unpooled.wrappedBuffer(data));
+	}
+
+	/**
+	 * Returns the readable content of the buffer. The backing array of a heap buffer is
+	 * returned as is if it holds exactly the readable content, otherwise the content is
+	 * copied.
+	 */
+	@Nonnull
+	static byte[] bytes(@Nonnull Buffer buffer) {
+		ByteBuf byteBuf = buffer.getByteBuf();
+		if (byteBuf.hasArray() && byteBuf.arrayOffset() == 0 && byteBuf.readerIndex() == 0
+			&& byteBuf.writerIndex() == byteBuf.array().length) {
+			return byteBuf.array();
+		}
+		return buffer.getBytes();
+	}
+
+	/**
+	 * Collects body chunks into a single array. With a known content length the chunks
+	 * are copied straight into an array growing up to the final size, otherwise they
+	 * are aggregated into a growing buffer. The declared length is not trusted for the
+	 * initial allocation, which is capped, so that a forged header does not reserve
+	 * memory for a body that never arrives; it only serves to detect truncated bodies.
+	 */
+	static class BodyCollector implements Handler<Buffer> {
+
+		static final int MAX_INITIAL_CAPACITY = 64 * 1024;
+
+		private final int contentLength;
+
+		private byte[] body;
+
+		private final Buffer aggregate;
+
+		private int position = 0;
+
+		BodyCollector(long contentLength) {
+			if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+				this.contentLength = (int) contentLength;
+				this.body = new byte[Math.min(this.contentLength, MAX_INITIAL_CAPACITY)];
+				this.aggregate = null;
+			}
+			else {
+				this.contentLength = -1;
+				this.body = null;
+				this.aggregate = Buffer.buffer();
+			}
+		}
+
+		@Override
+		public void handle(Buffer chunk) {
+			if (body != null) {
+				// excess is counted, but not copied, and reported on completion
+				if ((long) position + chunk.length() <= contentLength) {
+					ensureCapacity(position + chunk.length());
+					chunk.getBytes(body, position);
+				}
+				position = (int) Math.min((long) position + chunk.length(), Integer.MAX_VALUE);
+			}
+			else {
+				aggregate.appendBuffer(chunk);
+			}
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > body.length) {
+				// doubling, but never beyond the declared length
+				body = Arrays.copyOf(body, (int) Math.min(Math.max(2L * body.length, capacity), contentLength));
+			}
+		}
+
+		/**
+		 * @return the number of bytes received so far.
+		 */
+		long length() {
+			return body != null ? position : aggregate.length();
+		}
+
+		/**
+		 * @return the number of bytes currently allocated for a body of known length.
+		 */
+		int capacity() {
+			return body != null ? body.length : aggregate.length();
+		}
+
+		@Nonnull
+		byte[] bytes() {
+			if (body != null) {
+				if (position != contentLength) {
+					throw new IllegalStateException(String.format("Body of %d bytes does not match declared content length of %d bytes",
+						Integer.valueOf(position), Integer.valueOf(contentLength)));
+				}
+				// grown up to the declared length, which has been reached
+				return body;
+			}
+			return BufferUtil.bytes(aggregate);
+		}
+
+		static long contentLength(String header) {
+			if (header == null) {
+				return -1;
+			}
+			try {
+				return Long.parseLong(header.trim());
+			}
+			catch (NumberFormatException ex) {
+				return -1;
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import javax.annotation.Nonnull;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+
+
+/**
+ * Carries serialized requests and responses over the event bus. Unlike the default byte
+ * array codec it does not copy the data for local delivery: serialized data is never
+ * modified after it was sent. Over the wire the data is prefixed by its length (-1 for
+ * no data).
+ */
+class EventBusCodec implements MessageCodec<byte[], byte[]> {
+
+	static final String NAME = "kite-rpc-bytes";
+
+	static final EventBusCodec INSTANCE = new EventBusCodec();
+
+	private EventBusCodec() {}
+
+	/**
+	 * Registers the codec with the event bus unless already registered.
+	 */
+	static void register(@Nonnull EventBus eventBus) {
+		try {
+			eventBus.registerCodec(INSTANCE);
+		}
+		catch (IllegalStateException ex) {
+			// registered by another exporter or invoker on the same event bus
+		}
+	}
+
+	@Override
+	public void encodeToWire(Buffer buffer, byte[] data) {
+		if (data == null) {
+			buffer.appendInt(-1);
+		}
+		else {
+			buffer.appendInt(data.length).appendBytes(data);
+		}
+	}
+
+	@Override
+	public byte[] decodeFromWire(int pos, Buffer buffer) {
+		int length = buffer.getInt(pos);
+		return length < 0 ? null : buffer.getBytes(pos + 4, pos + 4 + length);
+	}
+
+	@Override
+	public byte[] transform(byte[] data) {
+		return data;
+	}
+
+	@Override
+	public String name() {
+		return NAME;
+	}
+
+	@Override
+	public byte systemCodecID() {
+		return -1;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+
+import io.teris.kite.rpc.ServiceExporter;
+import io.vertx.core.eventbus.EventBus;
+
+
+/**
+ * Relays requests received over the Vert.x event bus to the matching service exporters.
+ * Every route is consumed at its own address, the route prefixed by the address prefix,
+ * and responses are delivered as replies. Within a single Vert.x instance the serialized
+ * data is passed without copying; with a clustered event bus services are reachable
+ * from all nodes of the cluster without a separate broker.
+ */
+public interface EventBusServiceExporter {
+
+	/**
+	 * Registers every service method bound to the exporter for dispatching.
+	 */
+	@Nonnull
+	EventBusServiceExporter export(@Nonnull ServiceExporter serviceExporter);
+
+	/**
+	 * Unregisters all consumers.
+	 */
+	@Nonnull
+	CompletableFuture<Void> close();
+
+	@Nonnull
+	static Configurator eventBus(@Nonnull EventBus eventBus) {
+		return new EventBusServiceExporterImpl.ConfiguratorImpl(eventBus);
+	}
+
+	interface Configurator {
+
+		/**
+		 * The prefix of the consumer addresses (default: kite.rpc.).
+		 */
+		@Nonnull
+		Configurator addressPrefix(@Nonnull String addressPrefix);
+
+		@Nonnull
+		EventBusServiceExporter export(@Nonnull ServiceExporter serviceExporter);
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.ServerErrors;
+import io.teris.kite.rpc.ServiceExporter;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+
+
+class EventBusServiceExporterImpl implements EventBusServiceExporter {
+
+	static final String DEFAULT_ADDRESS_PREFIX = "kite.rpc.";
+
+	private static final Logger log = LoggerFactory.getLogger(EventBusServiceExporter.class);
+
+	private final EventBus eventBus;
+
+	private final String addressPrefix;
+
+	private final Map<String, MessageConsumer<byte[]>> consumers = new ConcurrentHashMap<>();
+
+	EventBusServiceExporterImpl(EventBus eventBus, String addressPrefix) {
+		this.eventBus = eventBus;
+		this.addressPrefix = addressPrefix;
+		EventBusCodec.register(eventBus);
+	}
+
+	static class ConfiguratorImpl implements EventBusServiceExporter.Configurator {
+
+		private final EventBus eventBus;
+
+		private String addressPrefix = DEFAULT_ADDRESS_PREFIX;
+
+		ConfiguratorImpl(EventBus eventBus) {
+			this.eventBus = eventBus;
+		}
+
+		@Nonnull
+		@Override
+		public Configurator addressPrefix(@Nonnull String addressPrefix) {
+			this.addressPrefix = addressPrefix;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public EventBusServiceExporter export(@Nonnull ServiceExporter serviceExporter) {
+			return new EventBusServiceExporterImpl(eventBus, addressPrefix).export(serviceExporter);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public EventBusServiceExporter export(@Nonnull ServiceExporter serviceExporter) {
+		for (String route : serviceExporter.routes()) {
+			MessageConsumer<byte[]> consumer = eventBus.consumer(addressPrefix + route, (message) -> handle(serviceExporter, route, message));
+			MessageConsumer<byte[]> previous = consumers.put(route, consumer);
+			if (previous != null) {
+				previous.unregister();
+			}
+		}
+		return this;
+	}
+
+	private void handle(ServiceExporter serviceExporter, String route, Message<byte[]> message) {
+		Context context = new Context();
+		for (Map.Entry<String, String> header : message.headers()) {
+			context.put(header.getKey(), header.getValue());
+		}
+		String corrId = context.get(Context.X_REQUEST_ID_KEY);
+		log.trace("status=SERVER-EXECUTING, corrId={}, target={}", corrId, route);
+		serviceExporter
+			.call(route, context, message.body())
+			.whenComplete((entry, t) -> {
+				if (t != null || entry == null) {
+					String errorMessage = ServerErrors.message(t);
+					log.info("status=SERVER-ERROR, corrId={}, target={}, message={}", corrId, route, errorMessage);
+					message.fail(ServerErrors.statusCode(t), errorMessage);
+					return;
+				}
+				DeliveryOptions options = new DeliveryOptions().setCodecName(EventBusCodec.NAME);
+				Context outgoingContext = entry.getKey() != null ? entry.getKey() : context;
+				for (Map.Entry<String, String> header : outgoingContext.entrySet()) {
+					options.addHeader(header.getKey(), header.getValue());
+				}
+				message.reply(entry.getValue(), options);
+				log.debug("status=SERVER-COMPLETED, corrId={}, target={}", corrId, route);
+			});
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Void> close() {
+		List<CompletableFuture<Void>> promises = new ArrayList<>();
+		for (String route : new ArrayList<>(consumers.keySet())) {
+			MessageConsumer<byte[]> consumer = consumers.remove(route);
+			if (consumer == null) {
+				continue;
+			}
+			CompletableFuture<Void> promise = new CompletableFuture<>();
+			consumer.unregister((res) -> {
+				if (res.failed()) {
+					promise.completeExceptionally(res.cause());
+				}
+				else {
+					promise.complete(null);
+				}
+			});
+			promises.add(promise);
+		}
+		return CompletableFuture.allOf(promises.toArray(new CompletableFuture[]{}));
+	}
+}
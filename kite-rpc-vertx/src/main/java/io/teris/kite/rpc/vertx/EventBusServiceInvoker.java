@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import javax.annotation.Nonnull;
+
+import io.teris.kite.rpc.ServiceInvoker;
+import io.vertx.core.eventbus.EventBus;
+
+
+/**
+ * Performs calls over the Vert.x event bus to an {@link EventBusServiceExporter} by
+ * sending every request to the address of its route and awaiting the reply. The context
+ * travels in the message headers. Calls without a consumer fail with a NotFoundException,
+ * calls without a reply within the timeout with a TechnicalException.
+ */
+public interface EventBusServiceInvoker extends ServiceInvoker {
+
+	@Nonnull
+	static Builder eventBus(@Nonnull EventBus eventBus) {
+		return new EventBusServiceInvokerImpl.BuilderImpl(eventBus);
+	}
+
+	interface Builder {
+
+		/**
+		 * The prefix of the exporter addresses (default: kite.rpc.).
+		 */
+		@Nonnull
+		Builder addressPrefix(@Nonnull String addressPrefix);
+
+		/**
+		 * The time to await a reply (default: 30s).
+		 */
+		@Nonnull
+		Builder timeoutMillis(long timeoutMillis);
+
+		@Nonnull
+		EventBusServiceInvoker build();
+	}
+}
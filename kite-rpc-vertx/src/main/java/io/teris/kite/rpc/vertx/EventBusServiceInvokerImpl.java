@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.NotFoundException;
+import io.teris.kite.rpc.ServerErrors;
+import io.teris.kite.rpc.TechnicalException;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+
+
+class EventBusServiceInvokerImpl implements EventBusServiceInvoker {
+
+	private static final Logger log = LoggerFactory.getLogger(EventBusServiceInvoker.class);
+
+	private final EventBus eventBus;
+
+	private final String addressPrefix;
+
+	private final long timeoutMillis;
+
+	EventBusServiceInvokerImpl(EventBus eventBus, String addressPrefix, long timeoutMillis) {
+		this.eventBus = eventBus;
+		this.addressPrefix = addressPrefix;
+		this.timeoutMillis = timeoutMillis;
+		EventBusCodec.register(eventBus);
+	}
+
+	static class BuilderImpl implements EventBusServiceInvoker.Builder {
+
+		private final EventBus eventBus;
+
+		private String addressPrefix = EventBusServiceExporterImpl.DEFAULT_ADDRESS_PREFIX;
+
+		private long timeoutMillis = DeliveryOptions.DEFAULT_TIMEOUT;
+
+		BuilderImpl(EventBus eventBus) {
+			this.eventBus = eventBus;
+		}
+
+		@Nonnull
+		@Override
+		public Builder addressPrefix(@Nonnull String addressPrefix) {
+			this.addressPrefix = addressPrefix;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder timeoutMillis(long timeoutMillis) {
+			this.timeoutMillis = timeoutMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public EventBusServiceInvoker build() {
+			return new EventBusServiceInvokerImpl(eventBus, addressPrefix, timeoutMillis);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] outgoing) {
+		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		String corrId = context.get(Context.X_REQUEST_ID_KEY);
+		DeliveryOptions options = new DeliveryOptions()
+			.setCodecName(EventBusCodec.NAME)
+			.setSendTimeout(timeoutMillis);
+		for (Entry<String, String> header : context.entrySet()) {
+			options.addHeader(header.getKey(), header.getValue());
+		}
+		log.trace("status=CLIENT-SENDING, corrId={}, target={}", corrId, route);
+		eventBus.<byte[]>send(addressPrefix + route, outgoing, options, (reply) -> {
+			if (reply.failed()) {
+				log.info("status=CLIENT-ERROR, corrId={}, target={}, message={}", corrId, route, reply.cause().getMessage());
+				promise.completeExceptionally(exception(reply.cause()));
+				return;
+			}
+			Message<byte[]> response = reply.result();
+			Context incomingContext = new Context(context);
+			for (Map.Entry<String, String> header : response.headers()) {
+				incomingContext.put(header.getKey(), header.getValue());
+			}
+			promise.complete(new SimpleEntry<>(incomingContext, response.body()));
+			log.debug("status=CLIENT-COMPLETED, corrId={}, target={}", corrId, route);
+		});
+		return promise;
+	}
+
+	static RuntimeException exception(Throwable t) {
+		if (!(t instanceof ReplyException)) {
+			return new TechnicalException(String.valueOf(t.getMessage()), t);
+		}
+		ReplyException ex = (ReplyException) t;
+		String message = String.valueOf(ex.getMessage());
+		switch (ex.failureType()) {
+			case NO_HANDLERS:
+				return new NotFoundException("Not Found");
+			case TIMEOUT:
+				return new TechnicalException(message);
+			default:
+				return ServerErrors.exception(ex.failureCode(), message);
+		}
+	}
+}
@@ -4,20 +4,17 @@
 
 package io.teris.kite.rpc.vertx;
 
-import java.util.Collections;
 import java.util.Map.Entry;
-import java.util.Set;
-import java.util.concurrent.CompletionException;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.teris.kite.Context;
-import io.teris.kite.rpc.AuthenticationException;
+import io.teris.kite.rpc.ChunkSource;
+import io.teris.kite.rpc.ServerErrors;
 import io.teris.kite.rpc.ServiceExporter;
 import io.vertx.core.Handler;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 
@@ -28,16 +25,15 @@ class ExportedServiceHandler extends RoutingBase implements Handler<RoutingConte
 
 	private final ServiceExporter serviceExporter;
 
-	ExportedServiceHandler(String uriPrefix, ServiceExporter serviceExporter) {
+	private final HeaderPolicy incomingHeaders;
+
+	private final HeaderPolicy outgoingHeaders;
+
+	ExportedServiceHandler(String uriPrefix, ServiceExporter serviceExporter, HeaderPolicy incomingHeaders, HeaderPolicy outgoingHeaders) {
 		super(uriPrefix);
 		this.serviceExporter = serviceExporter;
-	}
-
-	Set<String> dispatchUris() {
-		return Collections.unmodifiableSet(serviceExporter.routes()
-			.stream()
-			.map(this::routeToUri)
-			.collect(Collectors.toSet()));
+		this.incomingHeaders = incomingHeaders;
+		this.outgoingHeaders = outgoingHeaders;
 	}
 
 	@Override
@@ -47,44 +43,37 @@ class ExportedServiceHandler extends RoutingBase implements Handler<RoutingConte
 
 		Context incomingContext = new Context();
 		for (String headerKey : httpContext.request().headers().names()) {
-			incomingContext.put(headerKey, httpContext.request().getHeader(headerKey));
+			if (isCopied(incomingHeaders, headerKey)) {
+				incomingContext.put(headerKey, httpContext.request().getHeader(headerKey));
+			}
 		}
 		for (Entry<String, Object> entry : httpContext.data().entrySet()) {
-			incomingContext.put(entry.getKey(), String.valueOf(entry.getValue()));
+			if (isCopied(incomingHeaders, entry.getKey())) {
+				incomingContext.put(entry.getKey(), String.valueOf(entry.getValue()));
+			}
 		}
 
-		byte[] incomingData = httpContext.getBody() != null ? httpContext.getBody().getBytes() : null;
+		byte[] incomingData = httpContext.getBody() != null ? BufferUtil.bytes(httpContext.getBody()) : null;
 		String corrId = incomingContext.get(Context.X_REQUEST_ID_KEY);
 
 		log.trace("status=SERVER-EXECUTING, corrId={}, target={}", corrId, uri);
+		if (serviceExporter.isStreaming(route)) {
+			stream(httpContext, route, incomingContext, incomingData);
+			return;
+		}
 		serviceExporter
 			.call(route, incomingContext, incomingData)
 			.handleAsync((entry, t) -> {
 				HttpServerResponse httpResponse = httpContext.response();
 				// it is expected that all exceptions are serialized as normal response (unless exactly that failed)
 				if (t instanceof Exception || entry == null) {
-					t = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
-					String message = t != null ? t.getMessage() : null;
-					if (message == null || message.trim().length() == 0) {
-						message = "Server error: null response";
-					}
-					int statusCode = t instanceof AuthenticationException ? 403 : 500;
-					log.info("status=SERVER-ERROR, corrId={}, target={}, message={}", corrId, uri, message);
-					httpResponse
-						.setStatusCode(statusCode)
-						.setStatusMessage(message)
-						.end();
+					fail(httpResponse, t, corrId, uri);
 					return null;
 				}
-				Context outgoingContext = entry.getKey() != null ? entry.getKey() : incomingContext;
-				for (Entry<String, String> headerEntry : outgoingContext.entrySet()) {
-					httpResponse.putHeader(headerEntry.getKey(), headerEntry.getValue());
-				}
-				httpResponse.setChunked(true).setStatusCode(200);
-				httpResponse.endHandler((v) -> log.debug("status=SERVER-COMPLETED, corrId={}, target={}", corrId, uri));
-
+				respond(httpResponse, entry.getKey() != null ? entry.getKey() : incomingContext, corrId, uri);
+				// the response size is known upfront: Content-Length is set by end() instead of chunking
 				if (entry.getValue() != null) {
-					httpResponse.end(Buffer.buffer(entry.getValue()));
+					httpResponse.end(BufferUtil.wrap(entry.getValue()));
 				}
 				else {
 					httpResponse.end();
@@ -93,4 +82,81 @@ class ExportedServiceHandler extends RoutingBase implements Handler<RoutingConte
 				return null;
 			});
 	}
+
+	private void stream(RoutingContext httpContext, String route, Context incomingContext, byte[] incomingData) {
+		io.vertx.core.Context vertxContext = httpContext.vertx().getOrCreateContext();
+		String uri = httpContext.request().uri();
+		String corrId = incomingContext.get(Context.X_REQUEST_ID_KEY);
+		serviceExporter
+			.stream(route, incomingContext, incomingData)
+			.whenComplete((entry, t) -> vertxContext.runOnContext($ -> {
+				HttpServerResponse httpResponse = httpContext.response();
+				if (t != null || entry == null) {
+					fail(httpResponse, t, corrId, uri);
+					return;
+				}
+				ChunkSource source = entry.getValue();
+				respond(httpResponse, entry.getKey() != null ? entry.getKey() : incomingContext, corrId, uri);
+				// the response size is not known upfront: elements are written as they are produced
+				httpResponse.setChunked(true);
+				AtomicBoolean closed = new AtomicBoolean(false);
+				httpResponse.closeHandler($$ -> {
+					closed.set(true);
+					source.close();
+				});
+				log.trace("status=SERVER-RESPONDING, corrId={}, target={}", corrId, uri);
+				pump(vertxContext, httpResponse, source, closed, corrId, uri);
+			}));
+	}
+
+	/**
+	 * Writes chunks one at a time requesting the next one only while the write queue of
+	 * the connection has capacity, otherwise after it drains, so that a slow client
+	 * slows down the iteration on the server.
+	 */
+	private void pump(io.vertx.core.Context vertxContext, HttpServerResponse httpResponse, ChunkSource source, AtomicBoolean closed, String corrId, String uri) {
+		source.next().whenComplete((chunk, t) -> vertxContext.runOnContext($ -> {
+			if (closed.get()) {
+				return;
+			}
+			if (t != null) {
+				// the status has already been sent: the failure can only be signalled by aborting
+				log.info("status=SERVER-ERROR, corrId={}, target={}, message={}", corrId, uri, t.getMessage());
+				source.close();
+				httpResponse.close();
+				return;
+			}
+			if (chunk == null) {
+				httpResponse.end();
+				return;
+			}
+			httpResponse.write(BufferUtil.wrap(chunk));
+			if (httpResponse.writeQueueFull()) {
+				httpResponse.drainHandler($$ -> pump(vertxContext, httpResponse, source, closed, corrId, uri));
+			}
+			else {
+				pump(vertxContext, httpResponse, source, closed, corrId, uri);
+			}
+		}));
+	}
+
+	private void respond(HttpServerResponse httpResponse, Context outgoingContext, String corrId, String uri) {
+		for (Entry<String, String> headerEntry : outgoingContext.entrySet()) {
+			if (isCopied(outgoingHeaders, headerEntry.getKey())) {
+				httpResponse.putHeader(headerEntry.getKey(), headerEntry.getValue());
+			}
+		}
+		httpResponse.setStatusCode(200);
+		httpResponse.endHandler((v) -> log.debug("status=SERVER-COMPLETED, corrId={}, target={}", corrId, uri));
+	}
+
+	private void fail(HttpServerResponse httpResponse, Throwable t, String corrId, String uri) {
+		int statusCode = ServerErrors.statusCode(t);
+		String message = ServerErrors.message(t);
+		log.info("status=SERVER-ERROR, corrId={}, target={}, message={}", corrId, uri, message);
+		httpResponse
+			.setStatusCode(statusCode)
+			.setStatusMessage(message)
+			.end();
+	}
 }
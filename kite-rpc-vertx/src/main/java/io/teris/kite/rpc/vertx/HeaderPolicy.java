@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import javax.annotation.Nonnull;
+
+
+/**
+ * Decides which HTTP headers are copied into the context and which context entries are
+ * written out as HTTP headers. The content type and the request Id are always copied
+ * and the transport specific framing headers never, independent of the policy.
+ */
+@FunctionalInterface
+public interface HeaderPolicy {
+
+	/**
+	 * @return true if the header (or context key) of the given name should be copied.
+	 */
+	boolean accepts(@Nonnull String name);
+
+	/**
+	 * @return a policy accepting every header (default).
+	 */
+	@Nonnull
+	static HeaderPolicy all() {
+		return HeaderPolicyImpl.ALL;
+	}
+
+	/**
+	 * @return a new builder of a policy accepting only the explicitly listed headers and
+	 * header prefixes (matched case insensitively).
+	 */
+	@Nonnull
+	static Builder allowlist() {
+		return new HeaderPolicyImpl.BuilderImpl();
+	}
+
+	interface Builder {
+
+		/**
+		 * Accepts the header of the given name.
+		 */
+		@Nonnull
+		Builder header(@Nonnull String name);
+
+		/**
+		 * Accepts every header starting with the given prefix, e.g. `X-`.
+		 */
+		@Nonnull
+		Builder prefix(@Nonnull String prefix);
+
+		@Nonnull
+		HeaderPolicy build();
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.annotation.Nonnull;
+
+import io.teris.kite.Context;
+
+
+class HeaderPolicyImpl implements HeaderPolicy {
+
+	static final HeaderPolicy ALL = (name) -> true;
+
+	private final Set<String> names = new HashSet<>();
+
+	private final String[] prefixes;
+
+	HeaderPolicyImpl(Set<String> names, List<String> prefixes) {
+		this.names.addAll(names);
+		this.prefixes = prefixes.toArray(new String[]{});
+	}
+
+	static class BuilderImpl implements HeaderPolicy.Builder {
+
+		private final Set<String> names = new HashSet<>();
+
+		private final List<String> prefixes = new ArrayList<>();
+
+		BuilderImpl() {
+			names.add(lowerCase(Context.CONTENT_TYPE_KEY));
+			names.add(lowerCase(Context.X_REQUEST_ID_KEY));
+		}
+
+		@Nonnull
+		@Override
+		public Builder header(@Nonnull String name) {
+			names.add(lowerCase(name.trim()));
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder prefix(@Nonnull String prefix) {
+			prefixes.add(lowerCase(prefix.trim()));
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public HeaderPolicy build() {
+			return new HeaderPolicyImpl(names, prefixes);
+		}
+	}
+
+	@Override
+	public boolean accepts(@Nonnull String name) {
+		String key = lowerCase(name);
+		if (names.contains(key)) {
+			return true;
+		}
+		for (String prefix : prefixes) {
+			if (key.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Header names mostly arrive in lower case already (always with HTTP/2), in which case
+	 * the same instance is returned without allocating a new string.
+	 */
+	static String lowerCase(String name) {
+		for (int i = 0; i < name.length(); i++) {
+			if (Character.isUpperCase(name.charAt(i))) {
+				return name.toLowerCase(Locale.ROOT);
+			}
+		}
+		return name;
+	}
+}
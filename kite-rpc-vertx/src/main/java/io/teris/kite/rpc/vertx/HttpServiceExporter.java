@@ -51,11 +51,30 @@ public interface HttpServiceExporter {
 		ServiceRouter uriPrefix(@Nonnull String uriPrefix);
 
 		/**
-		 * Defines a custom body handler, which is added as the very first handler.
+		 * Defines a custom body handler, which is added as the very first handler. By default
+		 * request bodies are read without form and upload processing into an array growing
+		 * up to the declared content length, subject to the body limits.
 		 */
 		@Nonnull
 		ServiceRouter bodyHandler(@Nonnull Handler<RoutingContext> bodyHandler);
 
+		/**
+		 * Limits the request body size in bytes for all routes (default: unlimited). Requests
+		 * declaring a larger content length are rejected with HTTP413 before their body is
+		 * read, chunked requests as soon as the limit is exceeded. Not applied to a custom
+		 * body handler. Set a limit whenever the clients are not trusted: without one a
+		 * request may send an arbitrarily large body.
+		 */
+		@Nonnull
+		ServiceRouter bodyLimit(long bodyLimit);
+
+		/**
+		 * Limits the request body size in bytes for the given route overriding the limit
+		 * for all routes.
+		 */
+		@Nonnull
+		ServiceRouter bodyLimit(@Nonnull String route, long bodyLimit);
+
 		/**
 		 * Adds an ordered routing context pre-processing handler after the body handler,
 		 * but before registering the business logic handler.
@@ -71,6 +90,19 @@ public interface HttpServiceExporter {
 		@Nonnull
 		ServiceRouter caseSensitive();
 
+		/**
+		 * Restricts the request headers and routing context data entries copied into the
+		 * context passed to the service exporter (default: all).
+		 */
+		@Nonnull
+		ServiceRouter incomingHeaders(@Nonnull HeaderPolicy headerPolicy);
+
+		/**
+		 * Restricts the context entries written back as response headers (default: all).
+		 */
+		@Nonnull
+		ServiceRouter outgoingHeaders(@Nonnull HeaderPolicy headerPolicy);
+
 		/**
 		 * Registers HTTP endpoints for every service method bound to the dispatcher using
 		 * all the preconditions of the router.
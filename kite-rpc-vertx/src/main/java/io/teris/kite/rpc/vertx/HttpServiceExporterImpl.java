@@ -5,7 +5,9 @@
 package io.teris.kite.rpc.vertx;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
 
 import io.teris.kite.rpc.ServiceExporter;
@@ -13,7 +15,6 @@ import io.vertx.core.Handler;
 import io.vertx.ext.web.Route;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.BodyHandler;
 
 
 class HttpServiceExporterImpl implements HttpServiceExporter {
@@ -26,14 +27,26 @@ class HttpServiceExporterImpl implements HttpServiceExporter {
 
 	private final Handler<RoutingContext> bodyHandler;
 
+	private final long bodyLimit;
+
+	private final Map<String, Long> routeBodyLimits = new HashMap<>();
+
 	private final boolean caseSensitive;
 
-	HttpServiceExporterImpl(Router router, String uriPrefix, Handler<RoutingContext> bodyHandler, List<Handler<RoutingContext>> preprocessors, boolean caseSensitive) {
+	private final HeaderPolicy incomingHeaders;
+
+	private final HeaderPolicy outgoingHeaders;
+
+	HttpServiceExporterImpl(Router router, String uriPrefix, Handler<RoutingContext> bodyHandler, long bodyLimit, Map<String, Long> routeBodyLimits, List<Handler<RoutingContext>> preprocessors, boolean caseSensitive, HeaderPolicy incomingHeaders, HeaderPolicy outgoingHeaders) {
 		this.router = router;
 		this.uriPrefix = uriPrefix;
 		this.bodyHandler = bodyHandler;
+		this.bodyLimit = bodyLimit;
+		this.routeBodyLimits.putAll(routeBodyLimits);
 		this.caseSensitive = caseSensitive;
 		this.preprocessors.addAll(preprocessors);
+		this.incomingHeaders = incomingHeaders;
+		this.outgoingHeaders = outgoingHeaders;
 	}
 
 	static class ServiceRouterImpl implements ServiceRouter {
@@ -42,12 +55,20 @@ class HttpServiceExporterImpl implements HttpServiceExporter {
 
 		private String uriPrefix = null;
 
-		private Handler<RoutingContext> bodyHandler = BodyHandler.create();
+		private Handler<RoutingContext> bodyHandler = null;
+
+		private long bodyLimit = -1;
+
+		private final Map<String, Long> routeBodyLimits = new HashMap<>();
 
 		private final List<Handler<RoutingContext>> preprocessors = new ArrayList<>();
 
 		private boolean caseSensitive = false;
 
+		private HeaderPolicy incomingHeaders = HeaderPolicy.all();
+
+		private HeaderPolicy outgoingHeaders = HeaderPolicy.all();
+
 		ServiceRouterImpl(Router router) {
 			this.router = router;
 		}
@@ -66,6 +87,20 @@ class HttpServiceExporterImpl implements HttpServiceExporter {
 			return this;
 		}
 
+		@Nonnull
+		@Override
+		public ServiceRouter bodyLimit(long bodyLimit) {
+			this.bodyLimit = bodyLimit;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public ServiceRouter bodyLimit(@Nonnull String route, long bodyLimit) {
+			this.routeBodyLimits.put(route.trim().toLowerCase(), Long.valueOf(bodyLimit));
+			return this;
+		}
+
 		@Nonnull
 		@Override
 		public ServiceRouter preprocessor(@Nonnull Handler<RoutingContext> preprocessor) {
@@ -80,10 +115,24 @@ class HttpServiceExporterImpl implements HttpServiceExporter {
 			return this;
 		}
 
+		@Nonnull
+		@Override
+		public ServiceRouter incomingHeaders(@Nonnull HeaderPolicy headerPolicy) {
+			this.incomingHeaders = headerPolicy;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public ServiceRouter outgoingHeaders(@Nonnull HeaderPolicy headerPolicy) {
+			this.outgoingHeaders = headerPolicy;
+			return this;
+		}
+
 		@Nonnull
 		@Override
 		public HttpServiceExporter export(@Nonnull ServiceExporter serviceExporter) {
-			return new HttpServiceExporterImpl(router, uriPrefix, bodyHandler, preprocessors, caseSensitive)
+			return new HttpServiceExporterImpl(router, uriPrefix, bodyHandler, bodyLimit, routeBodyLimits, preprocessors, caseSensitive, incomingHeaders, outgoingHeaders)
 				.export(serviceExporter);
 		}
 	}
@@ -91,9 +140,10 @@ class HttpServiceExporterImpl implements HttpServiceExporter {
 	@Nonnull
 	@Override
 	public HttpServiceExporter export(@Nonnull ServiceExporter serviceExporter) {
-		ExportedServiceHandler dispatchingHandler = new ExportedServiceHandler(uriPrefix, serviceExporter);
+		ExportedServiceHandler dispatchingHandler = new ExportedServiceHandler(uriPrefix, serviceExporter, incomingHeaders, outgoingHeaders);
 
-		for (String uri: dispatchingHandler.dispatchUris()) {
+		for (String serviceRoute: serviceExporter.routes()) {
+			String uri = dispatchingHandler.routeToUri(serviceRoute);
 			Route route;
 			if (caseSensitive) {
 				route = router.post(uri);
@@ -101,7 +151,13 @@ class HttpServiceExporterImpl implements HttpServiceExporter {
 			else {
 				route = router.postWithRegex("(?i)" + uri);
 			}
-			route = route.handler(bodyHandler);
+			if (bodyHandler != null) {
+				route = route.handler(bodyHandler);
+			}
+			else {
+				long limit = routeBodyLimits.getOrDefault(serviceRoute, Long.valueOf(bodyLimit)).longValue();
+				route = route.handler(new StreamingBodyHandler(limit));
+			}
 			for (Handler<RoutingContext> preprocessor: preprocessors) {
 				route = route.handler(preprocessor);
 			}
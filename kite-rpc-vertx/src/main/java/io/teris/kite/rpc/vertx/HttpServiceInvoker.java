@@ -25,6 +25,18 @@ public interface HttpServiceInvoker extends io.teris.kite.rpc.ServiceInvoker {
 		@Nonnull
 		Builder uriPrefix(@Nonnull String uriPrefix);
 
+		/**
+		 * Restricts the response headers copied into the context (default: all).
+		 */
+		@Nonnull
+		Builder incomingHeaders(@Nonnull HeaderPolicy headerPolicy);
+
+		/**
+		 * Restricts the context entries sent as request headers (default: all).
+		 */
+		@Nonnull
+		Builder outgoingHeaders(@Nonnull HeaderPolicy headerPolicy);
+
 		@Nonnull
 		HttpServiceInvoker build();
 	}
@@ -5,10 +5,13 @@
 package io.teris.kite.rpc.vertx;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -18,11 +21,14 @@ import org.slf4j.LoggerFactory;
 import io.netty.handler.codec.http.cookie.ClientCookieDecoder;
 import io.teris.kite.Context;
 import io.teris.kite.rpc.AuthenticationException;
+import io.teris.kite.rpc.ChunkSource;
 import io.teris.kite.rpc.NotFoundException;
 import io.teris.kite.rpc.TechnicalException;
+import io.teris.kite.rpc.vertx.BufferUtil.BodyCollector;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpHeaders;
 
 
@@ -34,9 +40,15 @@ class HttpServiceInvokerImpl extends RoutingBase implements HttpServiceInvoker {
 
 	private final Map<String, String> cookieStore = new ConcurrentHashMap<>();
 
-	HttpServiceInvokerImpl(HttpClient httpClient, String uriPrefix) {
+	private final HeaderPolicy incomingHeaders;
+
+	private final HeaderPolicy outgoingHeaders;
+
+	HttpServiceInvokerImpl(HttpClient httpClient, String uriPrefix, HeaderPolicy incomingHeaders, HeaderPolicy outgoingHeaders) {
 		super(uriPrefix);
 		this.httpClient = httpClient;
+		this.incomingHeaders = incomingHeaders;
+		this.outgoingHeaders = outgoingHeaders;
 	}
 
 	static class BuilderImpl implements HttpServiceInvoker.Builder {
@@ -45,6 +57,10 @@ class HttpServiceInvokerImpl extends RoutingBase implements HttpServiceInvoker {
 
 		private String uriPrefix = null;
 
+		private HeaderPolicy incomingHeaders = HeaderPolicy.all();
+
+		private HeaderPolicy outgoingHeaders = HeaderPolicy.all();
+
 		BuilderImpl(HttpClient httpClient) {
 			this.httpClient = httpClient;
 		}
@@ -56,10 +72,24 @@ class HttpServiceInvokerImpl extends RoutingBase implements HttpServiceInvoker {
 			return this;
 		}
 
+		@Nonnull
+		@Override
+		public Builder incomingHeaders(@Nonnull HeaderPolicy headerPolicy) {
+			this.incomingHeaders = headerPolicy;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder outgoingHeaders(@Nonnull HeaderPolicy headerPolicy) {
+			this.outgoingHeaders = headerPolicy;
+			return this;
+		}
+
 		@Nonnull
 		@Override
 		public HttpServiceInvoker build() {
-			return new HttpServiceInvokerImpl(httpClient, uriPrefix);
+			return new HttpServiceInvokerImpl(httpClient, uriPrefix, incomingHeaders, outgoingHeaders);
 		}
 	}
 
@@ -72,10 +102,48 @@ class HttpServiceInvokerImpl extends RoutingBase implements HttpServiceInvoker {
 	@Nonnull
 	@Override
 	public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] outgoing) {
+		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		send(route, context, outgoing, promise, (httpResponse, incomingContext) -> {
+			String corrId = context.get(Context.X_REQUEST_ID_KEY);
+			String uri = routeToUri(route);
+			BodyCollector body = new BodyCollector(BodyCollector.contentLength(httpResponse.getHeader(HttpHeaders.CONTENT_LENGTH)));
+			httpResponse.handler(body);
+			httpResponse.exceptionHandler(t -> {
+				promise.completeExceptionally(new TechnicalException("response exception", t));
+				log.error(String.format("status=CLIENT-ERROR, corrId=%s, target=%s", corrId, uri), t);
+			});
+			httpResponse.endHandler($ -> {
+				try {
+					promise.complete(new SimpleEntry<>(incomingContext, body.bytes()));
+					log.debug("status=CLIENT-COMPLETED, corrId={}, target={}", corrId, uri);
+				}
+				catch (IllegalStateException ex) {
+					promise.completeExceptionally(new TechnicalException("response exception", ex));
+					log.error(String.format("status=CLIENT-ERROR, corrId=%s, target=%s", corrId, uri), ex);
+				}
+			});
+		});
+		return promise;
+	}
+
+	/**
+	 * Completes as soon as the response headers are received delivering the body chunks
+	 * as they arrive. The response is paused while the consumer lags behind, which
+	 * propagates back-pressure to the server over TCP flow control.
+	 */
+	@Nonnull
+	@Override
+	public CompletableFuture<Entry<Context, ChunkSource>> stream(@Nonnull String route, @Nonnull Context context, @Nullable byte[] outgoing) {
+		CompletableFuture<Entry<Context, ChunkSource>> promise = new CompletableFuture<>();
+		send(route, context, outgoing, promise, (httpResponse, incomingContext) ->
+			promise.complete(new SimpleEntry<>(incomingContext, new ResponseChunkSource(httpResponse))));
+		return promise;
+	}
+
+	private void send(String route, Context context, byte[] outgoing, CompletableFuture<?> promise, BiConsumer<HttpClientResponse, Context> bodyHandler) {
 		String uri = routeToUri(route);
 		String corrId = context.get(Context.X_REQUEST_ID_KEY);
 		log.trace("status=CLIENT-SENDING, corrId={}, target={}", corrId, uri);
-		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
 
 		HttpClientRequest httpRequest = httpClient.post(uri, httpResponse -> {
 			if (httpResponse.statusCode() == 403) {
@@ -99,21 +167,21 @@ class HttpServiceInvokerImpl extends RoutingBase implements HttpServiceInvoker {
 			log.trace("status=CLIENT-RECEIVING, corrId={}, target={}", corrId, uri);
 			Context incomingContext = new Context(context);
 			for (String headerKey: httpResponse.headers().names()) {
-				incomingContext.put(headerKey, httpResponse.getHeader(headerKey));
+				if (isCopied(incomingHeaders, headerKey)) {
+					incomingContext.put(headerKey, httpResponse.getHeader(headerKey));
+				}
 			}
 
 			for (String cookieText : httpResponse.cookies()) {
 				String cookieName = ClientCookieDecoder.STRICT.decode(cookieText).name();
 				cookieStore.put(cookieName, cookieText);
 			}
-
-			httpResponse.bodyHandler(buffer -> {
-				promise.complete(new SimpleEntry<>(incomingContext, buffer != null ? buffer.getBytes() : null));
-				log.debug("status=CLIENT-COMPLETED, corrId={}, target={}", corrId, uri);
-			});
+			bodyHandler.accept(httpResponse, incomingContext);
 		});
 		for (Entry<String, String> entry : context.entrySet()) {
-			httpRequest.putHeader(entry.getKey(), entry.getValue());
+			if (isCopied(outgoingHeaders, entry.getKey())) {
+				httpRequest.putHeader(entry.getKey(), entry.getValue());
+			}
 		}
 		httpRequest.putHeader(HttpHeaders.COOKIE.toString(), cookieStore.values());
 
@@ -123,11 +191,140 @@ class HttpServiceInvokerImpl extends RoutingBase implements HttpServiceInvoker {
 		});
 
 		if (outgoing != null) {
-			httpRequest.setChunked(true).end(Buffer.buffer(outgoing));
+			// the request size is known upfront: Content-Length is set by end() instead of chunking
+			httpRequest.end(BufferUtil.wrap(outgoing));
 		}
 		else {
 			httpRequest.end();
 		}
-		return promise;
+	}
+
+	/**
+	 * Queues the body chunks of a response until requested, pausing the response above
+	 * the high watermark of queued chunks and resuming it once drained below the low one.
+	 */
+	static class ResponseChunkSource implements ChunkSource {
+
+		static final int HIGH_WATERMARK = 16;
+
+		static final int LOW_WATERMARK = 4;
+
+		private final HttpClientResponse httpResponse;
+
+		private final Deque<byte[]> chunks = new ArrayDeque<>();
+
+		private CompletableFuture<byte[]> waiting = null;
+
+		private boolean paused = false;
+
+		private boolean ended = false;
+
+		private boolean closed = false;
+
+		private Throwable failure = null;
+
+		ResponseChunkSource(HttpClientResponse httpResponse) {
+			this.httpResponse = httpResponse;
+			httpResponse.handler(this::onChunk);
+			httpResponse.exceptionHandler(this::onEnd);
+			httpResponse.endHandler($ -> onEnd(null));
+		}
+
+		private void onChunk(Buffer buffer) {
+			byte[] chunk = BufferUtil.bytes(buffer);
+			CompletableFuture<byte[]> target;
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				if (waiting == null) {
+					chunks.addLast(chunk);
+					if (!paused && chunks.size() >= HIGH_WATERMARK) {
+						paused = true;
+						httpResponse.pause();
+					}
+					return;
+				}
+				target = waiting;
+				waiting = null;
+			}
+			target.complete(chunk);
+		}
+
+		private void onEnd(Throwable t) {
+			CompletableFuture<byte[]> target;
+			synchronized (this) {
+				if (ended) {
+					return;
+				}
+				ended = true;
+				failure = t != null ? new TechnicalException("response exception", t) : null;
+				target = waiting;
+				waiting = null;
+			}
+			if (target != null) {
+				if (failure != null) {
+					target.completeExceptionally(failure);
+				}
+				else {
+					target.complete(null);
+				}
+			}
+		}
+
+		@Nonnull
+		@Override
+		public CompletableFuture<byte[]> next() {
+			boolean resume = false;
+			CompletableFuture<byte[]> res;
+			synchronized (this) {
+				byte[] chunk = chunks.pollFirst();
+				if (chunk != null) {
+					if (paused && chunks.size() <= LOW_WATERMARK) {
+						paused = false;
+						resume = true;
+					}
+					res = CompletableFuture.completedFuture(chunk);
+				}
+				else if (closed || (ended && failure == null)) {
+					res = CompletableFuture.completedFuture(null);
+				}
+				else if (ended) {
+					res = new CompletableFuture<>();
+					res.completeExceptionally(failure);
+				}
+				else {
+					waiting = new CompletableFuture<>();
+					res = waiting;
+				}
+			}
+			if (resume) {
+				httpResponse.resume();
+			}
+			return res;
+		}
+
+		/**
+		 * Discards the remainder of the response. An incomplete response is aborted by
+		 * closing the connection, which lets the server stop producing.
+		 */
+		@Override
+		public void close() {
+			boolean abort;
+			CompletableFuture<byte[]> target;
+			synchronized (this) {
+				abort = !ended && !closed;
+				closed = true;
+				chunks.clear();
+				target = waiting;
+				waiting = null;
+			}
+			if (abort) {
+				httpResponse.request().connection().close();
+			}
+			if (target != null) {
+				target.complete(null);
+			}
+		}
 	}
 }
@@ -4,8 +4,23 @@
 
 package io.teris.kite.rpc.vertx;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.teris.kite.Context;
+import io.vertx.core.http.HttpHeaders;
+
+
 abstract class RoutingBase {
 
+	private static final Set<String> TRANSPORT_HEADERS = lowerCase(HttpHeaders.CONTENT_LENGTH,
+		HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONNECTION, "Keep-Alive", "Proxy-Connection", "TE",
+		"Trailer", "Upgrade");
+
+	private static final Set<String> MANDATORY_HEADERS = lowerCase(Context.CONTENT_TYPE_KEY, Context.X_REQUEST_ID_KEY);
+
 	private final String uriPrefix;
 
 	RoutingBase(String uriPrefix) {
@@ -32,4 +47,24 @@ abstract class RoutingBase {
 		String res = uri.replaceAll("/", ".");
 		return res.startsWith(".") ? res.substring(1) : res;
 	}
+
+	/**
+	 * Framing and hop-by-hop headers describe a single HTTP message or connection and are
+	 * set by the transport itself, thus they are neither copied into the context nor out
+	 * of it. The content type and the request Id are always copied, other headers as
+	 * decided by the policy.
+	 */
+	static boolean isCopied(HeaderPolicy policy, String name) {
+		String key = HeaderPolicyImpl.lowerCase(name);
+		if (TRANSPORT_HEADERS.contains(key)) {
+			return false;
+		}
+		return MANDATORY_HEADERS.contains(key) || policy.accepts(name);
+	}
+
+	private static Set<String> lowerCase(CharSequence... names) {
+		return Collections.unmodifiableSet(Arrays.stream(names)
+			.map((name) -> HeaderPolicyImpl.lowerCase(name.toString()))
+			.collect(Collectors.toSet()));
+	}
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.teris.kite.rpc.vertx.BufferUtil.BodyCollector;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+
+
+/**
+ * The default body handler of the exported routes. Unlike the generic vertx-web
+ * BodyHandler it does not parse forms or uploads: request chunks are copied straight
+ * into an array growing up to the declared content length (aggregated only for chunked
+ * requests) and the body limit is enforced before reading a request of a declared
+ * length and as the chunks arrive otherwise, responding with HTTP413 as soon as it is
+ * exceeded. Without a limit the memory held by a request is bounded only by the data
+ * actually received, not by the length it declares.
+ */
+class StreamingBodyHandler implements Handler<RoutingContext> {
+
+	private static final Logger log = LoggerFactory.getLogger(StreamingBodyHandler.class);
+
+	static final int PAYLOAD_TOO_LARGE = 413;
+
+	static final int BAD_REQUEST = 400;
+
+	private final long bodyLimit;
+
+	/**
+	 * @param bodyLimit the maximum body size in bytes, negative for unlimited.
+	 */
+	StreamingBodyHandler(long bodyLimit) {
+		this.bodyLimit = bodyLimit;
+	}
+
+	@Override
+	public void handle(RoutingContext httpContext) {
+		HttpServerRequest request = httpContext.request();
+		long contentLength = BodyCollector.contentLength(request.getHeader(HttpHeaders.CONTENT_LENGTH));
+		if (exceedsLimit(contentLength)) {
+			log.info("status=SERVER-REJECTED, target={}, length={}, limit={}", request.uri(), contentLength, bodyLimit);
+			httpContext.fail(PAYLOAD_TOO_LARGE);
+			return;
+		}
+
+		BodyCollector body = new BodyCollector(contentLength);
+		AtomicBoolean failed = new AtomicBoolean(false);
+		request.handler(chunk -> {
+			if (failed.get()) {
+				return;
+			}
+			body.handle(chunk);
+			if (exceedsLimit(body.length())) {
+				failed.set(true);
+				log.info("status=SERVER-REJECTED, target={}, length>={}, limit={}", request.uri(), body.length(), bodyLimit);
+				httpContext.fail(PAYLOAD_TOO_LARGE);
+			}
+		});
+		request.endHandler($ -> {
+			if (failed.get()) {
+				return;
+			}
+			try {
+				httpContext.setBody(BufferUtil.wrap(body.bytes()));
+			}
+			catch (IllegalStateException ex) {
+				log.info("status=SERVER-REJECTED, target={}, message={}", request.uri(), ex.getMessage());
+				httpContext.fail(BAD_REQUEST);
+				return;
+			}
+			httpContext.next();
+		});
+	}
+
+	private boolean exceedsLimit(long length) {
+		return bodyLimit >= 0 && length > bodyLimit;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.vertx.core.buffer.Buffer;
+
+
+/**
+ * Encodes the frames defined by RpcFrames into the binary messages multiplexed over a
+ * WebSocket connection, one frame per message.
+ */
+final class WebSocketFrames {
+
+	private WebSocketFrames() {}
+
+	@Nonnull
+	static Buffer request(int id, @Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+		return encode(RpcFrames.request(id, route, context, data));
+	}
+
+	@Nonnull
+	static Buffer response(int id, @Nonnull Context context, @Nullable byte[] data) {
+		return encode(RpcFrames.response(id, context, data));
+	}
+
+	@Nonnull
+	static Buffer error(int id, int statusCode, @Nonnull String errorMessage) {
+		return encode(RpcFrames.error(id, statusCode, errorMessage));
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the message is malformed.
+	 */
+	@Nonnull
+	static Frame decode(@Nonnull Buffer buffer) throws IllegalArgumentException {
+		return RpcFrames.decode(buffer.getByteBuf().nioBuffer());
+	}
+
+	private static Buffer encode(Frame frame) {
+		ByteBuffer target = ByteBuffer.allocate(frame.encodedLength());
+		frame.encode(target);
+		return BufferUtil.wrap(target.array());
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import javax.annotation.Nonnull;
+
+import io.teris.kite.rpc.ServiceExporter;
+import io.vertx.core.Handler;
+import io.vertx.core.http.ServerWebSocket;
+
+
+/**
+ * Relays requests received over long-lived WebSocket connections to the matching
+ * service exporters. Requests and responses are multiplexed over each connection as
+ * binary messages correlated by Id, so a client can pipeline any number of calls
+ * without per-request HTTP overhead. The exporter is registered as the WebSocket
+ * handler of an HTTP server and thus shares the port with the HTTP exporter:
+ *
+ * <pre>
+ * vertx.createHttpServer(options)
+ *     .requestHandler(httpExporter.router()::accept)
+ *     .websocketHandler(WebSocketServiceExporter.path("/kite").export(serviceExporter))
+ *     .listen();
+ * </pre>
+ *
+ * Message size is limited by the maxWebsocketMessageSize of the server and client options.
+ */
+public interface WebSocketServiceExporter extends Handler<ServerWebSocket> {
+
+	/**
+	 * Registers every service method bound to the exporter for dispatching.
+	 */
+	@Nonnull
+	WebSocketServiceExporter export(@Nonnull ServiceExporter serviceExporter);
+
+	/**
+	 * Creates an exporter accepting WebSocket connections on the given path and
+	 * rejecting all others.
+	 */
+	@Nonnull
+	static WebSocketServiceExporter path(@Nonnull String path) {
+		return new WebSocketServiceExporterImpl(path.startsWith("/") ? path : "/" + path);
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.teris.kite.rpc.ServerErrors;
+import io.teris.kite.rpc.ServiceExporter;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.ServerWebSocket;
+
+
+class WebSocketServiceExporterImpl implements WebSocketServiceExporter {
+
+	private static final Logger log = LoggerFactory.getLogger(WebSocketServiceExporter.class);
+
+	private final String path;
+
+	private final Map<String, ServiceExporter> exporters = new ConcurrentHashMap<>();
+
+	WebSocketServiceExporterImpl(String path) {
+		this.path = path;
+	}
+
+	@Nonnull
+	@Override
+	public WebSocketServiceExporter export(@Nonnull ServiceExporter serviceExporter) {
+		for (String route : serviceExporter.routes()) {
+			exporters.put(route, serviceExporter);
+		}
+		return this;
+	}
+
+	@Override
+	public void handle(ServerWebSocket webSocket) {
+		if (!path.equals(webSocket.path())) {
+			webSocket.reject();
+			return;
+		}
+		io.vertx.core.Context vertxContext = Vertx.currentContext();
+		AtomicBoolean closed = new AtomicBoolean(false);
+		webSocket.closeHandler($ -> closed.set(true));
+		webSocket.exceptionHandler(t -> log.error(String.format("status=SERVER-ERROR, target=%s", path), t));
+		webSocket.binaryMessageHandler(buffer -> {
+			Frame request;
+			try {
+				request = WebSocketFrames.decode(buffer);
+				if (request.kind != RpcFrames.REQUEST) {
+					throw new IllegalArgumentException(String.format("Unexpected message kind %d", Byte.valueOf(request.kind)));
+				}
+			}
+			catch (IllegalArgumentException ex) {
+				log.error(String.format("status=SERVER-ERROR, target=%s", path), ex);
+				webSocket.close();
+				return;
+			}
+			String corrId = request.context.get(Context.X_REQUEST_ID_KEY);
+			ServiceExporter serviceExporter = exporters.get(request.route);
+			if (serviceExporter == null) {
+				log.info("status=SERVER-ERROR, corrId={}, target={}, message=Not Found", corrId, request.route);
+				write(webSocket, closed, WebSocketFrames.error(request.id, ServerErrors.NOT_FOUND, "Not Found"));
+				return;
+			}
+			log.trace("status=SERVER-EXECUTING, corrId={}, target={}", corrId, request.route);
+			serviceExporter
+				.call(request.route, request.context, request.data)
+				.whenComplete((entry, t) -> vertxContext.runOnContext($ -> {
+					// it is expected that all exceptions are serialized as normal response (unless exactly that failed)
+					if (t != null || entry == null) {
+						int statusCode = ServerErrors.statusCode(t);
+						String message = ServerErrors.message(t);
+						log.info("status=SERVER-ERROR, corrId={}, target={}, message={}", corrId, request.route, message);
+						write(webSocket, closed, WebSocketFrames.error(request.id, statusCode, message));
+						return;
+					}
+					Context outgoingContext = entry.getKey() != null ? entry.getKey() : request.context;
+					write(webSocket, closed, WebSocketFrames.response(request.id, outgoingContext, entry.getValue()));
+					log.debug("status=SERVER-COMPLETED, corrId={}, target={}", corrId, request.route);
+				}));
+		});
+	}
+
+	/**
+	 * Writes the message and stops reading further requests from the connection while its
+	 * write queue is full, so that a client pipelining faster than it reads responses
+	 * does not make responses accumulate on the server.
+	 */
+	private void write(ServerWebSocket webSocket, AtomicBoolean closed, Buffer message) {
+		if (closed.get()) {
+			return;
+		}
+		webSocket.writeBinaryMessage(message);
+		if (webSocket.writeQueueFull()) {
+			webSocket.pause();
+			webSocket.drainHandler($ -> webSocket.resume());
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+
+import io.vertx.core.http.HttpClient;
+
+
+/**
+ * Performs remote calls over a single long-lived WebSocket connection established to a
+ * {@link WebSocketServiceExporter} on first use (and reestablished on the next call
+ * once lost). Calls are pipelined: any number of them can be in flight at the same
+ * time, their responses are matched by correlation Id in any order.
+ */
+public interface WebSocketServiceInvoker extends io.teris.kite.rpc.ServiceInvoker {
+
+	@Nonnull
+	CompletableFuture<Void> close();
+
+	@Nonnull
+	static Builder httpClient(@Nonnull HttpClient httpClient) {
+		return new WebSocketServiceInvokerImpl.BuilderImpl(httpClient);
+	}
+
+	interface Builder {
+
+		/**
+		 * The path the WebSocket exporter is registered at (default: /).
+		 */
+		@Nonnull
+		Builder path(@Nonnull String path);
+
+		@Nonnull
+		WebSocketServiceInvoker build();
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.teris.kite.rpc.ServerErrors;
+import io.teris.kite.rpc.TechnicalException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.WebSocket;
+
+
+class WebSocketServiceInvokerImpl implements WebSocketServiceInvoker {
+
+	private static final Logger log = LoggerFactory.getLogger(WebSocketServiceInvoker.class);
+
+	private final HttpClient httpClient;
+
+	private final String path;
+
+	private CompletableFuture<Connection> connection = null;
+
+	private boolean closed = false;
+
+	WebSocketServiceInvokerImpl(HttpClient httpClient, String path) {
+		this.httpClient = httpClient;
+		this.path = path;
+	}
+
+	static class BuilderImpl implements WebSocketServiceInvoker.Builder {
+
+		private final HttpClient httpClient;
+
+		private String path = "/";
+
+		BuilderImpl(HttpClient httpClient) {
+			this.httpClient = httpClient;
+		}
+
+		@Nonnull
+		@Override
+		public Builder path(@Nonnull String path) {
+			this.path = path.startsWith("/") ? path : "/" + path;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public WebSocketServiceInvoker build() {
+			return new WebSocketServiceInvokerImpl(httpClient, path);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] outgoing) {
+		return connect().thenCompose((connection) -> connection.call(route, context, outgoing));
+	}
+
+	private synchronized CompletableFuture<Connection> connect() {
+		if (closed) {
+			CompletableFuture<Connection> res = new CompletableFuture<>();
+			res.completeExceptionally(new TechnicalException("Invoker closed"));
+			return res;
+		}
+		if (connection != null) {
+			return connection;
+		}
+		CompletableFuture<Connection> promise = new CompletableFuture<>();
+		connection = promise;
+		httpClient.websocket(path, webSocket -> {
+			Connection res = new Connection(webSocket);
+			webSocket.closeHandler($ -> {
+				release(promise);
+				res.failAll(new TechnicalException("Connection closed"));
+			});
+			promise.complete(res);
+		}, t -> {
+			release(promise);
+			promise.completeExceptionally(new TechnicalException("connection exception", t));
+		});
+		return promise;
+	}
+
+	/**
+	 * Forgets the lost connection, so that the next call reconnects.
+	 */
+	private synchronized void release(CompletableFuture<Connection> lost) {
+		if (connection == lost) {
+			connection = null;
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Void> close() {
+		CompletableFuture<Connection> current;
+		synchronized (this) {
+			closed = true;
+			current = connection;
+		}
+		if (current == null) {
+			return CompletableFuture.runAsync(httpClient::close);
+		}
+		return current
+			.handle((connection, t) -> {
+				if (connection != null) {
+					connection.webSocket.close();
+				}
+				return null;
+			})
+			.thenRunAsync(httpClient::close);
+	}
+
+	/**
+	 * A single web socket multiplexing calls by correlation Id.
+	 */
+	private class Connection {
+
+		private final WebSocket webSocket;
+
+		private final AtomicInteger ids = new AtomicInteger(0);
+
+		private final Map<Integer, Entry<Context, CompletableFuture<Entry<Context, byte[]>>>> requestStore = new ConcurrentHashMap<>();
+
+		private volatile Throwable failure = null;
+
+		Connection(WebSocket webSocket) {
+			this.webSocket = webSocket;
+			webSocket.binaryMessageHandler(this::onMessage);
+			webSocket.exceptionHandler(t -> log.error(String.format("status=CLIENT-ERROR, target=%s", path), t));
+		}
+
+		CompletableFuture<Entry<Context, byte[]>> call(String route, Context context, byte[] outgoing) {
+			String corrId = context.get(Context.X_REQUEST_ID_KEY);
+			Integer id = Integer.valueOf(ids.incrementAndGet());
+			CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+			requestStore.put(id, new SimpleEntry<>(context, promise));
+			if (failure != null && requestStore.remove(id) != null) {
+				// lost concurrently with the selection of this connection
+				promise.completeExceptionally(failure);
+				return promise;
+			}
+			try {
+				log.trace("status=CLIENT-SENDING, corrId={}, target={}", corrId, route);
+				webSocket.writeBinaryMessage(WebSocketFrames.request(id.intValue(), route, context, outgoing));
+			}
+			catch (RuntimeException ex) {
+				requestStore.remove(id);
+				promise.completeExceptionally(ex instanceof TechnicalException ? ex : new TechnicalException("request exception", ex));
+				log.error(String.format("status=CLIENT-ERROR, corrId=%s, target=%s", corrId, route), ex);
+			}
+			return promise;
+		}
+
+		private void onMessage(Buffer buffer) {
+			Frame response;
+			try {
+				response = WebSocketFrames.decode(buffer);
+			}
+			catch (IllegalArgumentException ex) {
+				log.error(String.format("status=CLIENT-ERROR, target=%s", path), ex);
+				return;
+			}
+			Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = requestStore.remove(Integer.valueOf(response.id));
+			if (entry == null) {
+				log.error("status=CLIENT-ERROR, target={}, message=No request information found for {}", path, Integer.valueOf(response.id));
+				return;
+			}
+			CompletableFuture<Entry<Context, byte[]>> promise = entry.getValue();
+			if (response.kind == RpcFrames.RESPONSE) {
+				Context incomingContext = new Context(entry.getKey());
+				incomingContext.putAll(response.context);
+				promise.complete(new SimpleEntry<>(incomingContext, response.data));
+				log.debug("status=CLIENT-COMPLETED, corrId={}, target={}", entry.getKey().get(Context.X_REQUEST_ID_KEY), path);
+			}
+			else {
+				promise.completeExceptionally(ServerErrors.exception(response.statusCode, response.errorMessage));
+			}
+		}
+
+		/**
+		 * Fails the calls in flight over this connection only; calls on a reconnected
+		 * one are not affected.
+		 */
+		void failAll(Throwable t) {
+			failure = t;
+			for (Integer id : new ArrayList<>(requestStore.keySet())) {
+				Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = requestStore.remove(id);
+				if (entry != null) {
+					entry.getValue().completeExceptionally(t);
+				}
+			}
+		}
+	}
+}
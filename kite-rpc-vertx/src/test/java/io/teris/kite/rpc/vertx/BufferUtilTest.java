@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.teris.kite.rpc.vertx.BufferUtil.BodyCollector;
+import io.vertx.core.buffer.Buffer;
+
+
+public class BufferUtilTest {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void wrap_sharesArray_success() {
+		byte[] data = new byte[]{1, 2, 3};
+		Buffer buffer = BufferUtil.wrap(data);
+		data[1] = 5;
+		assertEquals(3, buffer.length());
+		assertEquals(5, buffer.getByte(1));
+	}
+
+	@Test
+	public void bytes_exactHeapBuffer_returnsBackingArray() {
+		byte[] data = new byte[]{1, 2, 3};
+		assertSame(data, BufferUtil.bytes(BufferUtil.wrap(data)));
+	}
+
+	@Test
+	public void bytes_oversizedBuffer_copies() {
+		Buffer buffer = Buffer.buffer(16).appendBytes(new byte[]{1, 2, 3});
+		byte[] res = BufferUtil.bytes(buffer);
+		assertArrayEquals(new byte[]{1, 2, 3}, res);
+		assertNotSame(buffer.getByteBuf().array(), res);
+	}
+
+	@Test
+	public void bodyCollector_knownLength_collectsIntoSingleArray() {
+		BodyCollector underTest = new BodyCollector(5);
+		underTest.handle(Buffer.buffer(new byte[]{1, 2}));
+		underTest.handle(Buffer.buffer(new byte[]{3, 4, 5}));
+		assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, underTest.bytes());
+	}
+
+	@Test
+	public void bodyCollector_hugeDeclaredLength_allocatesAsChunksArrive() {
+		BodyCollector underTest = new BodyCollector(Integer.MAX_VALUE);
+		assertEquals(BodyCollector.MAX_INITIAL_CAPACITY, underTest.capacity());
+		underTest.handle(Buffer.buffer(new byte[BodyCollector.MAX_INITIAL_CAPACITY + 1]));
+		assertEquals(2 * BodyCollector.MAX_INITIAL_CAPACITY, underTest.capacity());
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage("Body of 65537 bytes does not match declared content length of 2147483647 bytes");
+		underTest.bytes();
+	}
+
+	@Test
+	public void bodyCollector_largeBody_grownToDeclaredLength() {
+		int length = 3 * BodyCollector.MAX_INITIAL_CAPACITY + 7;
+		BodyCollector underTest = new BodyCollector(length);
+		byte[] chunk = new byte[1000];
+		for (int received = 0; received < length; received += chunk.length) {
+			chunk[0] = (byte) received;
+			underTest.handle(Buffer.buffer(chunk).slice(0, Math.min(chunk.length, length - received)));
+		}
+		byte[] res = underTest.bytes();
+		assertEquals(length, res.length);
+		assertEquals((byte) 66000, res[66000]);
+	}
+
+	@Test
+	public void bodyCollector_unknownLength_aggregates() {
+		BodyCollector underTest = new BodyCollector(-1);
+		underTest.handle(Buffer.buffer(new byte[]{1, 2}));
+		underTest.handle(Buffer.buffer(new byte[]{3}));
+		assertArrayEquals(new byte[]{1, 2, 3}, underTest.bytes());
+	}
+
+	@Test
+	public void bodyCollector_emptyBody_emptyArray() {
+		assertArrayEquals(new byte[]{}, new BodyCollector(0).bytes());
+		assertArrayEquals(new byte[]{}, new BodyCollector(-1).bytes());
+	}
+
+	@Test
+	public void bodyCollector_excessData_throws() {
+		BodyCollector underTest = new BodyCollector(2);
+		underTest.handle(Buffer.buffer(new byte[]{1, 2, 3}));
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage("Body of 3 bytes does not match declared content length of 2 bytes");
+		underTest.bytes();
+	}
+
+	@Test
+	public void contentLength_invalidOrMissing_unknown() {
+		assertEquals(-1, BodyCollector.contentLength(null));
+		assertEquals(-1, BodyCollector.contentLength("abc"));
+		assertEquals(42, BodyCollector.contentLength(" 42 "));
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+
+
+public class EventBusCodecTest {
+
+	private final EventBusCodec underTest = EventBusCodec.INSTANCE;
+
+	@Test
+	public void transform_local_sharesArray() {
+		byte[] data = new byte[]{1, 2, 3};
+		assertSame(data, underTest.transform(data));
+	}
+
+	@Test
+	public void wire_roundtrip_success() {
+		Buffer buffer = Buffer.buffer().appendByte((byte) 7);
+		underTest.encodeToWire(buffer, new byte[]{1, 2, 3});
+		assertArrayEquals(new byte[]{1, 2, 3}, underTest.decodeFromWire(1, buffer));
+	}
+
+	@Test
+	public void wire_nullData_roundtrip() {
+		Buffer buffer = Buffer.buffer();
+		underTest.encodeToWire(buffer, null);
+		assertNull(underTest.decodeFromWire(0, buffer));
+	}
+
+	@Test
+	public void register_twice_ignored() {
+		Vertx vertx = Vertx.vertx();
+		try {
+			EventBusCodec.register(vertx.eventBus());
+			EventBusCodec.register(vertx.eventBus());
+		}
+		finally {
+			vertx.close();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.teris.kite.Context;
+
+
+public class HeaderPolicyTest {
+
+	@Test
+	public void all_acceptsAnything() {
+		assertTrue(HeaderPolicy.all().accepts("Cookie"));
+		assertTrue(HeaderPolicy.all().accepts("x-whatever"));
+	}
+
+	@Test
+	public void allowlist_matchesNamesAndPrefixesCaseInsensitively() {
+		HeaderPolicy underTest = HeaderPolicy.allowlist()
+			.header("Authorization")
+			.prefix("X-Tenant-")
+			.build();
+		assertTrue(underTest.accepts("authorization"));
+		assertTrue(underTest.accepts("AUTHORIZATION"));
+		assertTrue(underTest.accepts("x-tenant-id"));
+		assertTrue(underTest.accepts("X-TENANT-Region"));
+		assertFalse(underTest.accepts("Cookie"));
+		assertFalse(underTest.accepts("X-Tenant"));
+	}
+
+	@Test
+	public void allowlist_alwaysAcceptsContentTypeAndRequestId() {
+		HeaderPolicy underTest = HeaderPolicy.allowlist().build();
+		assertTrue(underTest.accepts(Context.CONTENT_TYPE_KEY.toLowerCase()));
+		assertTrue(underTest.accepts(Context.X_REQUEST_ID_KEY));
+		assertFalse(underTest.accepts("Host"));
+	}
+
+	@Test
+	public void isCopied_neverCopiesTransportHeaders() {
+		assertFalse(RoutingBase.isCopied(HeaderPolicy.all(), "Content-Length"));
+		assertFalse(RoutingBase.isCopied(HeaderPolicy.all(), "transfer-encoding"));
+		assertFalse(RoutingBase.isCopied(HeaderPolicy.all(), "Connection"));
+		assertTrue(RoutingBase.isCopied(HeaderPolicy.all(), "Cookie"));
+	}
+
+	@Test
+	public void isCopied_customPolicyCannotDropMandatoryHeaders() {
+		HeaderPolicy none = (name) -> false;
+		assertTrue(RoutingBase.isCopied(none, "content-type"));
+		assertTrue(RoutingBase.isCopied(none, "x-request-id"));
+		assertFalse(RoutingBase.isCopied(none, "Cookie"));
+	}
+
+	@Test
+	public void lowerCase_alreadyLowerCase_sameInstance() {
+		String name = "x-request-id";
+		assertSame(name, HeaderPolicyImpl.lowerCase(name));
+	}
+}
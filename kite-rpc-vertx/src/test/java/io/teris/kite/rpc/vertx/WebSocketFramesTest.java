@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.RpcFrames;
+import io.teris.kite.rpc.RpcFrames.Frame;
+import io.vertx.core.buffer.Buffer;
+
+
+public class WebSocketFramesTest {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void request_roundtrip_success() {
+		Context context = new Context();
+		context.put("X-Request-ID", "abc");
+		context.put("x-ünicode", "välue");
+		Frame res = WebSocketFrames.decode(WebSocketFrames.request(42, "some.route", context, new byte[]{1, 2, 3}));
+		assertEquals(RpcFrames.REQUEST, res.kind);
+		assertEquals(42, res.id);
+		assertEquals("some.route", res.route);
+		assertEquals(context, res.context);
+		assertArrayEquals(new byte[]{1, 2, 3}, res.data);
+	}
+
+	@Test
+	public void response_nullData_roundtrip() {
+		Frame res = WebSocketFrames.decode(WebSocketFrames.response(7, new Context(), null));
+		assertEquals(RpcFrames.RESPONSE, res.kind);
+		assertEquals(7, res.id);
+		assertEquals(0, res.context.size());
+		assertNull(res.data);
+	}
+
+	@Test
+	public void error_roundtrip_success() {
+		Frame res = WebSocketFrames.decode(WebSocketFrames.error(3, 403, "denied"));
+		assertEquals(RpcFrames.ERROR, res.kind);
+		assertEquals(403, res.statusCode);
+		assertEquals("denied", res.errorMessage);
+	}
+
+	@Test
+	public void decode_truncated_throws() {
+		Buffer buffer = WebSocketFrames.request(1, "route", new Context(), new byte[]{1, 2, 3});
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Malformed frame");
+		WebSocketFrames.decode(buffer.getBuffer(0, buffer.length() - 1));
+	}
+
+	@Test
+	public void decode_unknownKind_throws() {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Unknown frame kind 9");
+		WebSocketFrames.decode(Buffer.buffer().appendByte((byte) 9).appendInt(1));
+	}
+}
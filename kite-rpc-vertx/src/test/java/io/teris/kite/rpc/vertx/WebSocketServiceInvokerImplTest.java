@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc.vertx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.TechnicalException;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.WebSocket;
+
+
+public class WebSocketServiceInvokerImplTest {
+
+	private final HttpClient httpClient = mock(HttpClient.class);
+
+	private final WebSocketServiceInvokerImpl underTest = new WebSocketServiceInvokerImpl(httpClient, "/ws");
+
+	/**
+	 * A web socket recording its close handler and the messages written to it.
+	 */
+	private static class WebSocketStub implements InvocationHandler {
+
+		final List<Buffer> written = new ArrayList<>();
+
+		Handler<Void> closeHandler = null;
+
+		final WebSocket webSocket = (WebSocket) Proxy.newProxyInstance(WebSocket.class.getClassLoader(), new Class<?>[]{WebSocket.class}, this);
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if ("closeHandler".equals(method.getName())) {
+				closeHandler = (Handler<Void>) args[0];
+			}
+			else if ("writeBinaryMessage".equals(method.getName())) {
+				written.add((Buffer) args[0]);
+			}
+			return method.getReturnType().isInstance(proxy) ? proxy : null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void connect(int attempt, WebSocketStub webSocket) {
+		ArgumentCaptor<Handler<WebSocket>> connected = ArgumentCaptor.forClass(Handler.class);
+		verify(httpClient, times(attempt)).websocket(eq("/ws"), connected.capture(), any(Handler.class));
+		connected.getValue().handle(webSocket.webSocket);
+	}
+
+	@Test
+	public void call_previousConnectionClosedLate_callsOnNewConnectionUnaffected() throws Exception {
+		CompletableFuture<Entry<Context, byte[]>> first = underTest.call("a.b", new Context(), new byte[0]);
+		WebSocketStub lost = new WebSocketStub();
+		connect(1, lost);
+		lost.closeHandler.handle(null);
+		try {
+			first.get();
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(TechnicalException.class, ex.getCause().getClass());
+			assertEquals("Connection closed", ex.getCause().getMessage());
+		}
+
+		CompletableFuture<Entry<Context, byte[]>> second = underTest.call("a.b", new Context(), new byte[0]);
+		WebSocketStub reconnected = new WebSocketStub();
+		connect(2, reconnected);
+		assertEquals(1, reconnected.written.size());
+
+		// a late close notification of the lost connection
+		lost.closeHandler.handle(null);
+		assertFalse(second.isDone());
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+
+/**
+ * A pull-based source of the response data of a streaming service method, see
+ * {@link ServiceExporter#stream}. Chunks are requested one at a time: the next chunk
+ * must not be requested before the previous future completes, which lets the consumer
+ * control the pace of the producer (back-pressure).
+ */
+public interface ChunkSource {
+
+	/**
+	 * @return a future of the next chunk of data or of null once the source is exhausted.
+	 */
+	@Nonnull
+	CompletableFuture<byte[]> next();
+
+	/**
+	 * Aborts the source releasing any resources held by the producer.
+	 */
+	void close();
+
+	/**
+	 * Reads all the remaining chunks into a single array.
+	 */
+	@Nonnull
+	default CompletableFuture<byte[]> readAll() {
+		return ChunkSourceUtil.readAll(this);
+	}
+
+	/**
+	 * @return a source delivering the given data (if not null) as a single chunk.
+	 */
+	@Nonnull
+	static ChunkSource of(@Nullable byte[] data) {
+		return new ChunkSourceUtil.SingleChunkSource(data);
+	}
+}
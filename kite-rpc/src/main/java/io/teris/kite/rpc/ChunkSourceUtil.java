@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+
+
+final class ChunkSourceUtil {
+
+	private ChunkSourceUtil() {}
+
+	@Nonnull
+	static CompletableFuture<byte[]> readAll(@Nonnull ChunkSource source) {
+		CompletableFuture<byte[]> result = new CompletableFuture<>();
+		readAll(source, new ByteArrayOutputStream(), result);
+		return result;
+	}
+
+	/**
+	 * Loops over synchronously available chunks rather than recursing into completion
+	 * handlers, so the stack does not grow with the number of chunks.
+	 */
+	private static void readAll(ChunkSource source, ByteArrayOutputStream out, CompletableFuture<byte[]> result) {
+		while (true) {
+			CompletableFuture<byte[]> promise = source.next();
+			if (promise.isDone() && !promise.isCompletedExceptionally()) {
+				byte[] chunk = promise.join();
+				if (chunk == null) {
+					result.complete(out.toByteArray());
+					return;
+				}
+				out.write(chunk, 0, chunk.length);
+				continue;
+			}
+			promise.whenComplete((chunk, t) -> {
+				if (t != null) {
+					result.completeExceptionally(t);
+				}
+				else if (chunk == null) {
+					result.complete(out.toByteArray());
+				}
+				else {
+					out.write(chunk, 0, chunk.length);
+					readAll(source, out, result);
+				}
+			});
+			return;
+		}
+	}
+
+	static class SingleChunkSource implements ChunkSource {
+
+		private byte[] data;
+
+		SingleChunkSource(byte[] data) {
+			this.data = data;
+		}
+
+		@Nonnull
+		@Override
+		public synchronized CompletableFuture<byte[]> next() {
+			byte[] res = data;
+			data = null;
+			return CompletableFuture.completedFuture(res);
+		}
+
+		@Override
+		public synchronized void close() {
+			data = null;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.teris.kite.Serializer;
+
+
+/**
+ * Defines how arguments and results are handed over between a service proxy and a
+ * service implementation running in the same process (see ServiceFactory.exporter).
+ */
+@FunctionalInterface
+public interface CopyPolicy {
+
+	/**
+	 * Provides the instance to hand over in place of the value of the given type.
+	 */
+	@Nonnull
+	CompletableFuture<Object> copy(@Nullable Object value, @Nonnull Type type);
+
+	/**
+	 * Hands over instances by reference: neither the caller nor the service may modify
+	 * them after the call.
+	 */
+	@Nonnull
+	static CopyPolicy byReference() {
+		return (value, type) -> CompletableFuture.completedFuture(value);
+	}
+
+	/**
+	 * Hands over deep copies produced by serializing and deserializing every value, which
+	 * isolates the caller from the service as a remote call would, without the transport.
+	 */
+	@Nonnull
+	static CopyPolicy serializer(@Nonnull Serializer serializer) {
+		return (value, type) -> {
+			if (value == null) {
+				return CompletableFuture.completedFuture(null);
+			}
+			return serializer.serialize((Serializable) value)
+				.thenCompose((data) -> serializer.deserializer().<Serializable>deserialize(data, type))
+				.thenApply((copy) -> copy);
+		};
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nonnull;
+
+
+/**
+ * Schedules large numbers of mostly cancelled timeouts at constant cost per schedule
+ * and cancel: timeouts are hashed into the buckets of a wheel by their deadline, which
+ * a single thread advances tick by tick expiring the timeouts of the current bucket
+ * that are due in this round. Timeouts fire within one tick after their deadline; tasks
+ * run on the timer thread and must not block.
+ */
+final class HashedWheelTimer {
+
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	private final long tickNanos;
+
+	private final Bucket[] wheel;
+
+	private final int mask;
+
+	private final long startTime;
+
+	private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+	private final Thread worker;
+
+	private volatile boolean running = true;
+
+	private long tick = 0;
+
+	private static final class SharedHolder {
+
+		static final HashedWheelTimer INSTANCE = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512, "kite-timer");
+	}
+
+	/**
+	 * @return the timer shared by all users in the process, ticking every 10ms.
+	 */
+	@Nonnull
+	static HashedWheelTimer shared() {
+		return SharedHolder.INSTANCE;
+	}
+
+	HashedWheelTimer(long tickDuration, @Nonnull TimeUnit unit, int wheelSize, @Nonnull String threadName) {
+		if (tickDuration <= 0 || wheelSize <= 0) {
+			throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+		}
+		this.tickNanos = unit.toNanos(tickDuration);
+		int size = Integer.highestOneBit(wheelSize - 1) << 1;
+		this.wheel = new Bucket[Math.max(size, 1)];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheel.length - 1;
+		this.startTime = System.nanoTime();
+		this.worker = new Thread(this::run, threadName);
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	@Nonnull
+	Timeout schedule(@Nonnull Runnable task, long delay, @Nonnull TimeUnit unit) {
+		if (!running) {
+			throw new IllegalStateException("Timer stopped");
+		}
+		Timeout res = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos(delay));
+		scheduled.add(res);
+		return res;
+	}
+
+	void stop() {
+		running = false;
+		LockSupport.unpark(worker);
+	}
+
+	private void run() {
+		while (running) {
+			long deadline = tickNanos * (tick + 1);
+			long sleepNanos;
+			while (running && (sleepNanos = startTime + deadline - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(this, sleepNanos);
+			}
+			unlinkCancelled();
+			transferScheduled();
+			expire(wheel[(int) (tick & mask)], deadline);
+			tick++;
+		}
+	}
+
+	private void unlinkCancelled() {
+		Timeout timeout;
+		while ((timeout = cancelled.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	private void transferScheduled() {
+		for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+			Timeout timeout = scheduled.poll();
+			if (timeout == null) {
+				return;
+			}
+			if (timeout.state != Timeout.PENDING) {
+				continue;
+			}
+			long dueTick = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (dueTick - tick) / wheel.length;
+			// overdue timeouts expire with the current tick
+			wheel[(int) (Math.max(dueTick, tick) & mask)].add(timeout);
+		}
+	}
+
+	private void expire(Bucket bucket, long deadline) {
+		Timeout timeout = bucket.head;
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+				bucket.remove(timeout);
+				timeout.expire();
+			}
+			else if (timeout.state == Timeout.CANCELLED) {
+				bucket.remove(timeout);
+			}
+			else {
+				timeout.remainingRounds--;
+			}
+			timeout = next;
+		}
+	}
+
+	static final class Timeout {
+
+		private static final int PENDING = 0;
+
+		private static final int CANCELLED = 1;
+
+		private static final int EXPIRED = 2;
+
+		private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+		private final HashedWheelTimer timer;
+
+		private final Runnable task;
+
+		private final long deadline;
+
+		private volatile int state = PENDING;
+
+		// owned by the timer thread
+		private long remainingRounds;
+
+		private Timeout prev;
+
+		private Timeout next;
+
+		private Bucket bucket;
+
+		private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+			this.timer = timer;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * @return true if the timeout was pending and will not fire.
+		 */
+		boolean cancel() {
+			if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+				return false;
+			}
+			timer.cancelled.add(this);
+			return true;
+		}
+
+		private void expire() {
+			if (!STATE.compareAndSet(this, PENDING, EXPIRED)) {
+				return;
+			}
+			try {
+				task.run();
+			}
+			catch (RuntimeException ex) {
+				// reported, but must not stop the timer thread
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+			}
+		}
+	}
+
+	private static final class Bucket {
+
+		private Timeout head;
+
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			}
+			else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = timeout.next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+}
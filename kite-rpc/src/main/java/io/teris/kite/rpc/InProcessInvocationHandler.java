@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import io.teris.kite.Context;
+
+
+/**
+ * This handler binds service method calls directly to a service exporter in the same
+ * process: the call passes the exporter preprocessors and executors as a remote call
+ * would, but arguments and results are handed over according to the copy policy instead
+ * of being serialized and transported.
+ */
+final class InProcessInvocationHandler implements InvocationHandler {
+
+	private final ServiceExporterImpl serviceExporter;
+
+	private final CopyPolicy copyPolicy;
+
+	private final Supplier<String> uidGenerator;
+
+	InProcessInvocationHandler(ServiceExporterImpl serviceExporter, CopyPolicy copyPolicy, Supplier<String> uidGenerator) {
+		this.serviceExporter = Objects.requireNonNull(serviceExporter, "ServiceExporter is required");
+		this.copyPolicy = Objects.requireNonNull(copyPolicy, "Copy policy is required");
+		this.uidGenerator = Objects.requireNonNull(uidGenerator, "Unique Id generator is required");
+	}
+
+	@Override
+	public Object invoke(Object $, Method method, Object[] args) throws Throwable {
+		CompletableFuture<Object> promise = callLocal(method, args);
+		if (Future.class.isAssignableFrom(method.getReturnType())) {
+			return promise;
+		}
+		try {
+			return promise.get();
+		}
+		catch (ExecutionException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	CompletableFuture<Object> callLocal(Method method, Object[] args) {
+		CompletableFuture<Object> result = new CompletableFuture<>();
+		Type type;
+		String route;
+		Context context;
+		try {
+			type = ServiceProxyUtil.returnType(method);
+			route = ServiceProxyUtil.route(method);
+			context = ServiceProxyUtil.arguments(method, args).getKey();
+		}
+		catch (RuntimeException ex) {
+			result.completeExceptionally(ex);
+			return result;
+		}
+
+		Context requestContext = new Context(context);
+		requestContext.put(Context.X_REQUEST_ID_KEY, uidGenerator.get());
+		AtomicReference<Context> contextHolder = new AtomicReference<>(requestContext);
+
+		copyArguments(method, args)
+			.thenCompose((copies) -> serviceExporter.invokeInProcess(route, requestContext, copies, contextHolder))
+			.thenCompose((obj) -> {
+				if (ServiceProxyUtil.isStreaming(method)) {
+					Iterator<?> iterator = obj != null ? (Iterator<?>) obj : Collections.emptyIterator();
+					return CompletableFuture.completedFuture(new CopyingIterator(iterator, copyPolicy, type));
+				}
+				return copyPolicy.copy(obj, type);
+			})
+			.whenComplete((obj, t) -> {
+				// the service receives the request context, or the one provided by preprocessors
+				context.putAll(contextHolder.get());
+				if (t instanceof CompletionException && t.getCause() != null) {
+					t = t.getCause();
+				}
+				if (t != null) {
+					result.completeExceptionally(exception(t));
+				}
+				else {
+					result.complete(obj);
+				}
+			});
+		return result;
+	}
+
+	/**
+	 * Reports failures as a remote call would: the exceptions of the RPC layer as is, other
+	 * server side failures as technical exceptions.
+	 */
+	private static RuntimeException exception(Throwable t) {
+		if (t instanceof InvocationException || t instanceof BusinessException || t instanceof AuthenticationException
+			|| t instanceof NotFoundException || t instanceof TechnicalException) {
+			return (RuntimeException) t;
+		}
+		return new TechnicalException(t.getMessage() != null ? t.getMessage() : t.toString(), t);
+	}
+
+	private CompletableFuture<Object[]> copyArguments(Method method, Object[] args) {
+		Type[] types = method.getGenericParameterTypes();
+		Object[] res = new Object[args.length];
+		res[0] = args[0];
+		CompletableFuture<?>[] promises = new CompletableFuture[args.length - 1];
+		for (int i = 1; i < args.length; i++) {
+			int index = i;
+			promises[i - 1] = copyPolicy.copy(args[i], types[i]).thenAccept((copy) -> res[index] = copy);
+		}
+		return CompletableFuture.allOf(promises).thenApply((vd) -> res);
+	}
+
+	/**
+	 * Applies the copy policy to every element of a streamed result as it is read.
+	 */
+	static class CopyingIterator implements Iterator<Object>, AutoCloseable {
+
+		private final Iterator<?> iterator;
+
+		private final CopyPolicy copyPolicy;
+
+		private final Type type;
+
+		CopyingIterator(Iterator<?> iterator, CopyPolicy copyPolicy, Type type) {
+			this.iterator = iterator;
+			this.copyPolicy = copyPolicy;
+			this.type = type;
+		}
+
+		@Override
+		public boolean hasNext() {
+			try {
+				return iterator.hasNext();
+			}
+			catch (RuntimeException ex) {
+				throw ex instanceof BusinessException ? ex : new BusinessException(ex);
+			}
+		}
+
+		@Override
+		public Object next() {
+			Object obj;
+			try {
+				obj = iterator.next();
+			}
+			catch (RuntimeException ex) {
+				throw ex instanceof BusinessException ? ex : new BusinessException(ex);
+			}
+			try {
+				return copyPolicy.copy(obj, type).get();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InvocationException("Interrupted while reading the stream", ex);
+			}
+			catch (ExecutionException ex) {
+				throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : new InvocationException("Failed to copy the stream element", ex.getCause());
+			}
+		}
+
+		@Override
+		public void close() {
+			if (iterator instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) iterator).close();
+				}
+				catch (RuntimeException ex) {
+					throw ex;
+				}
+				catch (Exception ex) {
+					throw new InvocationException("Failed to close the stream", ex);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.Nonnull;
+
+
+/**
+ * Hands serialized requests straight to service exporters in the same process and their
+ * serialized responses back, exercising the complete byte-level path of a remote call
+ * without a broker or sockets. Latency, jitter and failures can be injected to simulate
+ * a network; with a seed the injected behaviour is reproducible.
+ */
+public interface LoopbackServiceInvoker extends ServiceInvoker {
+
+	/**
+	 * Shuts down the scheduler unless it was supplied to the builder.
+	 */
+	@Nonnull
+	CompletableFuture<Void> close();
+
+	@Nonnull
+	static Builder builder() {
+		return new LoopbackServiceInvokerImpl.BuilderImpl();
+	}
+
+	interface Builder {
+
+		/**
+		 * Binds all routes of the exporter.
+		 */
+		@Nonnull
+		Builder export(@Nonnull ServiceExporter serviceExporter);
+
+		/**
+		 * Delays every call by the given latency (default: 0, calls are dispatched on the
+		 * calling thread).
+		 */
+		@Nonnull
+		Builder latencyMillis(long latencyMillis);
+
+		/**
+		 * Adds a uniformly distributed random delay of up to the given value to the latency.
+		 */
+		@Nonnull
+		Builder jitterMillis(long jitterMillis);
+
+		/**
+		 * Fails the given fraction of calls with a TechnicalException before they reach
+		 * the exporter (default: 0).
+		 */
+		@Nonnull
+		Builder failureRate(double failureRate);
+
+		/**
+		 * Seeds the random source of jitter and failures.
+		 */
+		@Nonnull
+		Builder seed(long seed);
+
+		/**
+		 * Binds the scheduler for delayed calls, by default a single daemon thread is
+		 * created when latency or jitter is configured.
+		 */
+		@Nonnull
+		Builder scheduler(@Nonnull ScheduledExecutorService scheduler);
+
+		@Nonnull
+		LoopbackServiceInvoker build();
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.teris.kite.Context;
+
+
+class LoopbackServiceInvokerImpl implements LoopbackServiceInvoker {
+
+	private final Map<String, ServiceExporter> exporters = new HashMap<>();
+
+	private final long latencyNanos;
+
+	private final long jitterNanos;
+
+	private final double failureRate;
+
+	private final Random random;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final boolean ownScheduler;
+
+	LoopbackServiceInvokerImpl(Map<String, ServiceExporter> exporters, long latencyMillis, long jitterMillis, double failureRate, Random random, ScheduledExecutorService scheduler) {
+		if (latencyMillis < 0 || jitterMillis < 0) {
+			throw new IllegalArgumentException("Latency and jitter must not be negative");
+		}
+		if (failureRate < 0.0 || failureRate > 1.0) {
+			throw new IllegalArgumentException("Failure rate must be between 0 and 1");
+		}
+		this.exporters.putAll(exporters);
+		this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+		this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+		this.failureRate = failureRate;
+		this.random = random;
+		this.ownScheduler = scheduler == null && (latencyMillis > 0 || jitterMillis > 0);
+		this.scheduler = ownScheduler ? Executors.newSingleThreadScheduledExecutor((r) -> {
+			Thread thread = new Thread(r, "kite-loopback");
+			thread.setDaemon(true);
+			return thread;
+		}) : scheduler;
+	}
+
+	static class BuilderImpl implements LoopbackServiceInvoker.Builder {
+
+		private final Map<String, ServiceExporter> exporters = new HashMap<>();
+
+		private long latencyMillis = 0;
+
+		private long jitterMillis = 0;
+
+		private double failureRate = 0.0;
+
+		private Random random = new Random();
+
+		private ScheduledExecutorService scheduler = null;
+
+		@Nonnull
+		@Override
+		public Builder export(@Nonnull ServiceExporter serviceExporter) {
+			for (String route : serviceExporter.routes()) {
+				exporters.put(route, serviceExporter);
+			}
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder latencyMillis(long latencyMillis) {
+			this.latencyMillis = latencyMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder jitterMillis(long jitterMillis) {
+			this.jitterMillis = jitterMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder failureRate(double failureRate) {
+			this.failureRate = failureRate;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder seed(long seed) {
+			this.random = new Random(seed);
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder scheduler(@Nonnull ScheduledExecutorService scheduler) {
+			this.scheduler = scheduler;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public LoopbackServiceInvoker build() {
+			return new LoopbackServiceInvokerImpl(exporters, latencyMillis, jitterMillis, failureRate, random, scheduler);
+		}
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+		return dispatch(route, context, (exporter, serverContext) -> exporter.call(route, serverContext, data));
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Entry<Context, ChunkSource>> stream(@Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+		return dispatch(route, context, (exporter, serverContext) -> exporter.stream(route, serverContext, data));
+	}
+
+	private <T> CompletableFuture<Entry<Context, T>> dispatch(String route, Context context, Dispatcher<T> dispatcher) {
+		CompletableFuture<Entry<Context, T>> promise = new CompletableFuture<>();
+		if (failureRate > 0.0 && random.nextDouble() < failureRate) {
+			promise.completeExceptionally(new TechnicalException("Injected failure"));
+			return promise;
+		}
+		ServiceExporter exporter = exporters.get(route);
+		if (exporter == null) {
+			promise.completeExceptionally(new NotFoundException("Not Found"));
+			return promise;
+		}
+		Supplier<CompletableFuture<Entry<Context, T>>> call = () ->
+			// the server works on its own copy of the context as it would after transport
+			dispatcher.dispatch(exporter, new Context(context));
+		long delayNanos = latencyNanos + (jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0);
+		if (delayNanos == 0) {
+			complete(promise, context, call);
+		}
+		else {
+			scheduler.schedule(() -> complete(promise, context, call), delayNanos, TimeUnit.NANOSECONDS);
+		}
+		return promise;
+	}
+
+	private static <T> void complete(CompletableFuture<Entry<Context, T>> promise, Context context, Supplier<CompletableFuture<Entry<Context, T>>> call) {
+		CompletableFuture<Entry<Context, T>> response;
+		try {
+			response = call.get();
+		}
+		catch (RuntimeException ex) {
+			response = new CompletableFuture<>();
+			response.completeExceptionally(ex);
+		}
+		response.whenComplete((entry, t) -> {
+			if (t != null || entry == null) {
+				promise.completeExceptionally(ServerErrors.exception(ServerErrors.statusCode(t), ServerErrors.message(t)));
+				return;
+			}
+			Context incomingContext = new Context(context);
+			if (entry.getKey() != null) {
+				incomingContext.putAll(entry.getKey());
+			}
+			promise.complete(new SimpleEntry<>(incomingContext, entry.getValue()));
+		});
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Void> close() {
+		if (ownScheduler) {
+			scheduler.shutdownNow();
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@FunctionalInterface
+	private interface Dispatcher<T> {
+
+		CompletableFuture<Entry<Context, T>> dispatch(ServiceExporter exporter, Context serverContext);
+	}
+}
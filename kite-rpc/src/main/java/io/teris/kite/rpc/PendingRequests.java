@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.teris.kite.Context;
+
+
+/**
+ * Keeps track of the requests sent by an invoker that await a response delivered
+ * asynchronously, e.g. over a broker. Every registered request is removed either on
+ * receiving its response or on expiry of its timeout, failing its promise with a
+ * RequestTimeoutException, so that lost responses neither leak memory nor leave the
+ * caller waiting forever. The number of requests in flight can be capped, in which
+ * case registering blocks until capacity is freed or fails after a configured wait.
+ */
+public interface PendingRequests {
+
+	/**
+	 * Registers a request under its id before it is sent.
+	 *
+	 * @throws TechnicalException if the maximum of pending requests is reached and
+	 * no capacity was freed within the configured wait.
+	 * @throws IllegalStateException if a request with the same id is pending.
+	 */
+	void register(@Nonnull String requestId, @Nonnull Context context, @Nonnull CompletableFuture<Entry<Context, byte[]>> promise);
+
+	/**
+	 * Removes a pending request, typically on receiving its response, cancelling its
+	 * timeout and freeing its capacity.
+	 *
+	 * @return the context and the promise of the request, or null if the request is not
+	 * pending (any more).
+	 */
+	@Nullable
+	Entry<Context, CompletableFuture<Entry<Context, byte[]>>> remove(@Nonnull String requestId);
+
+	/**
+	 * Removes all pending requests failing their promises with the given exception.
+	 */
+	void failAll(@Nonnull Throwable ex);
+
+	/**
+	 * Removes the pending requests with matching ids failing their promises with the
+	 * given exception.
+	 */
+	void failAll(@Nonnull Throwable ex, @Nonnull Predicate<String> requestIds);
+
+	/**
+	 * @return the number of pending requests.
+	 */
+	int size();
+
+	/**
+	 * Creates a new builder for the PendingRequests.
+	 */
+	@Nonnull
+	static Builder builder() {
+		return new PendingRequestsImpl.BuilderImpl();
+	}
+
+	interface Builder {
+
+		/**
+		 * Sets the time to wait for a response, 30 seconds by default. Zero disables
+		 * timeouts.
+		 */
+		@Nonnull
+		Builder timeoutMillis(long timeoutMillis);
+
+		/**
+		 * Caps the number of pending requests, unlimited by default.
+		 */
+		@Nonnull
+		Builder maxPending(int maxPending);
+
+		/**
+		 * Sets the time to block registering a request while the maximum of pending
+		 * requests is reached, zero (failing immediately) by default.
+		 */
+		@Nonnull
+		Builder maxPendingWaitMillis(long waitMillis);
+
+		/**
+		 * Sets the executor to fail the promises of expired requests on, the common
+		 * fork-join pool by default. Expiry itself runs on a timer thread shared by all
+		 * pending requests, which must not run the callbacks of callers.
+		 */
+		@Nonnull
+		Builder timeoutExecutor(@Nonnull Executor timeoutExecutor);
+
+		@Nonnull
+		PendingRequests build();
+	}
+}
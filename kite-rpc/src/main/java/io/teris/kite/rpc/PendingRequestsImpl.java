@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.teris.kite.Context;
+import io.teris.kite.rpc.HashedWheelTimer.Timeout;
+
+
+class PendingRequestsImpl implements PendingRequests {
+
+	static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+	private final Map<String, Pending> requests = new ConcurrentHashMap<>();
+
+	private final HashedWheelTimer timer;
+
+	private final Executor timeoutExecutor;
+
+	private final long timeoutMillis;
+
+	private final int maxPending;
+
+	private final long maxPendingWaitMillis;
+
+	private final Semaphore capacity;
+
+	PendingRequestsImpl(HashedWheelTimer timer, Executor timeoutExecutor, long timeoutMillis, int maxPending, long maxPendingWaitMillis) {
+		this.timer = timer;
+		this.timeoutExecutor = timeoutExecutor;
+		this.timeoutMillis = timeoutMillis;
+		this.maxPending = maxPending;
+		this.maxPendingWaitMillis = maxPendingWaitMillis;
+		this.capacity = maxPending < Integer.MAX_VALUE ? new Semaphore(maxPending) : null;
+	}
+
+	static class BuilderImpl implements Builder {
+
+		private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+		private int maxPending = Integer.MAX_VALUE;
+
+		private long maxPendingWaitMillis = 0;
+
+		private Executor timeoutExecutor = ForkJoinPool.commonPool();
+
+		@Nonnull
+		@Override
+		public Builder timeoutMillis(long timeoutMillis) {
+			if (timeoutMillis < 0) {
+				throw new IllegalArgumentException("Timeout must not be negative");
+			}
+			this.timeoutMillis = timeoutMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder maxPending(int maxPending) {
+			if (maxPending <= 0) {
+				throw new IllegalArgumentException("Maximum of pending requests must be positive");
+			}
+			this.maxPending = maxPending;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder maxPendingWaitMillis(long waitMillis) {
+			if (waitMillis < 0) {
+				throw new IllegalArgumentException("Wait must not be negative");
+			}
+			this.maxPendingWaitMillis = waitMillis;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public Builder timeoutExecutor(@Nonnull Executor timeoutExecutor) {
+			this.timeoutExecutor = Objects.requireNonNull(timeoutExecutor, "Timeout executor must not be null");
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public PendingRequests build() {
+			return new PendingRequestsImpl(HashedWheelTimer.shared(), timeoutExecutor, timeoutMillis, maxPending, maxPendingWaitMillis);
+		}
+	}
+
+	@Override
+	public void register(@Nonnull String requestId, @Nonnull Context context, @Nonnull CompletableFuture<Entry<Context, byte[]>> promise) {
+		acquire();
+		Pending pending = new Pending(context, promise);
+		if (requests.putIfAbsent(requestId, pending) != null) {
+			release();
+			throw new IllegalStateException(String.format("Request %s is already pending", requestId));
+		}
+		if (timeoutMillis > 0) {
+			// a response arriving before the timeout is set leaves the timeout to fire void
+			pending.timeout = timer.schedule(() -> expire(requestId, pending), timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Nullable
+	@Override
+	public Entry<Context, CompletableFuture<Entry<Context, byte[]>>> remove(@Nonnull String requestId) {
+		Pending pending = requests.remove(requestId);
+		if (pending == null) {
+			return null;
+		}
+		Timeout timeout = pending.timeout;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+		release();
+		return pending;
+	}
+
+	@Override
+	public void failAll(@Nonnull Throwable ex) {
+		failAll(ex, (requestId) -> true);
+	}
+
+	@Override
+	public void failAll(@Nonnull Throwable ex, @Nonnull Predicate<String> requestIds) {
+		for (String requestId : requests.keySet()) {
+			if (!requestIds.test(requestId)) {
+				continue;
+			}
+			Entry<Context, CompletableFuture<Entry<Context, byte[]>>> entry = remove(requestId);
+			if (entry != null) {
+				entry.getValue().completeExceptionally(ex);
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return requests.size();
+	}
+
+	/**
+	 * Runs on the timer thread shared by all pending requests, so it only removes the
+	 * request and leaves failing the promise, and with it the callbacks of the caller,
+	 * to the timeout executor.
+	 */
+	private void expire(String requestId, Pending pending) {
+		if (!requests.remove(requestId, pending)) {
+			return;
+		}
+		release();
+		RequestTimeoutException ex = new RequestTimeoutException(
+			String.format("No response to request %s within %d ms", requestId, Long.valueOf(timeoutMillis)));
+		try {
+			timeoutExecutor.execute(() -> pending.getValue().completeExceptionally(ex));
+		}
+		catch (RejectedExecutionException rex) {
+			// failed on the timer thread rather than never
+			pending.getValue().completeExceptionally(ex);
+		}
+	}
+
+	private void acquire() {
+		if (capacity == null || capacity.tryAcquire()) {
+			return;
+		}
+		try {
+			if (maxPendingWaitMillis > 0 && capacity.tryAcquire(maxPendingWaitMillis, TimeUnit.MILLISECONDS)) {
+				return;
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		throw new TechnicalException(String.format("Too many pending requests, maximum %d", Integer.valueOf(maxPending)));
+	}
+
+	private void release() {
+		if (capacity != null) {
+			capacity.release();
+		}
+	}
+
+	private static class Pending extends SimpleImmutableEntry<Context, CompletableFuture<Entry<Context, byte[]>>> {
+
+		private static final long serialVersionUID = 1815337496021262531L;
+
+		private transient volatile Timeout timeout;
+
+		Pending(Context context, CompletableFuture<Entry<Context, byte[]>> promise) {
+			super(context, promise);
+		}
+	}
+}
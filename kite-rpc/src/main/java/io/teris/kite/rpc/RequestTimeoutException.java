@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import javax.annotation.Nonnull;
+
+
+/**
+ * Signals that no response was received for a request within its timeout. Being a
+ * TechnicalException it is reported to the caller in the same way as transport errors.
+ */
+public class RequestTimeoutException extends TechnicalException {
+
+	private static final long serialVersionUID = 4170254382537012918L;
+
+	/**
+	 * Constructs a RequestTimeoutException with the provided detail message.
+	 *
+	 * @param message the detailed exception message.
+	 */
+	public RequestTimeoutException(@Nonnull String message) {
+		super(message);
+	}
+}
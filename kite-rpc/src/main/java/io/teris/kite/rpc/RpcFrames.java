@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import io.teris.kite.Context;
+
+
+/**
+ * Defines the frames multiplexed by the connection oriented transports (TCP, WebSocket,
+ * shared memory): a one byte kind and a four byte correlation Id unique per connection,
+ * followed by
+ * - request: route, context, data
+ * - response: context, data
+ * - error: status code, message
+ * where strings are length-prefixed UTF-8, context is an entry count followed by the
+ * key and value strings, and data is length-prefixed with -1 for null. All integers
+ * are big-endian. Frames are encoded straight into the target buffer of the transport,
+ * which is responsible for delimiting them.
+ */
+public final class RpcFrames {
+
+	public static final byte REQUEST = 1;
+
+	public static final byte RESPONSE = 2;
+
+	public static final byte ERROR = 3;
+
+	private RpcFrames() {}
+
+	public static class Frame {
+
+		public final byte kind;
+
+		public final int id;
+
+		public final String route;
+
+		public final Context context;
+
+		public final byte[] data;
+
+		public final int statusCode;
+
+		public final String errorMessage;
+
+		// strings are encoded once for both the length calculation and writing
+		private List<byte[]> strings = null;
+
+		Frame(byte kind, int id, String route, Context context, byte[] data, int statusCode, String errorMessage) {
+			this.kind = kind;
+			this.id = id;
+			this.route = route;
+			this.context = context;
+			this.data = data;
+			this.statusCode = statusCode;
+			this.errorMessage = errorMessage;
+		}
+
+		public int encodedLength() {
+			strings = new ArrayList<>();
+			int res = 5;
+			if (kind == ERROR) {
+				strings.add(errorMessage.getBytes(StandardCharsets.UTF_8));
+				res += 4;
+			}
+			else {
+				if (kind == REQUEST) {
+					strings.add(route.getBytes(StandardCharsets.UTF_8));
+				}
+				res += 4;
+				for (Entry<String, String> entry : context.entrySet()) {
+					strings.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+					strings.add((entry.getValue() != null ? entry.getValue() : "").getBytes(StandardCharsets.UTF_8));
+				}
+				res += 4 + (data != null ? data.length : 0);
+			}
+			for (byte[] string : strings) {
+				res += 4 + string.length;
+			}
+			return res;
+		}
+
+		/**
+		 * Writes the frame at the position of the target, must follow encodedLength.
+		 */
+		public void encode(@Nonnull ByteBuffer target) {
+			target.put(kind).putInt(id);
+			int i = 0;
+			if (kind == ERROR) {
+				target.putInt(statusCode);
+				putString(target, strings.get(i));
+				return;
+			}
+			if (kind == REQUEST) {
+				putString(target, strings.get(i++));
+			}
+			target.putInt(context.size());
+			for (int j = 0; j < context.size(); j++) {
+				putString(target, strings.get(i++));
+				putString(target, strings.get(i++));
+			}
+			if (data == null) {
+				target.putInt(-1);
+			}
+			else {
+				target.putInt(data.length).put(data);
+			}
+		}
+
+		private static void putString(ByteBuffer target, byte[] string) {
+			target.putInt(string.length).put(string);
+		}
+	}
+
+	@Nonnull
+	public static Frame request(int id, @Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+		return new Frame(REQUEST, id, route, context, data, 0, null);
+	}
+
+	@Nonnull
+	public static Frame response(int id, @Nonnull Context context, @Nullable byte[] data) {
+		return new Frame(RESPONSE, id, null, context, data, 0, null);
+	}
+
+	@Nonnull
+	public static Frame error(int id, int statusCode, @Nonnull String errorMessage) {
+		return new Frame(ERROR, id, null, null, null, statusCode, errorMessage);
+	}
+
+	/**
+	 * Decodes a frame from the position to the limit of the source copying all contents.
+	 *
+	 * @throws IllegalArgumentException if the frame is malformed.
+	 */
+	@Nonnull
+	public static Frame decode(@Nonnull ByteBuffer source) throws IllegalArgumentException {
+		try {
+			byte kind = source.get();
+			int id = source.getInt();
+			switch (kind) {
+				case REQUEST: {
+					String route = getString(source);
+					Context context = getContext(source);
+					return new Frame(kind, id, route, context, getData(source), 0, null);
+				}
+				case RESPONSE: {
+					Context context = getContext(source);
+					return new Frame(kind, id, null, context, getData(source), 0, null);
+				}
+				case ERROR: {
+					int statusCode = source.getInt();
+					return new Frame(kind, id, null, null, null, statusCode, getString(source));
+				}
+				default:
+					throw new IllegalArgumentException(String.format("Unknown frame kind %d", Byte.valueOf(kind)));
+			}
+		}
+		catch (BufferUnderflowException | NegativeArraySizeException ex) {
+			throw new IllegalArgumentException("Malformed frame", ex);
+		}
+	}
+
+	private static String getString(ByteBuffer source) {
+		byte[] bytes = new byte[source.getInt()];
+		source.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static Context getContext(ByteBuffer source) {
+		int size = source.getInt();
+		Context res = new Context();
+		for (int i = 0; i < size; i++) {
+			String key = getString(source);
+			res.put(key, getString(source));
+		}
+		return res;
+	}
+
+	private static byte[] getData(ByteBuffer source) {
+		int length = source.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] res = new byte[length];
+		source.get(res);
+		return res;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.concurrent.CompletionException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+
+/**
+ * Maps the failure of an exported call to the status code and message reported back
+ * by the transports that do not serialize it into the response, and the reported
+ * status code back to the exception raised on the client side.
+ */
+public final class ServerErrors {
+
+	public static final int FORBIDDEN = 403;
+
+	public static final int NOT_FOUND = 404;
+
+	public static final int SERVER_ERROR = 500;
+
+	private ServerErrors() {}
+
+	/**
+	 * @return the status code for the failure of the exported call: FORBIDDEN for an
+	 * AuthenticationException, SERVER_ERROR otherwise.
+	 */
+	public static int statusCode(@Nullable Throwable t) {
+		return unwrap(t) instanceof AuthenticationException ? FORBIDDEN : SERVER_ERROR;
+	}
+
+	/**
+	 * @return the message of the failure of the exported call, or a generic one if the
+	 * failure has none or the call delivered no response at all.
+	 */
+	@Nonnull
+	public static String message(@Nullable Throwable t) {
+		Throwable cause = unwrap(t);
+		String res = cause != null ? cause.getMessage() : null;
+		if (res == null || res.trim().length() == 0) {
+			res = "Server error: null response";
+		}
+		return res;
+	}
+
+	/**
+	 * @return the exception to fail the client call with for the reported status code.
+	 */
+	@Nonnull
+	public static RuntimeException exception(int statusCode, @Nonnull String message) {
+		if (statusCode == FORBIDDEN) {
+			return new AuthenticationException(message);
+		}
+		else if (statusCode == NOT_FOUND) {
+			return new NotFoundException(message);
+		}
+		return new TechnicalException(message);
+	}
+
+	private static Throwable unwrap(Throwable t) {
+		return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+	}
+}
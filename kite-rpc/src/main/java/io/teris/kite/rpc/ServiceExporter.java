@@ -4,6 +4,7 @@
 
 package io.teris.kite.rpc;
 
+import java.util.AbstractMap.SimpleEntry;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -34,6 +35,27 @@ public interface ServiceExporter {
 	@Nonnull
 	CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] data);
 
+	/**
+	 * Same as call, but the response data is delivered as a source of chunks. For routes
+	 * bound to methods returning an Iterator every element is serialized and delivered
+	 * in a separate frame as the iteration proceeds, so that transports supporting it
+	 * can write the response incrementally. For other routes the source delivers the
+	 * response of call as a single chunk. Calling call on a streaming route collects all
+	 * frames into a single response.
+	 */
+	@Nonnull
+	default CompletableFuture<Entry<Context, ChunkSource>> stream(@Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+		return call(route, context, data)
+			.thenApply((entry) -> new SimpleEntry<>(entry.getKey(), ChunkSource.of(entry.getValue())));
+	}
+
+	/**
+	 * @return true if the route is bound to a method returning an Iterator.
+	 */
+	default boolean isStreaming(@Nonnull String route) {
+		return false;
+	}
+
 	/**
 	 * Lists all the routes registered for dispatching (flattening out every method of every
 	 * service)
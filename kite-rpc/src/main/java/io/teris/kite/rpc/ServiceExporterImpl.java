@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -26,6 +27,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
@@ -137,9 +139,76 @@ class ServiceExporterImpl implements ServiceExporter {
 	}
 
 
+	@Override
+	public boolean isStreaming(@Nonnull String route) {
+		Entry<Object, Method> endpoint = endpoints.get(route);
+		return endpoint != null && endpoint.getValue() != null && ServiceProxyUtil.isStreaming(endpoint.getValue());
+	}
+
 	@Nonnull
 	@Override
 	public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] incomingData) {
+		if (isStreaming(route)) {
+			return stream(route, context, incomingData)
+				.thenCompose((entry) -> entry.getValue().readAll()
+					.thenApply((data) -> new SimpleEntry<>(entry.getKey(), data)));
+		}
+		AtomicReference<Context> contextHolder = new AtomicReference<>(context);
+		return invoke(route, context, incomingData, contextHolder)
+			.handle(ServiceExporterImpl::response)
+			.thenCompose(serializer::serialize)
+			.thenApply((ser) -> {
+				Context ctx = contextHolder.get();
+				ctx.put(Context.CONTENT_TYPE_KEY, serializer.contentType());
+				return new SimpleEntry<>(ctx, ser);
+			});
+	}
+
+	@Nonnull
+	@Override
+	public CompletableFuture<Entry<Context, ChunkSource>> stream(@Nonnull String route, @Nonnull Context context, @Nullable byte[] incomingData) {
+		if (!isStreaming(route)) {
+			return ServiceExporter.super.stream(route, context, incomingData);
+		}
+		AtomicReference<Context> contextHolder = new AtomicReference<>(context);
+		return invoke(route, context, incomingData, contextHolder)
+			.thenApply((obj) -> {
+				Iterator<?> iterator = obj != null ? (Iterator<?>) obj : Collections.emptyIterator();
+				return (ChunkSource) new IteratorChunkSource(iterator, null, serializer, executors);
+			})
+			// invocation and business exceptions are delivered in the result frame, others fail the call
+			.exceptionally((t) -> new IteratorChunkSource(Collections.emptyIterator(), response(null, t), serializer, executors))
+			.thenApply((source) -> {
+				Context ctx = contextHolder.get();
+				ctx.put(Context.CONTENT_TYPE_KEY, serializer.contentType());
+				return new SimpleEntry<>(ctx, source);
+			});
+	}
+
+	private CompletableFuture<Object> invoke(@Nonnull String route, @Nonnull Context context, @Nullable byte[] incomingData, AtomicReference<Context> contextHolder) {
+		return invoke(route, context, incomingData, contextHolder, (ctx, method) -> deserialize(ctx, method, incomingData));
+	}
+
+	/**
+	 * Dispatches a call from a service proxy in the same process: the arguments are passed
+	 * as is (the context in place of the first one) and the result is delivered unserialized.
+	 * Preprocessors receive no data.
+	 */
+	CompletableFuture<Object> invokeInProcess(@Nonnull String route, @Nonnull Context context, @Nonnull Object[] args, AtomicReference<Context> contextHolder) {
+		return invoke(route, context, null, contextHolder, (ctx, method) -> {
+			if (args.length != method.getParameterCount()) {
+				String message = String.format("Wrong number of arguments (%d instead of %d) to %s.%s",
+					Integer.valueOf(args.length), Integer.valueOf(method.getParameterCount()),
+					method.getDeclaringClass().getSimpleName(), method.getName());
+				throw new InvocationException(message);
+			}
+			Object[] res = args.clone();
+			res[0] = ctx;
+			return CompletableFuture.completedFuture(res);
+		});
+	}
+
+	private CompletableFuture<Object> invoke(@Nonnull String route, @Nonnull Context context, @Nullable byte[] incomingData, AtomicReference<Context> contextHolder, BiFunction<Context, Method, CompletableFuture<Object[]>> arguments) {
 		if (!context.containsKey(Context.X_REQUEST_ID_KEY)) {
 			context.put(Context.X_REQUEST_ID_KEY, uidGenerator.get());
 		}
@@ -149,13 +218,12 @@ class ServiceExporterImpl implements ServiceExporter {
 			promise = promise.thenCompose((c) -> preprocessor.apply(c, routeAndData));
 		}
 
-		AtomicReference<Context> contextHolder = new AtomicReference<>(context);
 		Entry<Object, Method> endpoint = endpoints.get(route);
 		return promise
 			.thenCompose((ctx) -> {
 				contextHolder.set(ctx);
 				if (endpoint != null && endpoint.getKey() != null && endpoint.getValue() != null) {
-					return deserialize(ctx, endpoint.getValue(), incomingData);
+					return arguments.apply(ctx, endpoint.getValue());
 				}
 				throw new InvocationException(String.format("No route to %s", route));
 			})
@@ -187,39 +255,106 @@ class ServiceExporterImpl implements ServiceExporter {
 						throw new BusinessException(ex.getCause() != null ? ex.getCause() : ex);
 					}
 				}, executors);
-			})
-			.handle((obj, t) -> {
-				HashMap<String, Serializable> res = new HashMap<>();
-				if (t instanceof CompletionException) {
-					t = t.getCause();
-				}
-				if (t instanceof InvocationException) {
-					res.put(ResponseFields.EXCEPTION, new ExceptionDataHolder((InvocationException) t));
-					res.put(ResponseFields.ERROR_MESSAGE, t.getMessage() != null ? t.getMessage() : t.toString());
-				}
-				else if (t instanceof BusinessException) {
-					res.put(ResponseFields.EXCEPTION, new ExceptionDataHolder((BusinessException) t));
-					res.put(ResponseFields.ERROR_MESSAGE, t.getMessage() != null ? t.getMessage() : t.toString());
-				}
-				else if (t != null) {
-					throw t instanceof RuntimeException ? (RuntimeException) t : new RuntimeException(t);
-				}
-				else if (obj == null
-					|| void.class.isAssignableFrom(obj.getClass())
-					|| Void.class.isAssignableFrom(obj.getClass())) {
-					res.put(ResponseFields.PAYLOAD, null);
+			});
+	}
+
+	static HashMap<String, Serializable> response(Object obj, Throwable t) {
+		HashMap<String, Serializable> res = new HashMap<>();
+		if (t instanceof CompletionException) {
+			t = t.getCause();
+		}
+		if (t instanceof InvocationException) {
+			res.put(ResponseFields.EXCEPTION, new ExceptionDataHolder((InvocationException) t));
+			res.put(ResponseFields.ERROR_MESSAGE, t.getMessage() != null ? t.getMessage() : t.toString());
+		}
+		else if (t instanceof BusinessException) {
+			res.put(ResponseFields.EXCEPTION, new ExceptionDataHolder((BusinessException) t));
+			res.put(ResponseFields.ERROR_MESSAGE, t.getMessage() != null ? t.getMessage() : t.toString());
+		}
+		else if (t != null) {
+			throw t instanceof RuntimeException ? (RuntimeException) t : new RuntimeException(t);
+		}
+		else if (obj == null
+			|| void.class.isAssignableFrom(obj.getClass())
+			|| Void.class.isAssignableFrom(obj.getClass())) {
+			res.put(ResponseFields.PAYLOAD, null);
+		}
+		else {
+			res.put(ResponseFields.PAYLOAD, (Serializable) obj);
+		}
+		return res;
+	}
+
+	/**
+	 * Iterates the result of a streaming method on the executors (iteration may block),
+	 * serializing one element per chunk and terminating with the serialized response
+	 * structure once the iterator is exhausted or fails.
+	 */
+	static class IteratorChunkSource implements ChunkSource {
+
+		private static final Object END = new Object();
+
+		private final Iterator<?> iterator;
+
+		private final HashMap<String, Serializable> result;
+
+		private final Serializer serializer;
+
+		private final ExecutorService executors;
+
+		private volatile boolean done = false;
+
+		IteratorChunkSource(Iterator<?> iterator, HashMap<String, Serializable> result, Serializer serializer, ExecutorService executors) {
+			this.iterator = iterator;
+			this.result = result;
+			this.serializer = serializer;
+			this.executors = executors;
+		}
+
+		@Nonnull
+		@Override
+		public CompletableFuture<byte[]> next() {
+			if (done) {
+				return CompletableFuture.completedFuture(null);
+			}
+			if (result != null) {
+				done = true;
+				return serializer.serialize(result).thenApply((data) -> StreamFrames.encode(StreamFrames.RESULT, data));
+			}
+			return CompletableFuture
+				.supplyAsync(() -> {
+					try {
+						return iterator.hasNext() ? iterator.next() : END;
+					}
+					catch (RuntimeException ex) {
+						throw new BusinessException(ex);
+					}
+				}, executors)
+				.handle((obj, t) -> {
+					if (t != null || obj == END) {
+						close();
+						return serializer.serialize(response(null, t)).thenApply((data) -> StreamFrames.encode(StreamFrames.RESULT, data));
+					}
+					if (obj == null) {
+						return CompletableFuture.completedFuture(StreamFrames.encode(StreamFrames.ELEMENT, null));
+					}
+					return serializer.serialize((Serializable) obj).thenApply((data) -> StreamFrames.encode(StreamFrames.ELEMENT, data));
+				})
+				.thenCompose(Function.identity());
+		}
+
+		@Override
+		public void close() {
+			done = true;
+			if (iterator instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) iterator).close();
 				}
-				else {
-					res.put(ResponseFields.PAYLOAD, (Serializable) obj);
+				catch (Exception ex) {
+					// nothing to report to: the stream is complete or aborted
 				}
-				return res;
-			})
-			.thenCompose(serializer::serialize)
-			.thenApply((ser) -> {
-				Context ctx = contextHolder.get();
-				ctx.put(Context.CONTENT_TYPE_KEY, serializer.contentType());
-				return new SimpleEntry<>(ctx, ser);
-			});
+			}
+		}
 	}
 
 	private static class Typedef extends HashMap<String, Serializable> {}
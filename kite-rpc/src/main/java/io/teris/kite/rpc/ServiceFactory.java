@@ -34,6 +34,15 @@ public interface ServiceFactory {
 		return new ServiceFactoryImpl.BuilderImpl(serviceInvoker);
 	}
 
+	/**
+	 * @return a new instance of the builder of a client service factory bound directly to
+	 * the exporter in the same process, bypassing serialization and transport. The exporter
+	 * must be built with ServiceExporter.serializer.
+	 */
+	static InProcessBuilder exporter(@Nonnull ServiceExporter serviceExporter) {
+		return new ServiceFactoryImpl.InProcessBuilderImpl(serviceExporter);
+	}
+
 	interface PreBuilder {
 
 		/**
@@ -71,4 +80,26 @@ public interface ServiceFactory {
 		@Nonnull
 		ServiceFactory build();
 	}
+
+	/**
+	 * Defines a builder for the client service factory bound to an exporter in the same
+	 * process.
+	 */
+	interface InProcessBuilder {
+
+		/**
+		 * Binds the policy of handing over arguments and results, by reference by default.
+		 */
+		@Nonnull
+		InProcessBuilder copyPolicy(@Nonnull CopyPolicy copyPolicy);
+
+		@Nonnull
+		InProcessBuilder uidGenerator(@Nonnull Supplier<String> uidGenerator);
+
+		/**
+		 * Builds an instance of the client service factory.
+		 */
+		@Nonnull
+		ServiceFactory build();
+	}
 }
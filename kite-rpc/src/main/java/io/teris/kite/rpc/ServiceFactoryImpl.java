@@ -71,6 +71,42 @@ final class ServiceFactoryImpl implements ServiceFactory {
 		}
 	}
 
+	static class InProcessBuilderImpl implements ServiceFactory.InProcessBuilder {
+
+		private final ServiceExporterImpl serviceExporter;
+
+		private CopyPolicy copyPolicy = CopyPolicy.byReference();
+
+		private Supplier<String> uidGenerator = () -> UUID.randomUUID().toString();
+
+		InProcessBuilderImpl(ServiceExporter serviceExporter) {
+			if (!(serviceExporter instanceof ServiceExporterImpl)) {
+				throw new IllegalArgumentException("In-process binding requires an exporter built with ServiceExporter.serializer");
+			}
+			this.serviceExporter = (ServiceExporterImpl) serviceExporter;
+		}
+
+		@Nonnull
+		@Override
+		public InProcessBuilder copyPolicy(@Nonnull CopyPolicy copyPolicy) {
+			this.copyPolicy = copyPolicy;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public InProcessBuilder uidGenerator(@Nonnull Supplier<String> uidGenerator) {
+			this.uidGenerator = uidGenerator;
+			return this;
+		}
+
+		@Nonnull
+		@Override
+		public ServiceFactory build() {
+			return new ServiceFactoryImpl(new InProcessInvocationHandler(serviceExporter, copyPolicy, uidGenerator));
+		}
+	}
+
 	private final InvocationHandler invocationHandler;
 
 	ServiceFactoryImpl(InvocationHandler invocationHandler) {
@@ -4,6 +4,7 @@
 
 package io.teris.kite.rpc;
 
+import java.util.AbstractMap.SimpleEntry;
 import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
 import javax.annotation.Nonnull;
@@ -21,4 +22,16 @@ public interface ServiceInvoker {
 
 	@Nonnull
 	CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] data);
+
+	/**
+	 * Same as call, but delivers the response data as a source of chunks, completing
+	 * as soon as the response context is available. Used for service methods streaming
+	 * their result (returning an Iterator). Transports that cannot read the response
+	 * incrementally deliver it as a single chunk.
+	 */
+	@Nonnull
+	default CompletableFuture<Entry<Context, ChunkSource>> stream(@Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+		return call(route, context, data)
+			.thenApply((entry) -> new SimpleEntry<>(entry.getKey(), ChunkSource.of(entry.getValue())));
+	}
 }
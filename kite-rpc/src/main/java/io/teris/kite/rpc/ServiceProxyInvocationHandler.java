@@ -9,6 +9,7 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -35,6 +36,9 @@ import io.teris.kite.Serializer;
  * <p>
  * In case the service method returns a future, the execution is wrapped into a
  * completable future, exceptional if required, and no exceptions will be thrown directly.
+ * <p>
+ * Service methods returning an iterator are streamed: the iterator is returned as soon
+ * as the response starts arriving and reads further elements on demand.
  */
 final class ServiceProxyInvocationHandler implements InvocationHandler {
 
@@ -57,6 +61,14 @@ final class ServiceProxyInvocationHandler implements InvocationHandler {
 
 	@Override
 	public Object invoke(Object $, Method method, Object[] args) throws Throwable {
+		if (ServiceProxyUtil.isStreaming(method)) {
+			try {
+				return streamRemote(method, args).get();
+			}
+			catch (ExecutionException ex) {
+				throw ex.getCause();
+			}
+		}
 		CompletableFuture<? extends Serializable> promise = callRemote(method, args);
 		if (Future.class.isAssignableFrom(method.getReturnType())) {
 			return promise;
@@ -155,4 +167,52 @@ final class ServiceProxyInvocationHandler implements InvocationHandler {
 			});
 		return result;
 	}
+
+	<T extends Serializable> CompletableFuture<Iterator<T>> streamRemote(Method method, Object[] args) {
+		CompletableFuture<Iterator<T>> result = new CompletableFuture<>();
+		Type type;
+		String routingKey;
+		Entry<Context, LinkedHashMap<String, Serializable>> parsedArgs;
+		try {
+			type = ServiceProxyUtil.returnType(method);
+			routingKey = ServiceProxyUtil.route(method);
+			parsedArgs = ServiceProxyUtil.arguments(method, args);
+		}
+		catch (RuntimeException ex) {
+			result.completeExceptionally(ex);
+			return result;
+		}
+
+		Context context = parsedArgs.getKey();
+		LinkedHashMap<String, Serializable> payload = parsedArgs.getValue();
+
+		Context requestContext = new Context(context);
+		requestContext.put(Context.X_REQUEST_ID_KEY, uidGenerator.get());
+		requestContext.put(Context.CONTENT_TYPE_KEY, serializer.contentType());
+
+		(payload != null ? serializer.serialize(payload) : CompletableFuture.<byte[]>completedFuture(null))
+			.thenCompose((data) -> serviceInvoker.stream(routingKey, requestContext, data))
+			.whenComplete((entry, t) -> {
+				if (entry != null && entry.getKey() != null) {
+					requestContext.putAll(entry.getKey());
+				}
+				context.putAll(requestContext);
+				if (t != null && t.getCause() != null) {
+					t = t.getCause();
+				}
+				if (t instanceof RuntimeException) {
+					result.completeExceptionally(t);
+				}
+				else if (t != null) {
+					result.completeExceptionally(new InvocationException(String.format("Failed to invoke %s.%s",
+						method.getDeclaringClass().getSimpleName(), method.getName()), t));
+				}
+				else {
+					Deserializer deserializer =
+						deserializerMap.getOrDefault(requestContext.get(Context.CONTENT_TYPE_KEY), serializer.deserializer());
+					result.complete(new StreamIterator<>(entry.getValue(), deserializer, type));
+				}
+			});
+		return result;
+	}
 }
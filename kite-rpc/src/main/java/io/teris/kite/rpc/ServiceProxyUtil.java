@@ -11,6 +11,7 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.WildcardType;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
@@ -160,16 +161,32 @@ final class ServiceProxyUtil {
 		}
 	}
 
+	/**
+	 * For methods returning an Iterator the type of its elements is returned, which are
+	 * streamed to the client one by one.
+	 */
 	@Nonnull
 	static Type returnType(@Nonnull Method method) throws InvocationException {
 		Type returnType = method.getGenericReturnType();
 		if (returnType instanceof ParameterizedType && CompletableFuture.class.isAssignableFrom(method.getReturnType())) {
 			returnType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
 		}
+		else if (isStreaming(method)) {
+			if (!(returnType instanceof ParameterizedType)) {
+				String message = String.format("Return type of %s.%s must declare the type of %s elements",
+					method.getDeclaringClass().getSimpleName(), method.getName(), Iterator.class.getSimpleName());
+				throw new InvocationException(message);
+			}
+			returnType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+		}
 		validateReturnType(method, returnType);
 		return returnType;
 	}
 
+	static boolean isStreaming(@Nonnull Method method) {
+		return Iterator.class.equals(method.getReturnType());
+	}
+
 	private static void validateReturnType(Method method, Type type) throws InvocationException {
 		if (type instanceof WildcardType) {
 			String message = String.format("Return type of %s.%s must contain no wildcards",
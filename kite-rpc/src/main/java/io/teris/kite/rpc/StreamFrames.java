@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map.Entry;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+
+/**
+ * Defines the framing of streamed responses: every frame consists of a one byte kind,
+ * a four byte big-endian payload length and the payload. A stream is a sequence of
+ * element frames, each carrying one serialized element, terminated by a single result
+ * frame carrying the serialized response structure (with a null payload or an exception).
+ * Frames are independent of chunk boundaries of the transport.
+ */
+final class StreamFrames {
+
+	static final byte ELEMENT = 1;
+
+	static final byte RESULT = 2;
+
+	private static final int HEADER_LENGTH = 5;
+
+	private StreamFrames() {}
+
+	@Nonnull
+	static byte[] encode(byte kind, @Nullable byte[] payload) {
+		int length = payload != null ? payload.length : 0;
+		byte[] res = new byte[HEADER_LENGTH + length];
+		res[0] = kind;
+		res[1] = (byte) (length >>> 24);
+		res[2] = (byte) (length >>> 16);
+		res[3] = (byte) (length >>> 8);
+		res[4] = (byte) length;
+		if (length > 0) {
+			System.arraycopy(payload, 0, res, HEADER_LENGTH, length);
+		}
+		return res;
+	}
+
+	/**
+	 * Incrementally decodes frames from chunks of arbitrary boundaries.
+	 */
+	static class Decoder {
+
+		private final Deque<byte[]> chunks = new ArrayDeque<>();
+
+		// read position within the first chunk
+		private int offset = 0;
+
+		private int available = 0;
+
+		void append(@Nonnull byte[] chunk) {
+			if (chunk.length > 0) {
+				chunks.addLast(chunk);
+				available += chunk.length;
+			}
+		}
+
+		/**
+		 * @return the next complete frame as a pair of kind and payload, or null if more
+		 * data is required.
+		 */
+		@Nullable
+		Entry<Byte, byte[]> poll() throws InvocationException {
+			if (available < HEADER_LENGTH) {
+				return null;
+			}
+			byte kind = peek(0);
+			int length = ((peek(1) & 0xff) << 24) | ((peek(2) & 0xff) << 16) | ((peek(3) & 0xff) << 8) | (peek(4) & 0xff);
+			if (length < 0 || (kind != ELEMENT && kind != RESULT)) {
+				throw new InvocationException("Malformed stream frame");
+			}
+			if (available < HEADER_LENGTH + length) {
+				return null;
+			}
+			skip(HEADER_LENGTH);
+			byte[] payload = new byte[length];
+			read(payload);
+			return new SimpleEntry<>(Byte.valueOf(kind), payload);
+		}
+
+		boolean isEmpty() {
+			return available == 0;
+		}
+
+		private byte peek(int index) {
+			int pos = offset + index;
+			for (byte[] chunk : chunks) {
+				if (pos < chunk.length) {
+					return chunk[pos];
+				}
+				pos -= chunk.length;
+			}
+			throw new IllegalStateException("Not enough data");
+		}
+
+		private void skip(int length) {
+			while (length > 0) {
+				byte[] chunk = chunks.getFirst();
+				int step = Math.min(length, chunk.length - offset);
+				consume(chunk, step);
+				length -= step;
+			}
+		}
+
+		private void read(byte[] target) {
+			int pos = 0;
+			while (pos < target.length) {
+				byte[] chunk = chunks.getFirst();
+				int step = Math.min(target.length - pos, chunk.length - offset);
+				System.arraycopy(chunk, offset, target, pos, step);
+				consume(chunk, step);
+				pos += step;
+			}
+		}
+
+		private void consume(byte[] chunk, int length) {
+			offset += length;
+			available -= length;
+			if (offset == chunk.length) {
+				chunks.removeFirst();
+				offset = 0;
+			}
+		}
+	}
+}
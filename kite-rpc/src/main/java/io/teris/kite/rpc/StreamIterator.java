@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import io.teris.kite.Deserializer;
+
+
+/**
+ * Client side iterator over the elements of a streamed response. Chunks are only
+ * requested from the source when the next element is required, so a slow consumer
+ * slows down the producer instead of accumulating the response in memory.
+ * <p>
+ * The iterator blocks on the transport; an exception delivered by the remote in the
+ * terminating result frame is thrown from {@link #hasNext} or {@link #next}.
+ */
+final class StreamIterator<T extends Serializable> implements Iterator<T>, AutoCloseable {
+
+	private final ChunkSource source;
+
+	private final Deserializer deserializer;
+
+	private final Type type;
+
+	private final StreamFrames.Decoder decoder = new StreamFrames.Decoder();
+
+	private Entry<Byte, byte[]> frame = null;
+
+	private boolean done = false;
+
+	StreamIterator(ChunkSource source, Deserializer deserializer, Type type) {
+		this.source = source;
+		this.deserializer = deserializer;
+		this.type = type;
+	}
+
+	private static class Typedef extends HashMap<String, Serializable> {}
+
+	@Override
+	public boolean hasNext() {
+		if (done) {
+			return false;
+		}
+		if (frame == null) {
+			frame = pollFrame();
+		}
+		if (frame.getKey().byteValue() == StreamFrames.ELEMENT) {
+			return true;
+		}
+		done = true;
+		source.close();
+		HashMap<String, Serializable> response = get(deserializer.deserialize(frame.getValue(), Typedef.class.getGenericSuperclass()));
+		byte[] responseException = response != null ? (byte[]) response.get(ResponseFields.EXCEPTION) : null;
+		if (responseException != null) {
+			ExceptionDataHolder holder = get(deserializer.deserialize(responseException, ExceptionDataHolder.class));
+			throw holder.exception();
+		}
+		return false;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		byte[] payload = frame.getValue();
+		frame = null;
+		if (payload.length == 0) {
+			return null;
+		}
+		CompletableFuture<T> promise = deserializer.deserialize(payload, type);
+		return get(promise);
+	}
+
+	@Override
+	public void close() {
+		done = true;
+		source.close();
+	}
+
+	private Entry<Byte, byte[]> pollFrame() {
+		try {
+			Entry<Byte, byte[]> res;
+			while ((res = decoder.poll()) == null) {
+				byte[] chunk = get(source.next());
+				if (chunk == null) {
+					throw new InvocationException("Stream terminated without a result");
+				}
+				decoder.append(chunk);
+			}
+			return res;
+		}
+		catch (RuntimeException ex) {
+			done = true;
+			source.close();
+			throw ex;
+		}
+	}
+
+	private static <V> V get(CompletableFuture<V> promise) {
+		try {
+			return promise.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InvocationException("Interrupted while reading the stream", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable t = ex.getCause();
+			throw t instanceof RuntimeException ? (RuntimeException) t : new InvocationException("Failed to read the stream", t);
+		}
+	}
+}
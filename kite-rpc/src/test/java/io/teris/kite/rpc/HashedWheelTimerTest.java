@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.teris.kite.rpc.HashedWheelTimer.Timeout;
+
+
+public class HashedWheelTimerTest {
+
+	private final HashedWheelTimer underTest = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 8, "test-timer");
+
+	@After
+	public void tearDown() {
+		underTest.stop();
+	}
+
+	@Test
+	public void schedule_afterDelay_fires() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+		underTest.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+	@Test
+	public void schedule_beyondWheelRound_firesInLaterRound() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+		// 8 buckets of 5ms make a round of 40ms
+		underTest.schedule(latch::countDown, 130, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(130));
+	}
+
+	@Test
+	public void cancel_beforeDeadline_neverFires() throws Exception {
+		AtomicInteger fired = new AtomicInteger();
+		Timeout timeout = underTest.schedule(fired::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+		assertTrue(timeout.cancel());
+		assertFalse(timeout.cancel());
+		CountDownLatch latch = new CountDownLatch(1);
+		underTest.schedule(latch::countDown, 60, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(0, fired.get());
+	}
+
+	@Test
+	public void schedule_many_allFireOnce() throws Exception {
+		int count = 1000;
+		CountDownLatch latch = new CountDownLatch(count);
+		AtomicInteger fired = new AtomicInteger();
+		for (int i = 0; i < count; i++) {
+			underTest.schedule(() -> {
+				fired.incrementAndGet();
+				latch.countDown();
+			}, i % 100, TimeUnit.MILLISECONDS);
+		}
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		assertEquals(count, fired.get());
+	}
+
+	@Test
+	public void expire_failingTask_timerContinues() throws Exception {
+		Thread.UncaughtExceptionHandler handler = (thread, ex) -> {};
+		CountDownLatch started = new CountDownLatch(1);
+		underTest.schedule(() -> {
+			Thread.currentThread().setUncaughtExceptionHandler(handler);
+			started.countDown();
+			throw new IllegalStateException("boom");
+		}, 0, TimeUnit.MILLISECONDS);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		CountDownLatch latch = new CountDownLatch(1);
+		underTest.schedule(latch::countDown, 10, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.teris.kite.Context;
+import io.teris.kite.Name;
+import io.teris.kite.Serializer;
+import io.teris.kite.Service;
+import io.teris.kite.rpc.testfixture.TestSerializer;
+
+
+public class LoopbackServiceInvokerTest {
+
+	private static final Serializer serializer = new TestSerializer();
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	@Service(value = "loopback")
+	public interface LoopbackService {
+
+		CompletableFuture<Integer> twice(Context context, @Name("value") Integer value);
+	}
+
+	static class LoopbackServiceImpl implements LoopbackService {
+
+		Context received;
+
+		@Override
+		public CompletableFuture<Integer> twice(Context context, Integer value) {
+			received = context;
+			context.put("invoked-by", "loopback");
+			return CompletableFuture.completedFuture(Integer.valueOf(2 * value.intValue()));
+		}
+	}
+
+	private final LoopbackServiceImpl serviceImpl = new LoopbackServiceImpl();
+
+	private final ServiceExporter exporter = ServiceExporter.serializer(serializer)
+		.export(LoopbackService.class, serviceImpl)
+		.build();
+
+	private LoopbackService proxy(LoopbackServiceInvoker invoker) {
+		return ServiceFactory.invoker(invoker).serializer(serializer).build().newInstance(LoopbackService.class);
+	}
+
+	@Test
+	public void call_noLatency_roundtrip() throws Exception {
+		Context context = new Context();
+		LoopbackService service = proxy(LoopbackServiceInvoker.builder().export(exporter).build());
+		assertEquals(42, service.twice(context, Integer.valueOf(21)).get().intValue());
+		assertEquals("loopback", context.get("invoked-by"));
+		assertNotSame(context, serviceImpl.received);
+	}
+
+	@Test
+	public void call_latency_delaysResponse() throws Exception {
+		LoopbackServiceInvoker invoker = LoopbackServiceInvoker.builder()
+			.export(exporter)
+			.latencyMillis(50)
+			.jitterMillis(10)
+			.build();
+		long start = System.nanoTime();
+		assertEquals(4, proxy(invoker).twice(new Context(), Integer.valueOf(2)).get().intValue());
+		assertTrue(System.nanoTime() - start >= 50000000L);
+		invoker.close().get();
+	}
+
+	@Test
+	public void call_failureRate_seededFailuresReproducible() throws Exception {
+		List<Boolean> first = outcomes(LoopbackServiceInvoker.builder().export(exporter).failureRate(0.5).seed(7).build());
+		List<Boolean> second = outcomes(LoopbackServiceInvoker.builder().export(exporter).failureRate(0.5).seed(7).build());
+		assertEquals(first, second);
+		assertTrue(first.contains(Boolean.TRUE));
+		assertTrue(first.contains(Boolean.FALSE));
+	}
+
+	private List<Boolean> outcomes(LoopbackServiceInvoker invoker) throws Exception {
+		LoopbackService service = proxy(invoker);
+		List<Boolean> res = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			try {
+				service.twice(new Context(), Integer.valueOf(i)).get();
+				res.add(Boolean.TRUE);
+			}
+			catch (ExecutionException ex) {
+				assertTrue(ex.getCause() instanceof TechnicalException);
+				assertEquals("Injected failure", ex.getCause().getMessage());
+				res.add(Boolean.FALSE);
+			}
+		}
+		return res;
+	}
+
+	@Test
+	public void call_unknownRoute_notFound() throws Exception {
+		LoopbackServiceInvoker invoker = LoopbackServiceInvoker.builder().build();
+		exception.expect(ExecutionException.class);
+		exception.expectMessage("NotFoundException: Not Found");
+		invoker.call("loopback.missing", new Context(), null).get();
+	}
+
+	@Test
+	public void build_invalidFailureRate_throws() {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Failure rate must be between 0 and 1");
+		LoopbackServiceInvoker.builder().failureRate(1.5).build();
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.teris.kite.Context;
+
+
+public class PendingRequestsTest {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void remove_registered_returnsContextAndPromise() {
+		PendingRequests underTest = PendingRequests.builder().build();
+		Context context = new Context();
+		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		underTest.register("1", context, promise);
+		assertEquals(1, underTest.size());
+
+		Entry<Context, CompletableFuture<Entry<Context, byte[]>>> res = underTest.remove("1");
+		assertSame(context, res.getKey());
+		assertSame(promise, res.getValue());
+		assertEquals(0, underTest.size());
+		assertNull(underTest.remove("1"));
+	}
+
+	@Test
+	public void register_noResponse_failsOnTimeout() throws Exception {
+		PendingRequests underTest = PendingRequests.builder().timeoutMillis(30).build();
+		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		underTest.register("1", new Context(), promise);
+		try {
+			promise.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(RequestTimeoutException.class, ex.getCause().getClass());
+			assertEquals("No response to request 1 within 30 ms", ex.getCause().getMessage());
+		}
+		assertEquals(0, underTest.size());
+		assertNull(underTest.remove("1"));
+	}
+
+	@Test
+	public void register_removedBeforeTimeout_notFailed() throws Exception {
+		PendingRequests underTest = PendingRequests.builder().timeoutMillis(20).build();
+		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		underTest.register("1", new Context(), promise);
+		underTest.remove("1");
+		Thread.sleep(100);
+		assertFalse(promise.isDone());
+	}
+
+	@Test
+	public void register_duplicateId_throws() {
+		PendingRequests underTest = PendingRequests.builder().maxPending(2).build();
+		underTest.register("1", new Context(), new CompletableFuture<>());
+		try {
+			exception.expect(IllegalStateException.class);
+			exception.expectMessage("Request 1 is already pending");
+			underTest.register("1", new Context(), new CompletableFuture<>());
+		}
+		finally {
+			// capacity of the rejected duplicate is returned
+			underTest.register("2", new Context(), new CompletableFuture<>());
+		}
+	}
+
+	@Test
+	public void register_maxPendingReached_throws() {
+		PendingRequests underTest = PendingRequests.builder().maxPending(1).build();
+		underTest.register("1", new Context(), new CompletableFuture<>());
+		exception.expect(TechnicalException.class);
+		exception.expectMessage("Too many pending requests, maximum 1");
+		underTest.register("2", new Context(), new CompletableFuture<>());
+	}
+
+	@Test
+	public void register_capacityFreedWhileWaiting_success() {
+		PendingRequests underTest = PendingRequests.builder().maxPending(1).maxPendingWaitMillis(5000).build();
+		underTest.register("1", new Context(), new CompletableFuture<>());
+		CompletableFuture.runAsync(() -> {
+			try {
+				Thread.sleep(50);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			underTest.remove("1");
+		});
+		underTest.register("2", new Context(), new CompletableFuture<>());
+		assertEquals(1, underTest.size());
+	}
+
+	@Test
+	public void register_capacityFreedByTimeout_success() throws Exception {
+		PendingRequests underTest = PendingRequests.builder().timeoutMillis(30).maxPending(1).maxPendingWaitMillis(5000).build();
+		CompletableFuture<Entry<Context, byte[]>> first = new CompletableFuture<>();
+		underTest.register("1", new Context(), first);
+		underTest.register("2", new Context(), new CompletableFuture<>());
+		try {
+			first.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(RequestTimeoutException.class, ex.getCause().getClass());
+		}
+	}
+
+	@Test
+	public void register_noResponse_failedOnTimeoutExecutor() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor((r) -> new Thread(r, "timeout-executor"));
+		try {
+			PendingRequests underTest = PendingRequests.builder().timeoutMillis(30).timeoutExecutor(executor).build();
+			CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+			underTest.register("1", new Context(), promise);
+			String thread = promise
+				.handle((res, t) -> Thread.currentThread().getName())
+				.get(5, TimeUnit.SECONDS);
+			assertEquals("timeout-executor", thread);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void failAll_pending_failedAndRemoved() throws Exception {
+		PendingRequests underTest = PendingRequests.builder().build();
+		CompletableFuture<Entry<Context, byte[]>> promise = new CompletableFuture<>();
+		underTest.register("1", new Context(), promise);
+		underTest.register("2", new Context(), new CompletableFuture<>());
+		underTest.failAll(new TechnicalException("closed"));
+		assertEquals(0, underTest.size());
+		try {
+			promise.get();
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(TechnicalException.class, ex.getCause().getClass());
+			assertEquals("closed", ex.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void failAll_matching_onlyMatchingFailed() {
+		PendingRequests underTest = PendingRequests.builder().build();
+		CompletableFuture<Entry<Context, byte[]>> failed = new CompletableFuture<>();
+		CompletableFuture<Entry<Context, byte[]>> kept = new CompletableFuture<>();
+		underTest.register("1", new Context(), failed);
+		underTest.register("2", new Context(), kept);
+		underTest.failAll(new TechnicalException("closed"), "1"::equals);
+		assertTrue(failed.isCompletedExceptionally());
+		assertFalse(kept.isDone());
+		assertEquals(1, underTest.size());
+	}
+
+	@Test
+	public void maxPending_notPositive_throws() {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Maximum of pending requests must be positive");
+		PendingRequests.builder().maxPending(0);
+	}
+}
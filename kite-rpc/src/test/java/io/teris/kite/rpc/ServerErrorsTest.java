@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CompletionException;
+
+import org.junit.Test;
+
+
+public class ServerErrorsTest {
+
+	@Test
+	public void statusCode_wrappedAuthenticationException_forbidden() {
+		assertEquals(ServerErrors.FORBIDDEN, ServerErrors.statusCode(new CompletionException(new AuthenticationException("denied"))));
+	}
+
+	@Test
+	public void statusCode_otherOrNoFailure_serverError() {
+		assertEquals(ServerErrors.SERVER_ERROR, ServerErrors.statusCode(new IllegalStateException("boom")));
+		assertEquals(ServerErrors.SERVER_ERROR, ServerErrors.statusCode(null));
+	}
+
+	@Test
+	public void message_wrappedFailure_messageOfCause() {
+		assertEquals("boom", ServerErrors.message(new CompletionException(new IllegalStateException("boom"))));
+	}
+
+	@Test
+	public void message_blankOrNoFailure_nullResponse() {
+		assertEquals("Server error: null response", ServerErrors.message(new IllegalStateException(" ")));
+		assertEquals("Server error: null response", ServerErrors.message(null));
+	}
+
+	@Test
+	public void exception_statusCode_mappedToClientException() {
+		assertEquals(AuthenticationException.class, ServerErrors.exception(403, "denied").getClass());
+		assertEquals(NotFoundException.class, ServerErrors.exception(404, "Not Found").getClass());
+		assertEquals(TechnicalException.class, ServerErrors.exception(500, "boom").getClass());
+		assertEquals("boom", ServerErrors.exception(500, "boom").getMessage());
+	}
+}
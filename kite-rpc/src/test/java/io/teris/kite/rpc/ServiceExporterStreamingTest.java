@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.teris.kite.Context;
+import io.teris.kite.Name;
+import io.teris.kite.Serializer;
+import io.teris.kite.Service;
+import io.teris.kite.rpc.testfixture.TestSerializer;
+
+
+public class ServiceExporterStreamingTest {
+
+	private static final Serializer serializer = new TestSerializer();
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	@Service(value = "streaming")
+	public interface StreamingService {
+
+		Iterator<Integer> range(Context context, @Name("size") Integer size);
+
+		Iterator<String> failing(Context context, @Name("after") Integer after);
+
+		Iterator<String> rejecting(Context context);
+
+		Integer plain(Context context);
+	}
+
+	static class CountingIterator implements Iterator<Integer>, AutoCloseable {
+
+		private final int size;
+
+		final AtomicInteger produced = new AtomicInteger(0);
+
+		final AtomicBoolean closed = new AtomicBoolean(false);
+
+		CountingIterator(int size) {
+			this.size = size;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return produced.get() < size;
+		}
+
+		@Override
+		public Integer next() {
+			return Integer.valueOf(produced.getAndIncrement());
+		}
+
+		@Override
+		public void close() {
+			closed.set(true);
+		}
+	}
+
+	static class StreamingServiceImpl implements StreamingService {
+
+		CountingIterator last;
+
+		@Override
+		public Iterator<Integer> range(Context context, Integer size) {
+			last = new CountingIterator(size.intValue());
+			return last;
+		}
+
+		@Override
+		public Iterator<String> failing(Context context, Integer after) {
+			int[] count = new int[]{0};
+			return new Iterator<String>() {
+				@Override
+				public boolean hasNext() {
+					return true;
+				}
+
+				@Override
+				public String next() {
+					if (count[0]++ == after.intValue()) {
+						throw new IllegalStateException("iteration failed");
+					}
+					return "x";
+				}
+			};
+		}
+
+		@Override
+		public Iterator<String> rejecting(Context context) {
+			throw new IllegalArgumentException("rejected");
+		}
+
+		@Override
+		public Integer plain(Context context) {
+			return Integer.valueOf(42);
+		}
+	}
+
+	private final StreamingServiceImpl serviceImpl = new StreamingServiceImpl();
+
+	private final ServiceExporter exporter = ServiceExporter.serializer(serializer)
+		.export(StreamingService.class, serviceImpl)
+		.build();
+
+	private StreamingService proxy(boolean streamingTransport) {
+		ServiceInvoker invoker = new ServiceInvoker() {
+			@Nonnull
+			@Override
+			public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+				return exporter.call(route, context, data);
+			}
+
+			@Nonnull
+			@Override
+			public CompletableFuture<Entry<Context, ChunkSource>> stream(@Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+				return streamingTransport ? exporter.stream(route, context, data) : ServiceInvoker.super.stream(route, context, data);
+			}
+		};
+		return ServiceFactory.invoker(invoker).serializer(serializer).build().newInstance(StreamingService.class);
+	}
+
+	@Test
+	public void isStreaming_iteratorRoutesOnly() {
+		assertTrue(exporter.isStreaming("streaming.range"));
+		assertFalse(exporter.isStreaming("streaming.plain"));
+		assertFalse(exporter.isStreaming("streaming.missing"));
+	}
+
+	@Test
+	public void stream_elements_readLazily() {
+		Iterator<Integer> res = proxy(true).range(new Context(), Integer.valueOf(1000));
+		assertEquals(0, res.next().intValue());
+		assertEquals(1, res.next().intValue());
+		// the producer advances only as far as the elements were requested
+		assertEquals(2, serviceImpl.last.produced.get());
+		List<Integer> rest = new ArrayList<>();
+		res.forEachRemaining(rest::add);
+		assertEquals(998, rest.size());
+		assertEquals(999, rest.get(997).intValue());
+		assertTrue(serviceImpl.last.closed.get());
+	}
+
+	@Test
+	public void stream_emptyIterator_noElements() {
+		assertFalse(proxy(true).range(new Context(), Integer.valueOf(0)).hasNext());
+	}
+
+	@Test
+	public void stream_nonStreamingTransport_collectsFrames() {
+		Iterator<Integer> res = proxy(false).range(new Context(), Integer.valueOf(3));
+		List<Integer> all = new ArrayList<>();
+		res.forEachRemaining(all::add);
+		assertEquals(Arrays.asList(0, 1, 2), all);
+	}
+
+	@Test
+	public void stream_failureDuringIteration_throwsAfterElements() {
+		Iterator<String> res = proxy(true).failing(new Context(), Integer.valueOf(2));
+		assertEquals("x", res.next());
+		assertEquals("x", res.next());
+		exception.expect(BusinessException.class);
+		exception.expectMessage("iteration failed");
+		res.hasNext();
+	}
+
+	@Test
+	public void stream_failureBeforeIteration_throwsOnFirstAccess() {
+		Iterator<String> res = proxy(true).rejecting(new Context());
+		exception.expect(BusinessException.class);
+		exception.expectMessage("rejected");
+		res.hasNext();
+	}
+
+	@Test
+	public void stream_nonStreamingRoute_singleChunk() throws Exception {
+		Entry<Context, ChunkSource> entry = exporter.stream("streaming.plain", new Context(), null).get();
+		byte[] expected = exporter.call("streaming.plain", new Context(), null).get().getValue();
+		assertArrayEquals(expected, entry.getValue().next().get());
+		assertNull(entry.getValue().next().get());
+	}
+
+	@Test
+	public void streamFrames_decoder_acrossChunkBoundaries() {
+		byte[] first = StreamFrames.encode(StreamFrames.ELEMENT, new byte[]{1, 2, 3});
+		byte[] second = StreamFrames.encode(StreamFrames.RESULT, null);
+		byte[] all = new byte[first.length + second.length];
+		System.arraycopy(first, 0, all, 0, first.length);
+		System.arraycopy(second, 0, all, first.length, second.length);
+
+		StreamFrames.Decoder decoder = new StreamFrames.Decoder();
+		for (int i = 0; i < all.length; i += 3) {
+			decoder.append(Arrays.copyOfRange(all, i, Math.min(i + 3, all.length)));
+		}
+		Entry<Byte, byte[]> frame = decoder.poll();
+		assertEquals(StreamFrames.ELEMENT, frame.getKey().byteValue());
+		assertArrayEquals(new byte[]{1, 2, 3}, frame.getValue());
+		frame = decoder.poll();
+		assertEquals(StreamFrames.RESULT, frame.getKey().byteValue());
+		assertEquals(0, frame.getValue().length);
+		assertNull(decoder.poll());
+		assertTrue(decoder.isEmpty());
+	}
+
+	@Test
+	public void streamFrames_decoder_malformed_throws() {
+		StreamFrames.Decoder decoder = new StreamFrames.Decoder();
+		decoder.append(new byte[]{7, 0, 0, 0, 0});
+		exception.expect(InvocationException.class);
+		exception.expectMessage("Malformed stream frame");
+		decoder.poll();
+	}
+}
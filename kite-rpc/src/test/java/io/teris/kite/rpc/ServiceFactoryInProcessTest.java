@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import io.teris.kite.Context;
+import io.teris.kite.Name;
+import io.teris.kite.Serializer;
+import io.teris.kite.Service;
+import io.teris.kite.rpc.testfixture.TestSerializer;
+
+
+public class ServiceFactoryInProcessTest {
+
+	private static final Serializer serializer = new TestSerializer();
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	@Service(value = "inprocess")
+	public interface InProcessService {
+
+		ArrayList<String> echo(Context context, @Name("values") ArrayList<String> values);
+
+		CompletableFuture<ArrayList<String>> echoAsync(Context context, @Name("values") ArrayList<String> values);
+
+		Iterator<String> each(Context context, @Name("values") ArrayList<String> values);
+
+		void fail(Context context);
+	}
+
+	static class InProcessServiceImpl implements InProcessService {
+
+		ArrayList<String> received;
+
+		@Override
+		public ArrayList<String> echo(Context context, ArrayList<String> values) {
+			context.put("invoked-by", "impl");
+			received = values;
+			return values;
+		}
+
+		@Override
+		public CompletableFuture<ArrayList<String>> echoAsync(Context context, ArrayList<String> values) {
+			received = values;
+			return CompletableFuture.completedFuture(values);
+		}
+
+		@Override
+		public Iterator<String> each(Context context, ArrayList<String> values) {
+			return values.iterator();
+		}
+
+		@Override
+		public void fail(Context context) {
+			throw new IllegalStateException("BOOM");
+		}
+	}
+
+	private final InProcessServiceImpl serviceImpl = new InProcessServiceImpl();
+
+	private final ServiceExporter exporter = ServiceExporter.serializer(serializer)
+		.preprocessor((context, routeAndData) -> {
+			context.put("preprocessed", routeAndData.getKey());
+			return CompletableFuture.completedFuture(context);
+		})
+		.export(InProcessService.class, serviceImpl)
+		.build();
+
+	@Test
+	public void call_byReference_passesInstances() {
+		InProcessService service = ServiceFactory.exporter(exporter).build().newInstance(InProcessService.class);
+		ArrayList<String> values = new ArrayList<>(Arrays.asList("a", "b"));
+		ArrayList<String> res = service.echo(new Context(), values);
+		assertSame(values, serviceImpl.received);
+		assertSame(values, res);
+	}
+
+	@Test
+	public void call_serializerPolicy_passesCopies() throws Exception {
+		InProcessService service = ServiceFactory.exporter(exporter)
+			.copyPolicy(CopyPolicy.serializer(serializer))
+			.build()
+			.newInstance(InProcessService.class);
+		ArrayList<String> values = new ArrayList<>(Arrays.asList("a", "b"));
+		ArrayList<String> res = service.echoAsync(new Context(), values).get();
+		assertNotSame(values, serviceImpl.received);
+		assertEquals(values, serviceImpl.received);
+		assertNotSame(serviceImpl.received, res);
+		assertEquals(values, res);
+	}
+
+	@Test
+	public void call_context_passesPreprocessorsAndReturns() {
+		InProcessService service = ServiceFactory.exporter(exporter).build().newInstance(InProcessService.class);
+		Context context = new Context();
+		service.echo(context, new ArrayList<>());
+		assertEquals("inprocess.echo", context.get("preprocessed"));
+		assertEquals("impl", context.get("invoked-by"));
+		assertNotNull(context.get(Context.X_REQUEST_ID_KEY));
+	}
+
+	@Test
+	public void call_iterator_copiesElements() {
+		InProcessService service = ServiceFactory.exporter(exporter)
+			.copyPolicy(CopyPolicy.serializer(serializer))
+			.build()
+			.newInstance(InProcessService.class);
+		List<String> res = new ArrayList<>();
+		service.each(new Context(), new ArrayList<>(Arrays.asList("a", "b", "c"))).forEachRemaining(res::add);
+		assertEquals(Arrays.asList("a", "b", "c"), res);
+	}
+
+	@Test
+	public void call_serviceThrows_businessException() {
+		InProcessService service = ServiceFactory.exporter(exporter).build().newInstance(InProcessService.class);
+		exception.expect(BusinessException.class);
+		exception.expectMessage("BOOM");
+		service.fail(new Context());
+	}
+
+	@Test
+	public void call_preprocessorFails_technicalException() throws Exception {
+		ServiceExporter failing = ServiceExporter.serializer(serializer)
+			.preprocessor((context, routeAndData) -> {
+				CompletableFuture<Context> res = new CompletableFuture<>();
+				res.completeExceptionally(new RuntimeException("BOOM"));
+				return res;
+			})
+			.export(InProcessService.class, serviceImpl)
+			.build();
+		InProcessService service = ServiceFactory.exporter(failing).build().newInstance(InProcessService.class);
+		try {
+			service.echoAsync(new Context(), new ArrayList<>()).get();
+			throw new AssertionError("unreachable code");
+		}
+		catch (ExecutionException ex) {
+			assertEquals(TechnicalException.class, ex.getCause().getClass());
+			assertTrue(ex.getCause().getMessage().startsWith("BOOM"));
+		}
+	}
+
+	@Test
+	public void exporter_foreignImplementation_throws() {
+		ServiceExporter foreign = new ServiceExporter() {
+			@Nonnull
+			@Override
+			public CompletableFuture<Entry<Context, byte[]>> call(@Nonnull String route, @Nonnull Context context, @Nullable byte[] data) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Nonnull
+			@Override
+			public Set<String> routes() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("In-process binding requires an exporter built with ServiceExporter.serializer");
+		ServiceFactory.exporter(foreign);
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.loadtest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+
+/**
+ * Issues calls open-loop at a fixed rate: every call has an intended start time on a
+ * fixed schedule independent of the completion of earlier calls. Latency is measured
+ * from the intended start, so that the time a call waited for the generator to catch up
+ * after a stall is included (corrected for coordinated omission); the service time from
+ * the actual start is recorded alongside for comparison. Values are in nanoseconds.
+ */
+final class LoadGenerator {
+
+	private static final long REPORTING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final int ratePerSecond;
+
+	private final long warmupNanos;
+
+	private final long durationNanos;
+
+	private final int maxInFlight;
+
+	private final Supplier<CompletableFuture<?>> call;
+
+	private final HistogramLogWriter logWriter;
+
+	/**
+	 * @param maxInFlight bounds the calls in flight: once reached the generator waits,
+	 *                    which shows in the corrected latency of the calls delayed.
+	 * @param logWriter   receives the interval histograms of the corrected latency, if any.
+	 */
+	LoadGenerator(int ratePerSecond, long warmupMillis, long durationMillis, int maxInFlight, @Nonnull Supplier<CompletableFuture<?>> call, @Nullable HistogramLogWriter logWriter) {
+		if (ratePerSecond <= 0 || maxInFlight <= 0 || durationMillis <= 0 || warmupMillis < 0) {
+			throw new IllegalArgumentException("Rate, duration and calls in flight must be positive, warmup not negative");
+		}
+		this.ratePerSecond = ratePerSecond;
+		this.warmupNanos = TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+		this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		this.maxInFlight = maxInFlight;
+		this.call = call;
+		this.logWriter = logWriter;
+	}
+
+	static class Result {
+
+		final Histogram latency;
+
+		final Histogram serviceTime;
+
+		final long completed;
+
+		final long failed;
+
+		final long durationNanos;
+
+		Result(Histogram latency, Histogram serviceTime, long completed, long failed, long durationNanos) {
+			this.latency = latency;
+			this.serviceTime = serviceTime;
+			this.completed = completed;
+			this.failed = failed;
+			this.durationNanos = durationNanos;
+		}
+
+		double throughput() {
+			return (completed + failed) * 1e9 / durationNanos;
+		}
+	}
+
+	@Nonnull
+	Result run() throws InterruptedException {
+		Recorder latencyRecorder = new Recorder(3);
+		Recorder serviceTimeRecorder = new Recorder(3);
+		Histogram latency = new Histogram(3);
+		Histogram serviceTime = new Histogram(3);
+		LongAdder completed = new LongAdder();
+		LongAdder failed = new LongAdder();
+		Semaphore inFlight = new Semaphore(maxInFlight);
+
+		double intervalNanos = 1e9 / ratePerSecond;
+		long start = System.nanoTime();
+		long measureStart = start + warmupNanos;
+		long end = measureStart + durationNanos;
+		long nextReport = measureStart + REPORTING_INTERVAL_NANOS;
+		boolean measuring = false;
+
+		for (long i = 0; ; i++) {
+			long intended = start + (long) (i * intervalNanos);
+			if (intended >= end) {
+				break;
+			}
+			long now;
+			while ((now = System.nanoTime()) < intended) {
+				LockSupport.parkNanos(intended - now);
+			}
+			if (!measuring && intended >= measureStart) {
+				// drop everything recorded during the warmup
+				latencyRecorder.reset();
+				serviceTimeRecorder.reset();
+				measuring = true;
+			}
+			if (measuring && now >= nextReport) {
+				report(latencyRecorder, serviceTimeRecorder, latency, serviceTime);
+				nextReport += REPORTING_INTERVAL_NANOS;
+			}
+			inFlight.acquire();
+			boolean measured = measuring;
+			long sent = System.nanoTime();
+			CompletableFuture<?> promise;
+			try {
+				promise = call.get();
+			}
+			catch (RuntimeException ex) {
+				promise = new CompletableFuture<>();
+				promise.completeExceptionally(ex);
+			}
+			promise.whenComplete((res, t) -> {
+				long done = System.nanoTime();
+				inFlight.release();
+				if (!measured) {
+					return;
+				}
+				if (t != null) {
+					failed.increment();
+					return;
+				}
+				completed.increment();
+				latencyRecorder.recordValue(done - intended);
+				serviceTimeRecorder.recordValue(done - sent);
+			});
+		}
+		if (!inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS)) {
+			throw new IllegalStateException(String.format("%d calls did not complete within 30s", Integer.valueOf(maxInFlight - inFlight.availablePermits())));
+		}
+		report(latencyRecorder, serviceTimeRecorder, latency, serviceTime);
+		return new Result(latency, serviceTime, completed.sum(), failed.sum(), Math.max(System.nanoTime(), end) - measureStart);
+	}
+
+	private void report(Recorder latencyRecorder, Recorder serviceTimeRecorder, Histogram latency, Histogram serviceTime) {
+		Histogram interval = latencyRecorder.getIntervalHistogram();
+		latency.add(interval);
+		serviceTime.add(serviceTimeRecorder.getIntervalHistogram());
+		if (logWriter != null) {
+			logWriter.outputIntervalHistogram(interval);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.loadtest;
+
+import java.util.concurrent.CompletableFuture;
+
+import io.teris.kite.Context;
+import io.teris.kite.Name;
+import io.teris.kite.Service;
+
+
+/**
+ * The service under load: echoes the payload so that its size drives the cost of
+ * serialization and transport in both directions.
+ */
+@Service
+public interface LoadService {
+
+	CompletableFuture<String> echo(Context context, @Name("data") String data);
+
+	class LoadServiceImpl implements LoadService {
+
+		@Override
+		public CompletableFuture<String> echo(Context context, String data) {
+			return CompletableFuture.completedFuture(data);
+		}
+	}
+}
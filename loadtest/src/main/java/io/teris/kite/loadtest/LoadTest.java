@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.loadtest;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import io.teris.kite.Context;
+import io.teris.kite.Serializer;
+import io.teris.kite.gson.JsonSerializer;
+import io.teris.kite.loadtest.LoadService.LoadServiceImpl;
+import io.teris.kite.rpc.ServiceExporter;
+
+
+/**
+ * Drives a service over one of the transports at a fixed request rate and reports the
+ * latency distribution corrected for coordinated omission, see {@link LoadGenerator}.
+ */
+public final class LoadTest {
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+		"usage: LoadTest [options]",
+		"  --transport <name>     one of " + Transports.NAMES + " (default loopback)",
+		"  --rate <n>             requests per second (default 1000)",
+		"  --duration <s>         measured seconds (default 30)",
+		"  --warmup <s>           unmeasured seconds before measuring (default 5)",
+		"  --payload <bytes>      size of the echoed payload (default 100)",
+		"  --max-in-flight <n>    bound on outstanding requests (default 1000)",
+		"  --hdr-log <file>       writes interval histograms of the latency in HdrHistogram log format",
+		"  --amqp-host <host>     broker host for the amqp transport (default localhost)");
+
+	private LoadTest() {}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parse(args);
+		if (options == null) {
+			System.out.println(USAGE);
+			System.exit(args.length == 1 && "--help".equals(args[0]) ? 0 : 1);
+			return;
+		}
+		String transport = options.getOrDefault("transport", "loopback");
+		int rate = Integer.parseInt(options.getOrDefault("rate", "1000"));
+		long duration = Long.parseLong(options.getOrDefault("duration", "30"));
+		long warmup = Long.parseLong(options.getOrDefault("warmup", "5"));
+		int payloadSize = Integer.parseInt(options.getOrDefault("payload", "100"));
+		int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "1000"));
+		String hdrLog = options.get("hdr-log");
+
+		Serializer serializer = JsonSerializer.builder().build();
+		ServiceExporter exporter = ServiceExporter.serializer(serializer)
+			.export(LoadService.class, new LoadServiceImpl())
+			.build();
+
+		char[] chars = new char[payloadSize];
+		Arrays.fill(chars, 'x');
+		String payload = new String(chars);
+
+		try (Transports transports = new Transports(transport, serializer, exporter, maxInFlight, options.getOrDefault("amqp-host", "localhost"));
+			 PrintStream logStream = hdrLog != null ? new PrintStream(new FileOutputStream(hdrLog)) : null) {
+			LoadService service = transports.serviceFactory().newInstance(LoadService.class);
+
+			HistogramLogWriter logWriter = null;
+			if (logStream != null) {
+				logWriter = new HistogramLogWriter(logStream);
+				logWriter.outputLogFormatVersion();
+				logWriter.outputStartTime(System.currentTimeMillis() + warmup * 1000);
+				logWriter.outputLegend();
+			}
+
+			System.out.printf("transport=%s, rate=%d/s, duration=%ds, warmup=%ds, payload=%dB, maxInFlight=%d%n",
+				transport, Integer.valueOf(rate), Long.valueOf(duration), Long.valueOf(warmup), Integer.valueOf(payloadSize), Integer.valueOf(maxInFlight));
+
+			LoadGenerator.Result result = new LoadGenerator(rate, warmup * 1000, duration * 1000, maxInFlight,
+				() -> service.echo(new Context(), payload), logWriter).run();
+
+			report(System.out, result);
+		}
+		System.exit(0);
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> res = new HashMap<>();
+		for (int i = 0; i < args.length; i += 2) {
+			if (!args[i].startsWith("--") || "--help".equals(args[i]) || i + 1 >= args.length) {
+				return null;
+			}
+			res.put(args[i].substring(2), args[i + 1]);
+		}
+		return res;
+	}
+
+	static void report(PrintStream out, LoadGenerator.Result result) {
+		out.println();
+		out.println("Latency from intended start (corrected for coordinated omission), microseconds:");
+		result.latency.outputPercentileDistribution(out, Double.valueOf(1000.0));
+		out.println();
+		out.printf("%-14s %10s %10s%n", "", "latency", "service");
+		for (double percentile: new double[]{50.0, 90.0, 99.0, 99.9, 99.99}) {
+			out.printf("%-14s %10.1f %10.1f%n", "p" + percentile, micros(result.latency, percentile), micros(result.serviceTime, percentile));
+		}
+		out.printf("%-14s %10.1f %10.1f%n", "max", Double.valueOf(result.latency.getMaxValue() / 1000.0), Double.valueOf(result.serviceTime.getMaxValue() / 1000.0));
+		out.printf("completed=%d, failed=%d, throughput=%.1f/s%n",
+			Long.valueOf(result.completed), Long.valueOf(result.failed), Double.valueOf(result.throughput()));
+	}
+
+	private static Double micros(Histogram histogram, double percentile) {
+		return Double.valueOf(histogram.getValueAtPercentile(percentile) / 1000.0);
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.ConnectionFactory;
+
+import io.teris.kite.Serializer;
+import io.teris.kite.rpc.LoopbackServiceInvoker;
+import io.teris.kite.rpc.ServiceExporter;
+import io.teris.kite.rpc.ServiceFactory;
+import io.teris.kite.rpc.ServiceInvoker;
+import io.teris.kite.rpc.amqp.AmqpServiceExporter;
+import io.teris.kite.rpc.amqp.AmqpServiceInvoker;
+import io.teris.kite.rpc.jms.JmsServiceExporter;
+import io.teris.kite.rpc.jms.JmsServiceInvoker;
+import io.teris.kite.rpc.shm.ShmServiceExporter;
+import io.teris.kite.rpc.shm.ShmServiceInvoker;
+import io.teris.kite.rpc.tcp.TcpServiceExporter;
+import io.teris.kite.rpc.tcp.TcpServiceInvoker;
+import io.teris.kite.rpc.vertx.EventBusServiceExporter;
+import io.teris.kite.rpc.vertx.EventBusServiceInvoker;
+import io.teris.kite.rpc.vertx.HttpServiceExporter;
+import io.teris.kite.rpc.vertx.HttpServiceInvoker;
+import io.teris.kite.rpc.vertx.WebSocketServiceExporter;
+import io.teris.kite.rpc.vertx.WebSocketServiceInvoker;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetServerOptions;
+
+
+/**
+ * Sets up the exporter and the invoker of one transport in this process, starting
+ * local stand-ins for the servers and brokers where the transport needs one. AMQP
+ * is the exception and expects a broker at the given host.
+ */
+final class Transports implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(Transports.class);
+
+	static final List<String> NAMES = Arrays.asList("loopback", "inprocess", "http", "websocket", "tcp", "eventbus", "shm", "jms", "amqp");
+
+	private static final String REQUEST_TOPIC = "kite-loadtest";
+
+	private final Deque<AutoCloseable> resources = new ArrayDeque<>();
+
+	private final ServiceFactory serviceFactory;
+
+	Transports(@Nonnull String name, @Nonnull Serializer serializer, @Nonnull ServiceExporter exporter, int maxInFlight, @Nonnull String amqpHost) throws Exception {
+		try {
+			this.serviceFactory = bind(name, serializer, exporter, maxInFlight, amqpHost);
+		}
+		catch (Exception ex) {
+			close();
+			throw ex;
+		}
+	}
+
+	@Nonnull
+	ServiceFactory serviceFactory() {
+		return serviceFactory;
+	}
+
+	private ServiceFactory bind(String name, Serializer serializer, ServiceExporter exporter, int maxInFlight, String amqpHost) throws Exception {
+		if ("inprocess".equals(name)) {
+			return ServiceFactory.exporter(exporter).build();
+		}
+		return ServiceFactory.invoker(invoker(name, exporter, maxInFlight, amqpHost))
+			.serializer(serializer)
+			.build();
+	}
+
+	private ServiceInvoker invoker(String name, ServiceExporter exporter, int maxInFlight, String amqpHost) throws Exception {
+		switch (name) {
+			case "loopback": {
+				LoopbackServiceInvoker invoker = LoopbackServiceInvoker.builder().export(exporter).build();
+				resources.push(() -> invoker.close().get());
+				return invoker;
+			}
+			case "http": {
+				Vertx vertx = vertx();
+				int port = freePort();
+				HttpServiceExporter httpExporter = HttpServiceExporter.router(vertx).export(exporter);
+				listen(vertx.createHttpServer(new HttpServerOptions().setPort(port)).requestHandler(httpExporter.router()::accept));
+				return HttpServiceInvoker.httpClient(vertx.createHttpClient(new HttpClientOptions()
+					.setDefaultHost("localhost")
+					.setDefaultPort(port)
+					.setMaxPoolSize(Math.min(maxInFlight, 500)))).build();
+			}
+			case "websocket": {
+				Vertx vertx = vertx();
+				int port = freePort();
+				WebSocketServiceExporter wsExporter = WebSocketServiceExporter.path("/kite").export(exporter);
+				listen(vertx.createHttpServer(new HttpServerOptions().setPort(port)).websocketHandler(wsExporter));
+				WebSocketServiceInvoker invoker = WebSocketServiceInvoker.httpClient(vertx.createHttpClient(new HttpClientOptions()
+					.setDefaultHost("localhost")
+					.setDefaultPort(port)))
+					.path("/kite")
+					.build();
+				resources.push(() -> invoker.close().get());
+				return invoker;
+			}
+			case "tcp": {
+				Vertx vertx = vertx();
+				int port = freePort();
+				TcpServiceExporter tcpExporter = TcpServiceExporter.builder().export(exporter);
+				CompletableFuture<NetServer> promise = new CompletableFuture<>();
+				vertx.createNetServer(new NetServerOptions().setPort(port))
+					.connectHandler(tcpExporter)
+					.listen(handler -> {
+						if (handler.failed()) {
+							promise.completeExceptionally(handler.cause());
+							return;
+						}
+						promise.complete(handler.result());
+					});
+				NetServer server = promise.get(5, TimeUnit.SECONDS);
+				resources.push(server::close);
+				TcpServiceInvoker invoker = TcpServiceInvoker.netClient(vertx.createNetClient()).port(port).build();
+				resources.push(() -> invoker.close().get());
+				return invoker;
+			}
+			case "eventbus": {
+				Vertx vertx = vertx();
+				EventBusServiceExporter busExporter = EventBusServiceExporter.eventBus(vertx.eventBus()).export(exporter);
+				resources.push(() -> busExporter.close().get());
+				return EventBusServiceInvoker.eventBus(vertx.eventBus()).build();
+			}
+			case "shm": {
+				Path devShm = Paths.get("/dev/shm");
+				Path directory = Files.isDirectory(devShm) && Files.isWritable(devShm)
+					? Files.createTempDirectory(devShm, "kite")
+					: Files.createTempDirectory("kite");
+				resources.push(() -> Files.deleteIfExists(directory));
+				ShmServiceExporter shmExporter = ShmServiceExporter.directory(directory).export(exporter).start();
+				resources.push(() -> shmExporter.close().get());
+				ShmServiceInvoker invoker = ShmServiceInvoker.directory(directory).connect();
+				resources.push(() -> invoker.close().get());
+				return invoker;
+			}
+			case "jms": {
+				String brokerUrl = String.format("tcp://localhost:%d", Integer.valueOf(freePort()));
+				String clientUrl = brokerUrl + "?jms.useAsyncSend=true";
+				BrokerService broker = new BrokerService();
+				broker.setPersistent(false);
+				broker.setUseJmx(false);
+				broker.addConnector(brokerUrl);
+				broker.start();
+				resources.push(broker::stop);
+				JmsServiceExporter jmsExporter = JmsServiceExporter.connectionFactory(new ActiveMQConnectionFactory(clientUrl))
+					.requestTopic(REQUEST_TOPIC)
+					.export(exporter)
+					.start();
+				resources.push(() -> jmsExporter.close().get());
+				JmsServiceInvoker invoker = JmsServiceInvoker.connectionFactory(new ActiveMQConnectionFactory(clientUrl))
+					.requestTopic(REQUEST_TOPIC)
+					.start();
+				resources.push(() -> invoker.close().get());
+				return invoker;
+			}
+			case "amqp": {
+				ConnectionFactory connectionFactory = new ConnectionFactory();
+				connectionFactory.setHost(amqpHost);
+				AmqpServiceExporter amqpExporter = AmqpServiceExporter.connectionFactory(connectionFactory)
+					.requestExchange(REQUEST_TOPIC)
+					.export(exporter)
+					.start();
+				resources.push(() -> amqpExporter.close().get());
+				AmqpServiceInvoker invoker = AmqpServiceInvoker.connectionFactory(connectionFactory)
+					.requestExchange(REQUEST_TOPIC)
+					.start();
+				resources.push(() -> invoker.close().get());
+				return invoker;
+			}
+			default:
+				throw new IllegalArgumentException(String.format("Unknown transport '%s', expected one of %s", name, NAMES));
+		}
+	}
+
+	private Vertx vertx() {
+		Vertx vertx = Vertx.vertx();
+		resources.push(vertx::close);
+		return vertx;
+	}
+
+	private void listen(HttpServer httpServer) throws Exception {
+		CompletableFuture<HttpServer> promise = new CompletableFuture<>();
+		httpServer.listen(handler -> {
+			if (handler.failed()) {
+				promise.completeExceptionally(handler.cause());
+				return;
+			}
+			promise.complete(handler.result());
+		});
+		HttpServer server = promise.get(5, TimeUnit.SECONDS);
+		resources.push(server::close);
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	/**
+	 * Releases the resources in the reverse order of their creation.
+	 */
+	@Override
+	public void close() {
+		while (!resources.isEmpty()) {
+			try {
+				resources.pop().close();
+			}
+			catch (Exception ex) {
+				log.warn("failed to release load test resource", ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) Oleg Sklyar & teris.io, 2018. All rights reserved.
+ */
+
+package io.teris.kite.loadtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+
+public class LoadGeneratorTest {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void run_fixedRate_measuresScheduledCallsAfterWarmup() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		LoadGenerator.Result result = new LoadGenerator(1000, 200, 300, 10, () -> {
+			calls.incrementAndGet();
+			return CompletableFuture.completedFuture(null);
+		}, null).run();
+		assertEquals(500, calls.get());
+		assertEquals(300, result.completed);
+		assertEquals(300, result.latency.getTotalCount());
+		assertEquals(0, result.failed);
+	}
+
+	@Test
+	public void run_stalledCall_latencyIncludesScheduleDelay() throws Exception {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try {
+			AtomicInteger calls = new AtomicInteger();
+			// with a single call in flight the 200ms stall of one call holds back the schedule
+			LoadGenerator.Result result = new LoadGenerator(100, 0, 1000, 1, () -> {
+				CompletableFuture<Object> promise = new CompletableFuture<>();
+				long delayMillis = calls.incrementAndGet() == 10 ? 200 : 0;
+				scheduler.schedule(() -> promise.complete(null), delayMillis, TimeUnit.MILLISECONDS);
+				return promise;
+			}, null).run();
+			assertEquals(100, result.completed);
+			assertTrue(result.serviceTime.getValueAtPercentile(90) < TimeUnit.MILLISECONDS.toNanos(10));
+			assertTrue(result.latency.getValueAtPercentile(90) > TimeUnit.MILLISECONDS.toNanos(50));
+			assertTrue(result.latency.getMaxValue() >= TimeUnit.MILLISECONDS.toNanos(190));
+		}
+		finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void run_failingCalls_countedAsFailed() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		LoadGenerator.Result result = new LoadGenerator(1000, 0, 100, 10, () -> {
+			if (calls.incrementAndGet() % 2 == 0) {
+				throw new IllegalStateException("BOOM");
+			}
+			CompletableFuture<Object> promise = new CompletableFuture<>();
+			promise.completeExceptionally(new IllegalStateException("BOOM"));
+			return promise;
+		}, null).run();
+		assertEquals(0, result.completed);
+		assertEquals(100, result.failed);
+		assertEquals(0, result.latency.getTotalCount());
+	}
+
+	@Test
+	public void constructor_nonPositiveRate_throws() {
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Rate, duration and calls in flight must be positive");
+		new LoadGenerator(0, 0, 1000, 1, () -> CompletableFuture.completedFuture(null), null);
+	}
+}